@@ -18,7 +18,10 @@
 package edu.uci.ics.crawler4j.crawler;
 
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.http.HttpStatus;
 import org.apache.log4j.Logger;
@@ -26,8 +29,10 @@ import org.apache.log4j.Logger;
 import edu.uci.ics.crawler4j.fetcher.CustomFetchStatus;
 import edu.uci.ics.crawler4j.fetcher.PageFetchResult;
 import edu.uci.ics.crawler4j.fetcher.PageFetcher;
-import edu.uci.ics.crawler4j.frontier.DocIDServer;
+import edu.uci.ics.crawler4j.frontier.DocIDStore;
 import edu.uci.ics.crawler4j.frontier.Frontier;
+import edu.uci.ics.crawler4j.frontier.ValidatorStore;
+import edu.uci.ics.crawler4j.frontier.Validators;
 import edu.uci.ics.crawler4j.parser.ParseData;
 import edu.uci.ics.crawler4j.parser.Parser;
 import edu.uci.ics.crawler4j.parser.html.HtmlParseData;
@@ -44,7 +49,7 @@ import edu.uci.ics.crawler4j.url.WebURL;
  */
 public abstract class AbstractCrawler
     implements
-    Crawler
+    ProcessingCrawler
 {
 
     protected final Logger logger = Logger.getLogger( getClass() );
@@ -89,7 +94,7 @@ public abstract class AbstractCrawler
      * The DocIDServer that is used by this crawler instance to map each URL to
      * a unique docid.
      */
-    private final DocIDServer docIdServer;
+    private final DocIDStore docIdServer;
 
     /**
      * The Frontier object that manages the crawl queue.
@@ -104,6 +109,14 @@ public abstract class AbstractCrawler
      */
     private boolean isWaitingForNewURLs;
 
+    private volatile boolean shutdown;
+
+    /**
+     * The recent average time in milliseconds it took this crawler to process
+     * a URL, used to size the batches it takes from the frontier.
+     */
+    private double millisPerUrl = 0;
+
     /**
      * Constructor.
      * 
@@ -114,7 +127,7 @@ public abstract class AbstractCrawler
 	this.myId = id;
 	this.pageFetcher = crawlController.getPageFetcher();
 	this.robotstxtServer = crawlController.getRobotstxtServer();
-	this.docIdServer = crawlController.getDocIdServer();
+	this.docIdServer = crawlController.getDocIdStore();
 	this.frontier = crawlController.getFrontier();
 	this.parser = new Parser( crawlController.getConfig() );
 	this.myController = crawlController;
@@ -171,6 +184,35 @@ public abstract class AbstractCrawler
 	// Sub-classed can override this to add their custom functionality
     }
 
+    /**
+     * This function is called if the page was fetched with a conditional
+     * request and the server reported that it did not change since the last
+     * crawl. The page is not parsed or visited.
+     * 
+     * @param webUrl
+     */
+    protected void onPageNotModified(final WebURL webUrl) {
+	// Do nothing by default
+	// Sub-classed can override this to add their custom functionality
+    }
+
+    /**
+     * Keeps the validators of a visited page, so the next crawl can fetch it
+     * with a conditional request.
+     */
+    protected void recordValidators(final Page page) {
+	final ValidatorStore validatorStore = pageFetcher.getValidatorStore();
+	if ( validatorStore == null ) {
+	    return;
+	}
+	final Validators validators = Validators.fromHeaders( page.getFetchResponseHeaders() );
+	if ( validators != null ) {
+	    validatorStore.put( page.getWebURL().getURL(), validators );
+	} else {
+	    validatorStore.remove( page.getWebURL().getURL() );
+	}
+    }
+
     /**
      * This function is called if the content of a url could not be fetched.
      * 
@@ -208,35 +250,66 @@ public abstract class AbstractCrawler
     @Override
     public void run() {
 	onStart();
-	while ( true ) {
-	    final List<WebURL> assignedURLs = new ArrayList<>( 50 );
-	    isWaitingForNewURLs = true;
-	    frontier.getNextURLs( 50, assignedURLs );
-	    isWaitingForNewURLs = false;
-	    if ( assignedURLs.size() == 0 ) {
-		if ( frontier.isFinished() ) {
-		    return;
-		}
-		try {
-		    Thread.sleep( 3000 );
-		} catch ( final InterruptedException e ) {
-		    e.printStackTrace();
-		}
-	    } else {
-		for ( final WebURL curURL : assignedURLs ) {
-		    if ( curURL != null ) {
-			processPage( curURL );
-			frontier.setProcessed( curURL );
-		    }
-		    if ( myController.isShuttingDown() ) {
-			logger.info( "Exiting because of controller shutdown." );
+	// Holds the URLs of the current batch. Idle crawlers steal from its
+	// tail, see Frontier.newWorkDeque()
+	final Deque<WebURL> assignedURLs = frontier.newWorkDeque();
+	try {
+	    final List<WebURL> batch = new ArrayList<>();
+	    while ( true ) {
+		final int batchSize = frontier.getBatchSize( myController.getNumberOfCrawlers(), millisPerUrl );
+		batch.clear();
+		isWaitingForNewURLs = true;
+		frontier.getNextURLs( batchSize, batch, assignedURLs );
+		isWaitingForNewURLs = false;
+		if ( batch.size() == 0 ) {
+		    // The frontier waits for work and only comes back empty
+		    // handed once it is finished
+		    if ( frontier.isFinished() ) {
 			return;
 		    }
+		} else {
+		    int processed = 0;
+		    final long start = System.nanoTime();
+		    try {
+			WebURL curURL;
+			while ( ( curURL = assignedURLs.pollFirst() ) != null ) {
+			    try {
+				processPage( curURL );
+			    } finally {
+				myController.setProcessed( curURL );
+			    }
+			    processed++;
+			    if ( shutdown || myController.isShuttingDown() ) {
+				logger.info( "Exiting because of controller shutdown." );
+				return;
+			    }
+			}
+			if ( processed > 0 ) {
+			    final double millis = ( System.nanoTime() - start ) / 1000000.0 / processed;
+			    millisPerUrl = millisPerUrl == 0 ? millis : 0.7 * millisPerUrl + 0.3 * millis;
+			}
+		    } finally {
+			// Hand back the URLs this crawler will not get to, so
+			// that the frontier does not wait for them
+			final List<WebURL> remaining = new ArrayList<>();
+			WebURL url;
+			while ( ( url = assignedURLs.pollFirst() ) != null ) {
+			    remaining.add( url );
+			}
+			frontier.release( remaining );
+		    }
 		}
 	    }
+	} finally {
+	    frontier.removeWorkDeque( assignedURLs );
 	}
     }
 
+    @Override
+    public void process(final WebURL url) {
+	processPage( url );
+    }
+
     /**
      * Classes that extends WebCrawler can overwrite this function to tell the
      * crawler whether the given url should be crawled or not. The following
@@ -252,6 +325,11 @@ public abstract class AbstractCrawler
 	return true;
     }
 
+    @Override
+    public void shutdown() {
+	this.shutdown = true;
+    }
+
     /**
      * Classes that extends WebCrawler can overwrite this function to process
      * the content of the fetched and parsed page.
@@ -265,25 +343,63 @@ public abstract class AbstractCrawler
     }
 
     private void processPage(final WebURL url) {
+	final Page page = fetch( url );
+	if ( page != null && parse( page ) ) {
+	    handle( page );
+	}
+    }
+
+    /**
+     * Fetches the given URL and loads the content of the page. Status codes
+     * and redirects are handled here, so a null result means that there is
+     * nothing left to do for this URL.
+     */
+    @Override
+    public Page fetch(final WebURL url) {
 	if ( url == null ) {
-	    return;
+	    return null;
 	}
-	PageFetchResult fetchResult = null;
+	return fetched( url, pageFetcher.fetchHeader( url ) );
+    }
+
+    /**
+     * Handles the result of fetching the given URL, the way
+     * {@link #fetch(WebURL)} does. Used when the page was fetched by an
+     * {@link edu.uci.ics.crawler4j.fetcher.AsyncPageFetcher}.
+     */
+    @Override
+    public Page fetched(final WebURL url, final PageFetchResult fetchResult) {
 	try {
-	    fetchResult = pageFetcher.fetchHeader( url );
 	    final int statusCode = fetchResult.getStatusCode();
 	    handlePageStatusCode( url, statusCode, CustomFetchStatus.getStatusDescription( statusCode ) );
+	    if ( statusCode == CustomFetchStatus.Aborted ) {
+		myController.setFetchAborted( url );
+		return null;
+	    }
+	    if ( statusCode == HttpStatus.SC_NOT_MODIFIED ) {
+		onPageNotModified( url );
+		return null;
+	    }
+	    if ( statusCode == CustomFetchStatus.HostUnavailable ) {
+		// Try again once the circuit of the host lets a request through, unless
+		// the host was given up on
+		final long retryTime = pageFetcher.getCircuitBreaker().getRetryTime( url.getHost() );
+		if ( retryTime >= 0 ) {
+		    frontier.defer( url, retryTime );
+		}
+		return null;
+	    }
 	    if ( statusCode != HttpStatus.SC_OK ) {
 		if ( statusCode == HttpStatus.SC_MOVED_PERMANENTLY || statusCode == HttpStatus.SC_MOVED_TEMPORARILY ) {
 		    if ( myController.getConfig().isFollowRedirects() ) {
 			final String movedToUrl = fetchResult.getMovedToUrl();
 			if ( movedToUrl == null ) {
-			    return;
+			    return null;
 			}
 			final int newDocId = docIdServer.getDocId( movedToUrl );
 			if ( newDocId > 0 ) {
 			    // Redirect page is already seen
-			    return;
+			    return null;
 			}
 
 			final WebURL webURL = new WebURL();
@@ -293,81 +409,142 @@ public abstract class AbstractCrawler
 			webURL.setDepth( url.getDepth() );
 			webURL.setDocid( -1 );
 			webURL.setAnchor( url.getAnchor() );
-			if ( internalShouldVisit( webURL ) ) {
-			    webURL.setDocid( docIdServer.getNewDocID( movedToUrl ) );
+			if ( internalShouldVisit( webURL ) && docIdServer.getOrAssign( webURL ) ) {
 			    frontier.schedule( webURL );
 			}
 		    }
 		} else if ( fetchResult.getStatusCode() == CustomFetchStatus.PageTooBig ) {
 		    logger.info( "Skipping a page which was bigger than max allowed size: " + url.getURL() );
 		}
-		return;
+		return null;
 	    }
 
 	    if ( !url.getURL().equals( fetchResult.getFetchedUrl() ) ) {
 		if ( docIdServer.isSeenBefore( fetchResult.getFetchedUrl() ) ) {
 		    // Redirect page is already seen
-		    return;
+		    return null;
 		}
 		url.setURL( fetchResult.getFetchedUrl() );
-		url.setDocid( docIdServer.getNewDocID( fetchResult.getFetchedUrl() ) );
+		if ( !docIdServer.getOrAssign( url ) ) {
+		    // Another crawler thread got to the redirect page first
+		    return null;
+		}
 	    }
 
 	    final Page page = new Page( url );
-	    final int docid = url.getDocid();
 
 	    if ( !fetchResult.fetchContent( page ) ) {
+		if ( pageFetcher.isAborted() ) {
+		    // The content was cut off by the shutdown
+		    myController.setFetchAborted( url );
+		    return null;
+		}
 		onContentFetchError( url );
-		return;
+		return null;
 	    }
+	    return page;
+
+	} catch ( final Exception e ) {
+	    logger.error( e.getMessage() + ", while processing: " + url.getURL() );
+	} finally {
+	    fetchResult.discardContentIfNotConsumed();
+	}
+	return null;
+    }
 
+    /**
+     * Parses the content of a fetched page.
+     * 
+     * @return true if the page could be parsed.
+     */
+    @Override
+    public boolean parse(final Page page) {
+	final WebURL url = page.getWebURL();
+	try {
 	    if ( !parser.parse( page, url.getURL() ) ) {
 		onParseError( url );
-		return;
+		return false;
 	    }
+	    return true;
+	} catch ( final Exception e ) {
+	    logger.error( e.getMessage() + ", while processing: " + url.getURL() );
+	}
+	return false;
+    }
 
+    /**
+     * Admits the outgoing links of a parsed page to the frontier and then
+     * visits the page.
+     */
+    @Override
+    public void handle(final Page page) {
+	final WebURL url = page.getWebURL();
+	try {
 	    final ParseData parseData = page.getParseData();
 	    if ( parseData instanceof HtmlParseData ) {
 		final HtmlParseData htmlParseData = (HtmlParseData) parseData;
 
-		final List<WebURL> toSchedule = new ArrayList<>();
-		final int maxCrawlDepth = myController.getConfig().getMaxDepthOfCrawling();
-		for ( final WebURL webURL : htmlParseData.getOutgoingUrls() ) {
-		    webURL.setParentDocid( docid );
-		    webURL.setParentUrl( url.getURL() );
-		    final int newdocid = docIdServer.getDocId( webURL.getURL() );
-		    if ( newdocid > 0 ) {
-			// This is not the first time that this Url is
-			// visited. So, we set the depth to a negative
-			// number.
-			webURL.setDepth( (short) -1 );
-			webURL.setDocid( newdocid );
-		    } else {
-			webURL.setDocid( -1 );
-			webURL.setDepth( (short) ( url.getDepth() + 1 ) );
-			if ( maxCrawlDepth == -1 || url.getDepth() < maxCrawlDepth ) {
-			    if ( internalShouldVisit( webURL ) ) {
-				webURL.setDocid( docIdServer.getNewDocID( webURL.getURL() ) );
-				toSchedule.add( webURL );
-			    }
-			}
-		    }
-		}
-		frontier.scheduleAll( toSchedule );
+		scheduleOutgoingUrls( url, htmlParseData.getOutgoingUrls() );
 	    }
 	    try {
 		visit( page );
+		// Only once the page is visited, a 304 must not make a later
+		// crawl skip a page that was never processed
+		recordValidators( page );
 	    } catch ( final Exception e ) {
 		logger.error( "Exception while running the visit method. Message: '" + e.getMessage() + "' at " + e.getStackTrace()[0] );
 	    }
 
 	} catch ( final Exception e ) {
 	    logger.error( e.getMessage() + ", while processing: " + url.getURL() );
-	} finally {
-	    if ( fetchResult != null ) {
-		fetchResult.discardContentIfNotConsumed();
+	}
+    }
+
+    /**
+     * Admits the outgoing links of a page to the frontier as one batch. Links
+     * are deduplicated within the page and looked up together. Those that are
+     * new and should be visited get their docids in a single batch and are
+     * scheduled together.
+     */
+    private void scheduleOutgoingUrls(final WebURL url, final List<WebURL> outgoingUrls) {
+	final Map<String, WebURL> uniqueUrls = new LinkedHashMap<>();
+	final List<WebURL> duplicates = new ArrayList<>();
+	for ( final WebURL webURL : outgoingUrls ) {
+	    webURL.setParentDocid( url.getDocid() );
+	    webURL.setParentUrl( url.getURL() );
+	    if ( uniqueUrls.containsKey( webURL.getURL() ) ) {
+		duplicates.add( webURL );
+	    } else {
+		uniqueUrls.put( webURL.getURL(), webURL );
 	    }
 	}
+
+	final List<WebURL> links = new ArrayList<>( uniqueUrls.values() );
+	docIdServer.lookupAll( links );
+	final List<WebURL> candidates = new ArrayList<>();
+	final int maxCrawlDepth = myController.getConfig().getMaxDepthOfCrawling();
+	for ( final WebURL webURL : links ) {
+	    if ( webURL.getDocid() > 0 ) {
+		// This is not the first time that this Url is
+		// visited. So, we set the depth to a negative
+		// number.
+		webURL.setDepth( (short) -1 );
+	    } else {
+		webURL.setDepth( (short) ( url.getDepth() + 1 ) );
+		if ( maxCrawlDepth == -1 || url.getDepth() < maxCrawlDepth ) {
+		    if ( internalShouldVisit( webURL ) ) {
+			candidates.add( webURL );
+		    }
+		}
+	    }
+	}
+	frontier.scheduleAll( docIdServer.getOrAssignAll( candidates ) );
+
+	for ( final WebURL webURL : duplicates ) {
+	    final WebURL first = uniqueUrls.get( webURL.getURL() );
+	    webURL.setDocid( first.getDocid() );
+	    webURL.setDepth( first.getDocid() > 0 ? (short) -1 : first.getDepth() );
+	}
     }
 
     private boolean internalShouldVisit(final WebURL webURL) {
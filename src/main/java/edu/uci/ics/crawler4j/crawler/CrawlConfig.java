@@ -31,6 +31,65 @@ public class CrawlConfig {
 	 */
 	private boolean resumableCrawling = false;
 
+	/**
+	 * If larger than 0, resumable crawls commit their frontier transactions
+	 * without syncing them to disk one by one. Instead, all commits are synced
+	 * together every groupCommitInterval milliseconds (or earlier, see
+	 * groupCommitOperations). A crash loses at most the commits of that
+	 * window. 0 syncs every commit.
+	 */
+	private int groupCommitInterval = 0;
+
+	/**
+	 * Maximum number of commits that are held back before they are synced
+	 * to disk when groupCommitInterval is larger than 0.
+	 */
+	private int groupCommitOperations = 1000;
+
+	/**
+	 * Interval (in milliseconds) at which the crawl counters are persisted in
+	 * resumable crawls. A crash can lose the counter updates of at most one
+	 * interval.
+	 */
+	private int countersFlushInterval = 1000;
+
+	/**
+	 * If this feature is enabled, the pending URLs and the docids of seen URLs
+	 * are kept in memory instead of in Berkeley DB databases. Data is spilled
+	 * to disk only once frontierMemoryBudget is exceeded. It can not be
+	 * combined with resumable crawling.
+	 */
+	private boolean inMemoryFrontier = false;
+
+	/**
+	 * If this feature is enabled, the ETag and Last-Modified headers of
+	 * fetched pages are kept in the 'validators' folder of the crawl storage
+	 * folder, and later crawls fetch these pages with conditional requests.
+	 * Pages the server reports as not modified are not parsed or visited, so
+	 * their links are not followed either. Later crawls should be seeded with
+	 * the URLs to revisit.
+	 */
+	private boolean conditionalGet = false;
+
+	/**
+	 * Maximum number of bytes the in-memory frontier may use before it starts
+	 * spilling to disk.
+	 */
+	private long frontierMemoryBudget = 256L * 1024 * 1024;
+
+	/**
+	 * Number of URLs the crawl is expected to see. If it is larger than 0, an
+	 * in-memory Bloom filter of this capacity answers most lookups of unseen
+	 * URLs without going to the docid database.
+	 */
+	private long expectedUrlCount = 0;
+
+	/**
+	 * Target false positive rate of the URL-seen Bloom filter when it holds
+	 * expectedUrlCount URLs.
+	 */
+	private double bloomFilterFalsePositiveRate = 0.01;
+
 	/**
 	 * Maximum depth of crawling For unlimited depth this parameter should be
 	 * set to -1
@@ -55,6 +114,104 @@ public class CrawlConfig {
 	 */
 	private int politenessDelay = 200;
 
+	/**
+	 * If this feature is enabled, the politeness delay of each host adapts to
+	 * how the host responds. It starts at politenessDelay, shrinks step by
+	 * step down to minPolitenessDelay while the host answers quickly and
+	 * without errors, and doubles (up to maxPolitenessDelay) on 429, 5xx and
+	 * transport errors or when the host slows down.
+	 */
+	private boolean adaptivePoliteness = false;
+
+	/**
+	 * Smallest politeness delay in milliseconds adaptive politeness may use,
+	 * which caps the request rate to a healthy host.
+	 */
+	private int minPolitenessDelay = 50;
+
+	/**
+	 * Largest politeness delay in milliseconds adaptive politeness may use.
+	 * Also caps the wait requested by Retry-After headers.
+	 */
+	private int maxPolitenessDelay = 60000;
+
+	/**
+	 * Number of times a request answered with 429 Too Many Requests or 503
+	 * Service Unavailable is sent again, once the host may be fetched again.
+	 */
+	private int rateLimitRetries = 0;
+
+	/**
+	 * Number of consecutive transport errors (timeouts, refused connections)
+	 * after which the circuit of a host opens: its URLs are parked in the
+	 * frontier instead of being fetched, see HostCircuitBreaker. 0 disables
+	 * the circuit breaker.
+	 */
+	private int circuitBreakerThreshold = 0;
+
+	/**
+	 * Time in milliseconds a host circuit stays open before a single request
+	 * is let through to probe the host. The time doubles with each failed
+	 * probe.
+	 */
+	private int circuitBreakerOpenTime = 30000;
+
+	/**
+	 * Number of failed probes after which a host is given up on. Its URLs are
+	 * dropped from then on.
+	 */
+	private int circuitBreakerMaxProbes = 5;
+
+	/**
+	 * Maximum number of hosts whose addresses are cached by the fetcher, see
+	 * CachingDnsResolver. 0 disables the cache, and hosts are resolved by the
+	 * JVM default resolver for every new connection.
+	 */
+	private int dnsCacheSize = 0;
+
+	/**
+	 * Time in milliseconds a resolved address is cached for.
+	 */
+	private int dnsCacheTtl = 60000;
+
+	/**
+	 * Time in milliseconds a failed resolution is cached for.
+	 */
+	private int dnsNegativeCacheTtl = 10000;
+
+	/**
+	 * Number of threads that resolve the hosts of URLs handed out by the
+	 * frontier ahead of their fetch. 0 disables prefetching. Has no effect
+	 * unless the DNS cache is enabled.
+	 */
+	private int dnsPrefetchThreads = 2;
+
+	/**
+	 * If this feature is enabled, the frontier keeps a queue per host and
+	 * hands out URLs from hosts whose politeness delay has already passed,
+	 * instead of the next URLs in global order.
+	 */
+	private boolean hostPartitionedFrontier = false;
+
+	/**
+	 * Maximum number of URLs that are kept in the per-host queues of the
+	 * frontier when hostPartitionedFrontier is enabled.
+	 */
+	private int hostQueuesCapacity = 10000;
+
+	/**
+	 * Bounds of the number of URLs a crawler takes from the frontier at once.
+	 * Within them the batch size follows the queue length, the number of
+	 * crawlers and the time it takes to process a URL.
+	 */
+	private int minUrlBatchSize = 1;
+	private int maxUrlBatchSize = 100;
+
+	/**
+	 * Time in milliseconds a crawler should spend on one batch of URLs.
+	 */
+	private int urlBatchDuration = 2000;
+
 	/**
 	 * Should we also crawl https pages?
 	 */
@@ -75,6 +232,57 @@ public class CrawlConfig {
 	 */
 	private int maxTotalConnections = 100;
 
+	/**
+	 * Number of I/O dispatch threads of the AsyncPageFetcher. Each of them
+	 * multiplexes many connections, so a few are enough. It is independent
+	 * of the number of crawlers that parse and process pages.
+	 */
+	private int fetcherThreads = 2;
+
+	/**
+	 * Number of threads of the parse stage of a CrawlPipeline. 0 means one
+	 * thread per available processor.
+	 */
+	private int parseThreads = 0;
+
+	/**
+	 * Number of threads of the visit stage of a CrawlPipeline, which admits
+	 * the outgoing links of parsed pages and visits them.
+	 */
+	private int visitThreads = 2;
+
+	/**
+	 * Capacity of each of the queues between the stages of a CrawlPipeline.
+	 * Once a queue is full, the stage that feeds it waits.
+	 */
+	private int pipelineQueueCapacity = 100;
+
+	/**
+	 * Interval in milliseconds at which the CrawlerPoolTuner adjusts the
+	 * number of crawler threads. 0 disables the tuner.
+	 */
+	private int autoTuneInterval = 0;
+
+	/**
+	 * Lower and upper bound of the number of crawler threads the
+	 * CrawlerPoolTuner may choose.
+	 */
+	private int minCrawlers = 1;
+	private int maxCrawlers = 100;
+
+	/**
+	 * Fraction of the available processors the CrawlerPoolTuner aims to keep
+	 * busy.
+	 */
+	private double targetCpuLoad = 0.8;
+
+	/**
+	 * Time budget in milliseconds of CrawlController.shutdown(). After half of
+	 * it the requests in progress are aborted. 0 means that the shutdown
+	 * waits for the crawlers to finish their pages.
+	 */
+	private long shutdownTimeout = 0;
+
 	/**
 	 * Socket timeout in milliseconds
 	 */
@@ -139,15 +347,95 @@ public class CrawlConfig {
 		if (crawlStorageFolder == null) {
 			throw new Exception("Crawl storage folder is not set in the CrawlConfig.");
 		}
+		if (inMemoryFrontier && resumableCrawling) {
+			throw new Exception("In-memory frontier can not be used for resumable crawling.");
+		}
+		if (groupCommitInterval < 0) {
+			throw new Exception("Invalid value for group commit interval: " + groupCommitInterval);
+		}
+		if (groupCommitOperations <= 0) {
+			throw new Exception("Invalid value for group commit operations: " + groupCommitOperations);
+		}
+		if (countersFlushInterval <= 0) {
+			throw new Exception("Invalid value for counters flush interval: " + countersFlushInterval);
+		}
+		if (frontierMemoryBudget < 0) {
+			throw new Exception("Invalid value for frontier memory budget: " + frontierMemoryBudget);
+		}
+		if (expectedUrlCount < 0) {
+			throw new Exception("Invalid value for expected URL count: " + expectedUrlCount);
+		}
+		if (bloomFilterFalsePositiveRate <= 0 || bloomFilterFalsePositiveRate >= 1) {
+			throw new Exception("Bloom filter false positive rate should be between 0 and 1: "
+					+ bloomFilterFalsePositiveRate);
+		}
 		if (politenessDelay < 0) {
 			throw new Exception("Invalid value for politeness delay: " + politenessDelay);
 		}
+		if (minPolitenessDelay < 0 || maxPolitenessDelay < minPolitenessDelay) {
+			throw new Exception("Invalid bounds for the politeness delay: " + minPolitenessDelay + " - "
+					+ maxPolitenessDelay);
+		}
+		if (rateLimitRetries < 0) {
+			throw new Exception("Invalid value for rate limit retries: " + rateLimitRetries);
+		}
+		if (circuitBreakerThreshold < 0) {
+			throw new Exception("Invalid value for circuit breaker threshold: " + circuitBreakerThreshold);
+		}
+		if (circuitBreakerOpenTime <= 0) {
+			throw new Exception("Invalid value for circuit breaker open time: " + circuitBreakerOpenTime);
+		}
+		if (circuitBreakerMaxProbes <= 0) {
+			throw new Exception("Invalid value for circuit breaker max probes: " + circuitBreakerMaxProbes);
+		}
+		if (dnsCacheSize < 0) {
+			throw new Exception("Invalid value for DNS cache size: " + dnsCacheSize);
+		}
+		if (dnsCacheTtl < 0 || dnsNegativeCacheTtl < 0) {
+			throw new Exception("Invalid DNS cache TTL: " + dnsCacheTtl + ", " + dnsNegativeCacheTtl);
+		}
+		if (dnsPrefetchThreads < 0) {
+			throw new Exception("Invalid value for DNS prefetch threads: " + dnsPrefetchThreads);
+		}
 		if (maxDepthOfCrawling < -1) {
 			throw new Exception("Maximum crawl depth should be either a positive number or -1 for unlimited depth.");
 		}
 		if (maxDepthOfCrawling > Short.MAX_VALUE) {
 			throw new Exception("Maximum value for crawl depth is " + Short.MAX_VALUE);
 		}
+		if (fetcherThreads <= 0) {
+			throw new Exception("Invalid value for fetcher threads: " + fetcherThreads);
+		}
+		if (parseThreads < 0) {
+			throw new Exception("Invalid value for parse threads: " + parseThreads);
+		}
+		if (visitThreads <= 0) {
+			throw new Exception("Invalid value for visit threads: " + visitThreads);
+		}
+		if (pipelineQueueCapacity <= 0) {
+			throw new Exception("Invalid value for pipeline queue capacity: " + pipelineQueueCapacity);
+		}
+		if (autoTuneInterval < 0) {
+			throw new Exception("Invalid value for auto-tune interval: " + autoTuneInterval);
+		}
+		if (minCrawlers <= 0 || maxCrawlers < minCrawlers) {
+			throw new Exception("Invalid bounds for the number of crawlers: " + minCrawlers + " - " + maxCrawlers);
+		}
+		if (targetCpuLoad <= 0 || targetCpuLoad > 1) {
+			throw new Exception("Target CPU load should be between 0 and 1: " + targetCpuLoad);
+		}
+		if (shutdownTimeout < 0) {
+			throw new Exception("Invalid value for shutdown timeout: " + shutdownTimeout);
+		}
+		if (hostQueuesCapacity <= 0) {
+			throw new Exception("Invalid value for host queues capacity: " + hostQueuesCapacity);
+		}
+		if (minUrlBatchSize <= 0 || maxUrlBatchSize < minUrlBatchSize) {
+			throw new Exception("Invalid bounds for the URL batch size: " + minUrlBatchSize + " - " + maxUrlBatchSize);
+		}
+		if (urlBatchDuration <= 0) {
+			throw new Exception("Invalid value for URL batch duration: " + urlBatchDuration);
+		}
 
 	}
 
@@ -175,6 +463,113 @@ public class CrawlConfig {
 		this.resumableCrawling = resumableCrawling;
 	}
 
+	public int getGroupCommitInterval() {
+		return groupCommitInterval;
+	}
+
+	/**
+	 * If larger than 0, resumable crawls commit their frontier transactions
+	 * without syncing them to disk one by one. Instead, all commits are synced
+	 * together every groupCommitInterval milliseconds (or earlier, see
+	 * groupCommitOperations). A crash loses at most the commits of that
+	 * window. 0 syncs every commit.
+	 */
+	public void setGroupCommitInterval(int groupCommitInterval) {
+		this.groupCommitInterval = groupCommitInterval;
+	}
+
+	public int getGroupCommitOperations() {
+		return groupCommitOperations;
+	}
+
+	/**
+	 * Maximum number of commits that are held back before they are synced
+	 * to disk when groupCommitInterval is larger than 0.
+	 */
+	public void setGroupCommitOperations(int groupCommitOperations) {
+		this.groupCommitOperations = groupCommitOperations;
+	}
+
+	public int getCountersFlushInterval() {
+		return countersFlushInterval;
+	}
+
+	/**
+	 * Interval (in milliseconds) at which the crawl counters are persisted in
+	 * resumable crawls. A crash can lose the counter updates of at most one
+	 * interval.
+	 */
+	public void setCountersFlushInterval(int countersFlushInterval) {
+		this.countersFlushInterval = countersFlushInterval;
+	}
+
+	public boolean isInMemoryFrontier() {
+		return inMemoryFrontier;
+	}
+
+	/**
+	 * If this feature is enabled, the pending URLs and the docids of seen URLs
+	 * are kept in memory instead of in Berkeley DB databases. Data is spilled
+	 * to disk only once frontierMemoryBudget is exceeded. It can not be
+	 * combined with resumable crawling.
+	 */
+	public void setInMemoryFrontier(boolean inMemoryFrontier) {
+		this.inMemoryFrontier = inMemoryFrontier;
+	}
+
+	public boolean isConditionalGet() {
+		return conditionalGet;
+	}
+
+	/**
+	 * If this feature is enabled, the ETag and Last-Modified headers of
+	 * fetched pages are kept in the 'validators' folder of the crawl storage
+	 * folder, and later crawls fetch these pages with conditional requests.
+	 * Pages the server reports as not modified are not parsed or visited, so
+	 * their links are not followed either. Later crawls should be seeded with
+	 * the URLs to revisit.
+	 */
+	public void setConditionalGet(boolean conditionalGet) {
+		this.conditionalGet = conditionalGet;
+	}
+
+	public long getFrontierMemoryBudget() {
+		return frontierMemoryBudget;
+	}
+
+	/**
+	 * Maximum number of bytes the in-memory frontier may use before it starts
+	 * spilling to disk.
+	 */
+	public void setFrontierMemoryBudget(long frontierMemoryBudget) {
+		this.frontierMemoryBudget = frontierMemoryBudget;
+	}
+
+	public long getExpectedUrlCount() {
+		return expectedUrlCount;
+	}
+
+	/**
+	 * Number of URLs the crawl is expected to see. If it is larger than 0, an
+	 * in-memory Bloom filter of this capacity answers most lookups of unseen
+	 * URLs without going to the docid database.
+	 */
+	public void setExpectedUrlCount(long expectedUrlCount) {
+		this.expectedUrlCount = expectedUrlCount;
+	}
+
+	public double getBloomFilterFalsePositiveRate() {
+		return bloomFilterFalsePositiveRate;
+	}
+
+	/**
+	 * Target false positive rate of the URL-seen Bloom filter when it holds
+	 * expectedUrlCount URLs.
+	 */
+	public void setBloomFilterFalsePositiveRate(double bloomFilterFalsePositiveRate) {
+		this.bloomFilterFalsePositiveRate = bloomFilterFalsePositiveRate;
+	}
+
 	public int getMaxDepthOfCrawling() {
 		return maxDepthOfCrawling;
 	}
@@ -226,6 +621,204 @@ public class CrawlConfig {
 		this.politenessDelay = politenessDelay;
 	}
 
+	public boolean isAdaptivePoliteness() {
+		return adaptivePoliteness;
+	}
+
+	/**
+	 * If this feature is enabled, the politeness delay of each host adapts to
+	 * how the host responds. It starts at politenessDelay, shrinks step by
+	 * step down to minPolitenessDelay while the host answers quickly and
+	 * without errors, and doubles (up to maxPolitenessDelay) on 429, 5xx and
+	 * transport errors or when the host slows down.
+	 */
+	public void setAdaptivePoliteness(boolean adaptivePoliteness) {
+		this.adaptivePoliteness = adaptivePoliteness;
+	}
+
+	public int getMinPolitenessDelay() {
+		return minPolitenessDelay;
+	}
+
+	/**
+	 * Smallest politeness delay in milliseconds adaptive politeness may use,
+	 * which caps the request rate to a healthy host.
+	 */
+	public void setMinPolitenessDelay(int minPolitenessDelay) {
+		this.minPolitenessDelay = minPolitenessDelay;
+	}
+
+	public int getMaxPolitenessDelay() {
+		return maxPolitenessDelay;
+	}
+
+	/**
+	 * Largest politeness delay in milliseconds adaptive politeness may use.
+	 * Also caps the wait requested by Retry-After headers.
+	 */
+	public void setMaxPolitenessDelay(int maxPolitenessDelay) {
+		this.maxPolitenessDelay = maxPolitenessDelay;
+	}
+
+	public int getRateLimitRetries() {
+		return rateLimitRetries;
+	}
+
+	/**
+	 * Number of times a request answered with 429 Too Many Requests or 503
+	 * Service Unavailable is sent again, once the host may be fetched again.
+	 */
+	public void setRateLimitRetries(int rateLimitRetries) {
+		this.rateLimitRetries = rateLimitRetries;
+	}
+
+	public int getCircuitBreakerThreshold() {
+		return circuitBreakerThreshold;
+	}
+
+	/**
+	 * Number of consecutive transport errors (timeouts, refused connections)
+	 * after which the circuit of a host opens: its URLs are parked in the
+	 * frontier instead of being fetched, see HostCircuitBreaker. 0 disables
+	 * the circuit breaker.
+	 */
+	public void setCircuitBreakerThreshold(int circuitBreakerThreshold) {
+		this.circuitBreakerThreshold = circuitBreakerThreshold;
+	}
+
+	public int getCircuitBreakerOpenTime() {
+		return circuitBreakerOpenTime;
+	}
+
+	/**
+	 * Time in milliseconds a host circuit stays open before a single request
+	 * is let through to probe the host. The time doubles with each failed
+	 * probe.
+	 */
+	public void setCircuitBreakerOpenTime(int circuitBreakerOpenTime) {
+		this.circuitBreakerOpenTime = circuitBreakerOpenTime;
+	}
+
+	public int getCircuitBreakerMaxProbes() {
+		return circuitBreakerMaxProbes;
+	}
+
+	/**
+	 * Number of failed probes after which a host is given up on. Its URLs are
+	 * dropped from then on.
+	 */
+	public void setCircuitBreakerMaxProbes(int circuitBreakerMaxProbes) {
+		this.circuitBreakerMaxProbes = circuitBreakerMaxProbes;
+	}
+
+	public int getDnsCacheSize() {
+		return dnsCacheSize;
+	}
+
+	/**
+	 * Maximum number of hosts whose addresses are cached by the fetcher, see
+	 * CachingDnsResolver. 0 disables the cache, and hosts are resolved by the
+	 * JVM default resolver for every new connection.
+	 */
+	public void setDnsCacheSize(int dnsCacheSize) {
+		this.dnsCacheSize = dnsCacheSize;
+	}
+
+	public int getDnsCacheTtl() {
+		return dnsCacheTtl;
+	}
+
+	/**
+	 * Time in milliseconds a resolved address is cached for.
+	 */
+	public void setDnsCacheTtl(int dnsCacheTtl) {
+		this.dnsCacheTtl = dnsCacheTtl;
+	}
+
+	public int getDnsNegativeCacheTtl() {
+		return dnsNegativeCacheTtl;
+	}
+
+	/**
+	 * Time in milliseconds a failed resolution is cached for.
+	 */
+	public void setDnsNegativeCacheTtl(int dnsNegativeCacheTtl) {
+		this.dnsNegativeCacheTtl = dnsNegativeCacheTtl;
+	}
+
+	public int getDnsPrefetchThreads() {
+		return dnsPrefetchThreads;
+	}
+
+	/**
+	 * Number of threads that resolve the hosts of URLs handed out by the
+	 * frontier ahead of their fetch. 0 disables prefetching. Has no effect
+	 * unless the DNS cache is enabled.
+	 */
+	public void setDnsPrefetchThreads(int dnsPrefetchThreads) {
+		this.dnsPrefetchThreads = dnsPrefetchThreads;
+	}
+
+	public boolean isHostPartitionedFrontier() {
+		return hostPartitionedFrontier;
+	}
+
+	/**
+	 * If this feature is enabled, the frontier keeps a queue per host and
+	 * hands out URLs from hosts whose politeness delay has already passed,
+	 * instead of the next URLs in global order.
+	 */
+	public void setHostPartitionedFrontier(boolean hostPartitionedFrontier) {
+		this.hostPartitionedFrontier = hostPartitionedFrontier;
+	}
+
+	public int getHostQueuesCapacity() {
+		return hostQueuesCapacity;
+	}
+
+	/**
+	 * Maximum number of URLs that are kept in the per-host queues of the
+	 * frontier when hostPartitionedFrontier is enabled.
+	 */
+	public void setHostQueuesCapacity(int hostQueuesCapacity) {
+		this.hostQueuesCapacity = hostQueuesCapacity;
+	}
+
+	public int getMinUrlBatchSize() {
+		return minUrlBatchSize;
+	}
+
+	/**
+	 * Minimum number of URLs a crawler takes from the frontier at once.
+	 */
+	public void setMinUrlBatchSize(int minUrlBatchSize) {
+		this.minUrlBatchSize = minUrlBatchSize;
+	}
+
+	public int getMaxUrlBatchSize() {
+		return maxUrlBatchSize;
+	}
+
+	/**
+	 * Maximum number of URLs a crawler takes from the frontier at once.
+	 */
+	public void setMaxUrlBatchSize(int maxUrlBatchSize) {
+		this.maxUrlBatchSize = maxUrlBatchSize;
+	}
+
+	public int getUrlBatchDuration() {
+		return urlBatchDuration;
+	}
+
+	/**
+	 * Time in milliseconds a crawler should spend on one batch of URLs. Batches
+	 * are made smaller when processing a URL takes long, so that no crawler
+	 * sits on URLs other crawlers could work on.
+	 */
+	public void setUrlBatchDuration(int urlBatchDuration) {
+		this.urlBatchDuration = urlBatchDuration;
+	}
+
 	public boolean isIncludeHttpsPages() {
 		return includeHttpsPages;
 	}
@@ -270,6 +863,116 @@ public class CrawlConfig {
 		this.maxTotalConnections = maxTotalConnections;
 	}
 
+	public int getFetcherThreads() {
+		return fetcherThreads;
+	}
+
+	/**
+	 * Number of I/O dispatch threads of the AsyncPageFetcher. Each of them
+	 * multiplexes many connections, so a few are enough. It is independent
+	 * of the number of crawlers that parse and process pages.
+	 */
+	public void setFetcherThreads(int fetcherThreads) {
+		this.fetcherThreads = fetcherThreads;
+	}
+
+	public int getParseThreads() {
+		return parseThreads;
+	}
+
+	/**
+	 * Number of threads of the parse stage of a CrawlPipeline. 0 means one
+	 * thread per available processor.
+	 */
+	public void setParseThreads(int parseThreads) {
+		this.parseThreads = parseThreads;
+	}
+
+	public int getVisitThreads() {
+		return visitThreads;
+	}
+
+	/**
+	 * Number of threads of the visit stage of a CrawlPipeline, which admits
+	 * the outgoing links of parsed pages and visits them.
+	 */
+	public void setVisitThreads(int visitThreads) {
+		this.visitThreads = visitThreads;
+	}
+
+	public int getPipelineQueueCapacity() {
+		return pipelineQueueCapacity;
+	}
+
+	/**
+	 * Capacity of each of the queues between the stages of a CrawlPipeline.
+	 * Once a queue is full, the stage that feeds it waits.
+	 */
+	public void setPipelineQueueCapacity(int pipelineQueueCapacity) {
+		this.pipelineQueueCapacity = pipelineQueueCapacity;
+	}
+
+	public int getAutoTuneInterval() {
+		return autoTuneInterval;
+	}
+
+	/**
+	 * Interval in milliseconds at which the CrawlerPoolTuner adjusts the
+	 * number of crawler threads. 0 disables the tuner.
+	 */
+	public void setAutoTuneInterval(int autoTuneInterval) {
+		this.autoTuneInterval = autoTuneInterval;
+	}
+
+	public int getMinCrawlers() {
+		return minCrawlers;
+	}
+
+	/**
+	 * Lower bound of the number of crawler threads the CrawlerPoolTuner may
+	 * choose.
+	 */
+	public void setMinCrawlers(int minCrawlers) {
+		this.minCrawlers = minCrawlers;
+	}
+
+	public int getMaxCrawlers() {
+		return maxCrawlers;
+	}
+
+	/**
+	 * Upper bound of the number of crawler threads the CrawlerPoolTuner may
+	 * choose.
+	 */
+	public void setMaxCrawlers(int maxCrawlers) {
+		this.maxCrawlers = maxCrawlers;
+	}
+
+	public double getTargetCpuLoad() {
+		return targetCpuLoad;
+	}
+
+	/**
+	 * Fraction of the available processors the CrawlerPoolTuner aims to keep
+	 * busy.
+	 */
+	public void setTargetCpuLoad(double targetCpuLoad) {
+		this.targetCpuLoad = targetCpuLoad;
+	}
+
+	public long getShutdownTimeout() {
+		return shutdownTimeout;
+	}
+
+	/**
+	 * Time budget in milliseconds of CrawlController.shutdown(). After half of
+	 * it the requests in progress are aborted. 0 means that the shutdown
+	 * waits for the crawlers to finish their pages.
+	 */
+	public void setShutdownTimeout(long shutdownTimeout) {
+		this.shutdownTimeout = shutdownTimeout;
+	}
+
 	public int getSocketTimeout() {
 		return socketTimeout;
 	}
@@ -381,13 +1084,42 @@ public class CrawlConfig {
 		StringBuilder sb = new StringBuilder();
 		sb.append("Crawl storage folder: " + getCrawlStorageFolder() + "\n");
 		sb.append("Resumable crawling: " + isResumableCrawling() + "\n");
+		sb.append("Group commit interval: " + getGroupCommitInterval() + "\n");
+		sb.append("Group commit operations: " + getGroupCommitOperations() + "\n");
+		sb.append("Counters flush interval: " + getCountersFlushInterval() + "\n");
+		sb.append("In-memory frontier: " + isInMemoryFrontier() + "\n");
+		sb.append("Conditional GET: " + isConditionalGet() + "\n");
+		sb.append("Frontier memory budget: " + getFrontierMemoryBudget() + "\n");
+		sb.append("Expected URL count: " + getExpectedUrlCount() + "\n");
+		sb.append("Bloom filter false positive rate: " + getBloomFilterFalsePositiveRate() + "\n");
 		sb.append("Max depth of crawl: " + getMaxDepthOfCrawling() + "\n");
 		sb.append("Max pages to fetch: " + getMaxPagesToFetch() + "\n");
 		sb.append("User agent string: " + getUserAgentString() + "\n");
+		sb.append("Adaptive politeness: " + isAdaptivePoliteness() + "\n");
+		sb.append("Politeness delay bounds: " + getMinPolitenessDelay() + " - " + getMaxPolitenessDelay() + "\n");
+		sb.append("Rate limit retries: " + getRateLimitRetries() + "\n");
+		sb.append("Circuit breaker threshold: " + getCircuitBreakerThreshold() + "\n");
+		sb.append("Circuit breaker open time: " + getCircuitBreakerOpenTime() + "\n");
+		sb.append("Circuit breaker max probes: " + getCircuitBreakerMaxProbes() + "\n");
+		sb.append("DNS cache size: " + getDnsCacheSize() + "\n");
+		sb.append("DNS cache TTL: " + getDnsCacheTtl() + " (negative: " + getDnsNegativeCacheTtl() + ")\n");
+		sb.append("DNS prefetch threads: " + getDnsPrefetchThreads() + "\n");
+		sb.append("Host partitioned frontier: " + isHostPartitionedFrontier() + "\n");
+		sb.append("Host queues capacity: " + getHostQueuesCapacity() + "\n");
+		sb.append("URL batch size: " + getMinUrlBatchSize() + " - " + getMaxUrlBatchSize() + "\n");
+		sb.append("URL batch duration: " + getUrlBatchDuration() + "\n");
 		sb.append("Include https pages: " + isIncludeHttpsPages() + "\n");
 		sb.append("Include binary content: " + isIncludeBinaryContentInCrawling() + "\n");
 		sb.append("Max connections per host: " + getMaxConnectionsPerHost() + "\n");
 		sb.append("Max total connections: " + getMaxTotalConnections() + "\n");
+		sb.append("Fetcher threads: " + getFetcherThreads() + "\n");
+		sb.append("Parse threads: " + getParseThreads() + "\n");
+		sb.append("Visit threads: " + getVisitThreads() + "\n");
+		sb.append("Pipeline queue capacity: " + getPipelineQueueCapacity() + "\n");
+		sb.append("Auto-tune interval: " + getAutoTuneInterval() + "\n");
+		sb.append("Crawlers: " + getMinCrawlers() + " - " + getMaxCrawlers() + "\n");
+		sb.append("Target CPU load: " + getTargetCpuLoad() + "\n");
+		sb.append("Shutdown timeout: " + getShutdownTimeout() + "\n");
 		sb.append("Socket timeout: " + getSocketTimeout() + "\n");
 		sb.append("Max total connections: " + getMaxTotalConnections() + "\n");
 		sb.append("Max outgoing links to follow: " + getMaxOutgoingLinksToFollow() + "\n");
@@ -19,16 +19,25 @@ package edu.uci.ics.crawler4j.crawler;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.log4j.Logger;
 
-import com.sleepycat.je.Environment;
-import com.sleepycat.je.EnvironmentConfig;
-
+import edu.uci.ics.crawler4j.fetcher.CachingDnsResolver;
 import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.frontier.BerkeleyDBFrontierStorage;
 import edu.uci.ics.crawler4j.frontier.DocIDServer;
+import edu.uci.ics.crawler4j.frontier.DocIDStore;
 import edu.uci.ics.crawler4j.frontier.Frontier;
+import edu.uci.ics.crawler4j.frontier.FrontierStorage;
+import edu.uci.ics.crawler4j.frontier.InMemoryFrontierStorage;
 import edu.uci.ics.crawler4j.parser.ContentTypeRegistry;
 import edu.uci.ics.crawler4j.parser.binary.BinaryParseData;
 import edu.uci.ics.crawler4j.parser.html.HtmlParseData;
@@ -36,7 +45,6 @@ import edu.uci.ics.crawler4j.parser.text.TextParseData;
 import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
 import edu.uci.ics.crawler4j.url.URLCanonicalizer;
 import edu.uci.ics.crawler4j.url.WebURL;
-import edu.uci.ics.crawler4j.util.FileUtils;
 
 /**
  * The controller that manages a crawling session. This class creates the
@@ -64,23 +72,77 @@ public class CrawlController extends Configurable
     /**
      * Is the crawling of this session finished?
      */
-    protected boolean finished;
+    protected volatile boolean finished;
 
     /**
      * Is the crawling session set to 'shutdown'. Crawler threads monitor this
      * flag and when it is set they will no longer process new pages.
      */
-    protected boolean shuttingDown;
+    protected volatile boolean shuttingDown;
+
+    /**
+     * The time by which the crawlers have to be stopped when the controller
+     * is shutting down with a time budget, 0 if there is none.
+     */
+    protected volatile long shutdownDeadline;
+
+    /**
+     * The URLs whose fetch was aborted by a shutdown, to be released instead
+     * of marked as processed.
+     */
+    protected final Set<WebURL> abortedURLs = Collections.newSetFromMap(new ConcurrentHashMap<WebURL, Boolean>());
 
     protected PageFetcher pageFetcher;
     protected RobotstxtServer robotstxtServer;
     protected Frontier frontier;
-    protected DocIDServer docIdServer;
-    private Environment env;
+    protected DocIDStore docIdServer;
+    protected FrontierStorage frontierStorage;
+
+    protected volatile CrawlPipeline pipeline;
+
+    /**
+     * The factory the crawlers of the current crawl are obtained from. They
+     * are released back to it at the end of the crawl.
+     */
+    protected CrawlerFactory crawlerFactory;
+
+    /**
+     * The crawlers of a crawl started with {@link #start(Class, int)} and
+     * their threads, at the same indexes. Both are guarded by the lock of
+     * crawlers. Crawlers removed by {@link #setNumberOfCrawlers(int)} are kept
+     * in retiredCrawlers, so their local data is still collected.
+     */
+    protected final List<Crawler> crawlers = new ArrayList<>();
+    protected final List<Thread> crawlerThreads = new ArrayList<>();
+    protected final List<Crawler> retiredCrawlers = new ArrayList<>();
 
     protected final Object waitingLock = new Object();
 
+    /**
+     * Interval (in milliseconds) at which the monitor thread checks for dead
+     * crawler threads while the frontier still has work.
+     */
+    protected static final int MONITOR_INTERVAL = 1000;
+
+    /**
+     * Maximum time (in milliseconds) to wait for each crawler thread to exit
+     * once the crawl is finished.
+     */
+    protected static final int CRAWLER_EXIT_TIMEOUT = 10000;
+
     public CrawlController(CrawlConfig config, PageFetcher pageFetcher, RobotstxtServer robotstxtServer) throws Exception {
+	this(config, pageFetcher, robotstxtServer, null);
+    }
+
+    /**
+     * Creates a controller whose frontier is kept in the given storage.
+     * 
+     * @param storage
+     *            the storage engine of the frontier, or null to use the one
+     *            selected by the config.
+     */
+    public CrawlController(CrawlConfig config, PageFetcher pageFetcher, RobotstxtServer robotstxtServer,
+	    FrontierStorage storage) throws Exception {
 	super(config);
 
 	config.validate();
@@ -91,26 +153,21 @@ public class CrawlController extends Configurable
 	    }
 	}
 
-	boolean resumable = config.isResumableCrawling();
-
-	EnvironmentConfig envConfig = new EnvironmentConfig();
-	envConfig.setAllowCreate(true);
-	envConfig.setTransactional(resumable);
-	envConfig.setLocking(resumable);
-
-	File envHome = new File(config.getCrawlStorageFolder() + "/frontier");
-	if (!envHome.exists()) {
-	    if (!envHome.mkdir()) {
-		throw new Exception("Couldn't create this folder: " + envHome.getAbsolutePath());
+	if (storage == null) {
+	    if (config.isInMemoryFrontier()) {
+		storage = new InMemoryFrontierStorage(config);
+	    } else {
+		storage = new BerkeleyDBFrontierStorage(config);
 	    }
 	}
-	if (!resumable) {
-	    FileUtils.deleteFolderContents(envHome);
+	frontierStorage = storage;
+	docIdServer = storage.getDocIDStore();
+	frontier = new Frontier(config, storage);
+	frontier.setPolitenessScheduler(pageFetcher.getPolitenessScheduler());
+	if (pageFetcher.getDnsResolver() instanceof CachingDnsResolver) {
+	    frontier.setDnsResolver((CachingDnsResolver) pageFetcher.getDnsResolver());
 	}
-
-	env = new Environment(envHome, envConfig);
-	docIdServer = new DocIDServer(env, config);
-	frontier = new Frontier(env, config, docIdServer);
+	pageFetcher.setValidatorStore(storage.getValidatorStore());
 
 	this.pageFetcher = pageFetcher;
 	this.robotstxtServer = robotstxtServer;
@@ -133,7 +190,15 @@ public class CrawlController extends Configurable
      *            this crawling session.
      */
     public <T extends Crawler> void start(final Class<T> _c, final int numberOfCrawlers) {
-	this.start(_c, numberOfCrawlers, true);
+	this.start(new ReflectiveCrawlerFactory(_c), numberOfCrawlers, true);
+    }
+
+    /**
+     * Start the crawling session with crawlers obtained from the given
+     * factory and wait for it to finish.
+     */
+    public void start(final CrawlerFactory factory, final int numberOfCrawlers) {
+	this.start(factory, numberOfCrawlers, true);
     }
 
     /**
@@ -146,113 +211,426 @@ public class CrawlController extends Configurable
      *            this crawling session.
      */
     public <T extends Crawler> void startNonBlocking(final Class<T> _c, final int numberOfCrawlers) {
-	this.start(_c, numberOfCrawlers, false);
+	this.start(new ReflectiveCrawlerFactory(_c), numberOfCrawlers, false);
+    }
+
+    /**
+     * Start the crawling session with crawlers obtained from the given
+     * factory and return immediately.
+     */
+    public void startNonBlocking(final CrawlerFactory factory, final int numberOfCrawlers) {
+	this.start(factory, numberOfCrawlers, false);
     }
 
-    protected <T extends Crawler> void start(final Class<T> _c, final int numberOfCrawlers, boolean isBlocking) {
+    protected void start(final CrawlerFactory factory, final int numberOfCrawlers, boolean isBlocking) {
 	try {
 	    finished = false;
 	    crawlersLocalData.clear();
-	    final List<Thread> threads = new ArrayList<>();
-	    final List<T> crawlers = new ArrayList<>();
-
-	    for (int i = 1; i <= numberOfCrawlers; i++) {
-		T crawler = _c.newInstance();
-		Thread thread = new Thread(crawler, "Crawler " + i);
-		crawler.setThread(thread);
-		crawler.init(i, this);
-		thread.start();
-		crawlers.add(crawler);
-		threads.add(thread);
-		logger.info("Crawler " + i + " started.");
+	    synchronized (crawlers) {
+		crawlerFactory = factory;
+		crawlers.clear();
+		crawlerThreads.clear();
+		retiredCrawlers.clear();
+		for (int i = 1; i <= numberOfCrawlers; i++) {
+		    crawlers.add(startCrawler(i));
+		}
 	    }
 
-	    final CrawlController controller = this;
+	    final CrawlerPoolTuner tuner;
+	    if (config.getAutoTuneInterval() > 0) {
+		tuner = new CrawlerPoolTuner(this);
+		tuner.start();
+	    } else {
+		tuner = null;
+	    }
 
 	    Thread monitorThread = new Thread(new Runnable() {
 
 		@Override
 		public void run() {
 		    try {
-			synchronized (waitingLock) {
-
-			    while (true) {
-				sleep(10);
-				boolean someoneIsWorking = false;
-				for (int i = 0; i < threads.size(); i++) {
-				    Thread thread = threads.get(i);
-				    if (!thread.isAlive()) {
-					if (!shuttingDown) {
-					    logger.info("Thread " + i + " was dead, I'll recreate it.");
-					    T crawler = _c.newInstance();
-					    thread = new Thread(crawler, "Crawler " + (i + 1));
-					    threads.remove(i);
-					    threads.add(i, thread);
-					    crawler.setThread(thread);
-					    crawler.init(i + 1, controller);
-					    thread.start();
-					    crawlers.remove(i);
-					    crawlers.add(i, crawler);
-					}
-				    } else if (crawlers.get(i).isNotWaitingForNewURLs()) {
-					someoneIsWorking = true;
-				    }
+			while (true) {
+			    if (shuttingDown) {
+				if (awaitShutdown()) {
+				    break;
 				}
-				if (!someoneIsWorking) {
-				    // Make sure again that none of the threads
-				    // are
-				    // alive.
-				    logger.info("It looks like no thread is working, waiting for 10 seconds to make sure...");
-				    sleep(10);
-
-				    someoneIsWorking = false;
-				    for (int i = 0; i < threads.size(); i++) {
-					Thread thread = threads.get(i);
-					if (thread.isAlive() && crawlers.get(i).isNotWaitingForNewURLs()) {
-					    someoneIsWorking = true;
-					}
-				    }
-				    if (!someoneIsWorking) {
-					if (!shuttingDown) {
-					    long queueLength = frontier.getQueueLength();
-					    if (queueLength > 0) {
-						continue;
-					    }
-					    logger.info("No thread is working and no more URLs are in queue waiting for another 10 seconds to make sure...");
-					    sleep(10);
-					    queueLength = frontier.getQueueLength();
-					    if (queueLength > 0) {
-						continue;
-					    }
-					}
-
-					logger.info("All of the crawlers are stopped. Finishing the process...");
-					// At this step, frontier notifies the
-					// threads that were
-					// waiting for new URLs and they should
-					// stop
-					frontier.finish();
-					for (T crawler : crawlers) {
-					    crawler.onBeforeExit();
-					    crawlersLocalData.add(crawler.getMyLocalData());
-					}
-
-					logger.info("Waiting for 10 seconds before final clean up...");
-					sleep(10);
-
-					frontier.close();
-					docIdServer.close();
-					env.close();
-					pageFetcher.shutDown();
-
-					finished = true;
-					waitingLock.notifyAll();
-
-					return;
+				continue;
+			    }
+			    // The frontier signals as soon as it runs out of work.
+			    // The timeout only bounds how long it takes to notice
+			    // dead crawler threads.
+			    if (frontier.awaitIdle(MONITOR_INTERVAL)) {
+				break;
+			    }
+			    synchronized (crawlers) {
+				for (int i = 0; i < crawlerThreads.size(); i++) {
+				    if (!crawlerThreads.get(i).isAlive() && !shuttingDown) {
+					logger.info("Thread " + i + " was dead, I'll recreate it.");
+					crawlerFactory.release(crawlers.get(i));
+					crawlers.set(i, startCrawler(i + 1));
 				    }
 				}
 			    }
 			}
+
+			logger.info("All of the crawlers are stopped. Finishing the process...");
+			if (tuner != null) {
+			    tuner.shutdown();
+			}
+			// At this step, frontier notifies the threads that were
+			// waiting for new URLs and they should stop
+			frontier.finish();
+			List<Crawler> allCrawlers = new ArrayList<>();
+			synchronized (crawlers) {
+			    allCrawlers.addAll(crawlers);
+			    allCrawlers.addAll(retiredCrawlers);
+			}
+			long deadline = System.currentTimeMillis() + getExitTimeout();
+			for (Crawler crawler : allCrawlers) {
+			    crawler.getThread().join(Math.max(1, deadline - System.currentTimeMillis()));
+			}
+			finish(allCrawlers);
+		    } catch (Exception e) {
+			e.printStackTrace();
+		    }
+		}
+	    });
+
+	    monitorThread.start();
+
+	    if (isBlocking) {
+		waitUntilFinish();
+	    }
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	}
+    }
+
+    /**
+     * Gets a crawler from the crawler factory, initializes it with the given
+     * id and starts its thread. Must be called while holding the crawlers
+     * lock.
+     */
+    private Crawler startCrawler(int id) throws Exception {
+	Crawler crawler = crawlerFactory.newCrawler();
+	Thread thread = new Thread(crawler, "Crawler " + id);
+	crawler.setThread(thread);
+	crawler.init(id, this);
+	thread.start();
+	if (id <= crawlerThreads.size()) {
+	    crawlerThreads.set(id - 1, thread);
+	} else {
+	    crawlerThreads.add(thread);
+	}
+	logger.info("Crawler " + id + " started.");
+	return crawler;
+    }
+
+    /**
+     * Returns the number of crawler threads of the current crawl. Only
+     * meaningful for crawls started with {@link #start(Class, int)}.
+     */
+    public int getNumberOfCrawlers() {
+	synchronized (crawlers) {
+	    return crawlers.size();
+	}
+    }
+
+    /**
+     * Grows or shrinks the number of crawler threads while the crawl is
+     * running. New crawlers start right away. Crawlers that are removed finish
+     * the page they are processing and hand their remaining URLs back to the
+     * frontier. Only applies to crawls started with {@link #start(Class, int)}
+     * or {@link #startNonBlocking(Class, int)}.
+     */
+    public void setNumberOfCrawlers(int numberOfCrawlers) {
+	if (numberOfCrawlers <= 0) {
+	    throw new IllegalArgumentException("Invalid number of crawlers: " + numberOfCrawlers);
+	}
+	synchronized (crawlers) {
+	    if (crawlerFactory == null || finished || shuttingDown) {
+		return;
+	    }
+	    try {
+		while (crawlers.size() < numberOfCrawlers) {
+		    crawlers.add(startCrawler(crawlers.size() + 1));
+		}
+	    } catch (Exception e) {
+		logger.error("Could not create a crawler: " + e.getMessage());
+	    }
+	    while (crawlers.size() > numberOfCrawlers) {
+		int last = crawlers.size() - 1;
+		if (!(crawlers.get(last) instanceof ProcessingCrawler)) {
+		    // Only crawlers that can be asked to stop early are retired
+		    break;
+		}
+		ProcessingCrawler crawler = (ProcessingCrawler) crawlers.remove(last);
+		crawlerThreads.remove(last);
+		crawler.shutdown();
+		retiredCrawlers.add(crawler);
+		logger.info("Crawler " + (last + 1) + " retired.");
+	    }
+	}
+    }
+
+    /**
+     * Start the crawling session on the given executor and wait for it to
+     * finish. Instead of running each crawler instance on a thread of its own,
+     * every URL is processed as a separate task on the executor, by one of
+     * the crawler instances that is not busy with another URL. The executor is
+     * not shut down by the controller.
+     * 
+     * @param _c
+     *            the class that implements the logic for crawlers
+     * @param numberOfCrawlers
+     *            the number of crawler instances, which is the maximum number
+     *            of URLs that are processed concurrently.
+     * @param executor
+     *            the executor that runs the tasks.
+     */
+    public <T extends Crawler> void start(final Class<T> _c, final int numberOfCrawlers, final Executor executor) {
+	this.start(new ReflectiveCrawlerFactory(_c), numberOfCrawlers, executor, true);
+    }
+
+    /**
+     * Start the crawling session on the given executor with crawlers obtained
+     * from the given factory and wait for it to finish, see
+     * {@link #start(Class, int, Executor)}.
+     */
+    public void start(final CrawlerFactory factory, final int numberOfCrawlers, final Executor executor) {
+	this.start(factory, numberOfCrawlers, executor, true);
+    }
+
+    /**
+     * Start the crawling session on the given executor and return
+     * immediately, see {@link #start(Class, int, Executor)}.
+     */
+    public <T extends Crawler> void startNonBlocking(final Class<T> _c, final int numberOfCrawlers, final Executor executor) {
+	this.start(new ReflectiveCrawlerFactory(_c), numberOfCrawlers, executor, false);
+    }
+
+    /**
+     * Start the crawling session on the given executor with crawlers obtained
+     * from the given factory and return immediately, see
+     * {@link #start(Class, int, Executor)}.
+     */
+    public void startNonBlocking(final CrawlerFactory factory, final int numberOfCrawlers, final Executor executor) {
+	this.start(factory, numberOfCrawlers, executor, false);
+    }
+
+    protected void start(final CrawlerFactory factory, final int numberOfCrawlers, final Executor executor,
+	    boolean isBlocking) {
+	try {
+	    finished = false;
+	    crawlersLocalData.clear();
+	    crawlerFactory = factory;
+	    final List<ProcessingCrawler> crawlers = new ArrayList<>();
+	    final BlockingQueue<ProcessingCrawler> idleCrawlers = new ArrayBlockingQueue<>(numberOfCrawlers);
+
+	    for (int i = 1; i <= numberOfCrawlers; i++) {
+		Crawler crawler = factory.newCrawler();
+		if (!(crawler instanceof ProcessingCrawler)) {
+		    throw new IllegalArgumentException(crawler.getClass().getName()
+			    + " has to implement ProcessingCrawler to run on an executor.");
+		}
+		crawler.init(i, this);
+		crawler.onStart();
+		crawlers.add((ProcessingCrawler) crawler);
+		idleCrawlers.add((ProcessingCrawler) crawler);
+	    }
+
+	    final Thread dispatcherThread = new Thread(new Runnable() {
+
+		@Override
+		public void run() {
+		    List<ProcessingCrawler> batch = new ArrayList<>();
+		    List<WebURL> urls = new ArrayList<>();
+		    try {
+			while (!shuttingDown) {
+			    // Only take as many URLs as there are idle crawlers
+			    batch.clear();
+			    batch.add(idleCrawlers.take());
+			    idleCrawlers.drainTo(batch);
+			    urls.clear();
+			    frontier.getNextURLs(batch.size(), urls);
+			    if (urls.isEmpty() || shuttingDown) {
+				idleCrawlers.addAll(batch);
+				frontier.release(urls);
+				return;
+			    }
+			    for (int i = 0; i < batch.size(); i++) {
+				if (i < urls.size()) {
+				    dispatch(executor, batch.get(i), urls.get(i), idleCrawlers);
+				} else {
+				    idleCrawlers.add(batch.get(i));
+				}
+			    }
+			}
+		    } catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		    }
+		}
+	    }, "Crawl dispatcher");
+	    dispatcherThread.start();
+	    logger.info("Started crawling with " + numberOfCrawlers + " crawlers on " + executor);
+
+	    Thread monitorThread = new Thread(new Runnable() {
+
+		@Override
+		public void run() {
+		    try {
+			// Once the frontier is idle, or the controller is shutting
+			// down and no task is running any more, the crawl is over.
+			// awaitIdle returns right away once the frontier is
+			// finished, so from then on awaitShutdown does the waiting.
+			while (!frontier.awaitIdle(MONITOR_INTERVAL)) {
+			    if ((shuttingDown || frontier.isFinished()) && awaitShutdown()) {
+				break;
+			    }
+			}
+
+			logger.info("All of the crawlers are stopped. Finishing the process...");
+			// Wakes up the dispatcher if it waits for new URLs
+			frontier.finish();
+			dispatcherThread.join(getExitTimeout());
+			finish(crawlers);
+		    } catch (Exception e) {
+			e.printStackTrace();
+		    }
+		}
+	    });
+
+	    monitorThread.start();
+
+	    if (isBlocking) {
+		waitUntilFinish();
+	    }
+
+	} catch (Exception e) {
+	    e.printStackTrace();
+	}
+    }
+
+    /**
+     * Processes the URL with the given crawler on the executor, and gives the
+     * crawler back to the idle ones once it is done.
+     */
+    protected <T extends ProcessingCrawler> void dispatch(Executor executor, final T crawler, final WebURL url,
+	    final BlockingQueue<T> idleCrawlers) {
+	try {
+	    executor.execute(new Runnable() {
+
+		@Override
+		public void run() {
+		    try {
+			crawler.process(url);
+		    } catch (RuntimeException e) {
+			logger.error(e.getMessage() + ", while processing: " + url.getURL());
+		    } finally {
+			setProcessed(url);
+			idleCrawlers.add(crawler);
+		    }
+		}
+	    });
+	} catch (RejectedExecutionException e) {
+	    logger.error("Executor rejected the task for: " + url.getURL());
+	    List<WebURL> rejected = new ArrayList<>();
+	    rejected.add(url);
+	    frontier.release(rejected);
+	    idleCrawlers.add(crawler);
+	}
+    }
+
+    /**
+     * Called by the crawlers if the fetch of a URL failed because the requests
+     * in progress were aborted by a shutdown. The URL is handed back to the
+     * frontier by {@link #setProcessed(WebURL)} then, to be crawled when a
+     * resumable crawl is started again.
+     */
+    public void setFetchAborted(WebURL url) {
+	abortedURLs.add(url);
+    }
+
+    /**
+     * Called by the crawlers once they are done with a URL they got from the
+     * frontier. The URL is marked as processed, unless its fetch was aborted
+     * by a shutdown.
+     */
+    public void setProcessed(WebURL url) {
+	if (abortedURLs.remove(url)) {
+	    frontier.release(Collections.singletonList(url));
+	} else {
+	    frontier.setProcessed(url);
+	}
+    }
+
+    /**
+     * Start the crawling session as a {@link CrawlPipeline} and wait for it to
+     * finish. Pages are fetched, parsed and visited by separate stages with
+     * threads of their own. The parse and visit stages are sized by the
+     * config.
+     *
+     * @param _c
+     *            the class that implements the logic for crawlers
+     * @param numberOfFetchers
+     *            the number of threads of the fetch stage.
+     */
+    public <T extends Crawler> void startPipeline(final Class<T> _c, final int numberOfFetchers) {
+	this.startPipeline(new ReflectiveCrawlerFactory(_c), numberOfFetchers, true);
+    }
+
+    /**
+     * Start the crawling session as a {@link CrawlPipeline} with crawlers
+     * obtained from the given factory and wait for it to finish.
+     */
+    public void startPipeline(final CrawlerFactory factory, final int numberOfFetchers) {
+	this.startPipeline(factory, numberOfFetchers, true);
+    }
+
+    /**
+     * Start the crawling session as a {@link CrawlPipeline} and return
+     * immediately, see {@link #startPipeline(Class, int)}.
+     */
+    public <T extends Crawler> void startPipelineNonBlocking(final Class<T> _c, final int numberOfFetchers) {
+	this.startPipeline(new ReflectiveCrawlerFactory(_c), numberOfFetchers, false);
+    }
+
+    /**
+     * Start the crawling session as a {@link CrawlPipeline} with crawlers
+     * obtained from the given factory and return immediately.
+     */
+    public void startPipelineNonBlocking(final CrawlerFactory factory, final int numberOfFetchers) {
+	this.startPipeline(factory, numberOfFetchers, false);
+    }
+
+    protected void startPipeline(final CrawlerFactory factory, final int numberOfFetchers, boolean isBlocking) {
+	try {
+	    finished = false;
+	    crawlersLocalData.clear();
+	    crawlerFactory = factory;
+	    final CrawlPipeline crawlPipeline = new CrawlPipeline(this, factory, numberOfFetchers);
+	    pipeline = crawlPipeline;
+	    crawlPipeline.start();
+
+	    Thread monitorThread = new Thread(new Runnable() {
+
+		@Override
+		public void run() {
+		    try {
+			// Pages waiting between stages count as assigned, so
+			// the frontier only becomes idle once all stages are
+			// done with them
+			while (!frontier.awaitIdle(MONITOR_INTERVAL)) {
+			    if ((shuttingDown || frontier.isFinished()) && awaitShutdown()) {
+				break;
+			    }
+			}
+
+			logger.info("All of the crawlers are stopped. Finishing the process...");
+			frontier.finish();
+			crawlPipeline.stop(getExitTimeout());
+			finish(crawlPipeline.getCrawlers());
 		    } catch (Exception e) {
 			e.printStackTrace();
 		    }
@@ -270,6 +648,48 @@ public class CrawlController extends Configurable
 	}
     }
 
+    /**
+     * Returns the pipeline of the current crawl, or null if it was not
+     * started with {@link #startPipeline(Class, int)}.
+     */
+    public CrawlPipeline getPipeline() {
+	return pipeline;
+    }
+
+    /**
+     * Collects the local data of the crawlers and closes the frontier and the
+     * fetcher.
+     */
+    protected void finish(List<? extends Crawler> crawlers) {
+	for (Crawler crawler : crawlers) {
+	    crawler.onBeforeExit();
+	    crawlersLocalData.add(crawler.getMyLocalData());
+	    // A crawler whose thread did not exit in time must not be reused
+	    if (crawler.getThread() == null || !crawler.getThread().isAlive()) {
+		crawlerFactory.release(crawler);
+	    }
+	}
+
+	for (Crawler crawler : crawlers) {
+	    if (crawler.getThread() != null && crawler.getThread().isAlive()) {
+		logger.warn(crawler.getThread().getName() + " did not stop in time.");
+	    }
+	}
+
+	try {
+	    // Flushes the counters and the Berkeley DB environment
+	    frontier.close();
+	} catch (RuntimeException e) {
+	    logger.error("Error while closing the frontier: " + e.getMessage());
+	}
+	pageFetcher.shutDown();
+
+	synchronized (waitingLock) {
+	    finished = true;
+	    waitingLock.notifyAll();
+	}
+    }
+
     /**
      * Wait until this crawling session finishes.
      */
@@ -288,6 +708,58 @@ public class CrawlController extends Configurable
 	}
     }
 
+    /**
+     * Wait until this crawling session finishes, for at most timeout
+     * milliseconds.
+     * 
+     * @return true if the crawling session is finished.
+     */
+    public boolean waitUntilFinish(long timeout) throws InterruptedException {
+	long deadline = System.currentTimeMillis() + timeout;
+	synchronized (waitingLock) {
+	    while (!finished) {
+		long remaining = deadline - System.currentTimeMillis();
+		if (remaining <= 0) {
+		    return false;
+		}
+		waitingLock.wait(remaining);
+	    }
+	    return true;
+	}
+    }
+
+    /**
+     * Called by the monitor threads while the controller is shutting down.
+     * Waits a little for the crawlers to be done with the URLs they were
+     * assigned.
+     * 
+     * @return true if the crawlers are done, or the shutdown deadline has
+     *         passed and the crawl should be finished without them.
+     */
+    protected boolean awaitShutdown() throws InterruptedException {
+	if (frontier.awaitNoAssignedPages(MONITOR_INTERVAL)) {
+	    return true;
+	}
+	long deadline = shutdownDeadline;
+	if (deadline > 0 && System.currentTimeMillis() >= deadline) {
+	    logger.warn(frontier.getNumberOfAssignedPages() + " URLs were still assigned at the shutdown deadline.");
+	    return true;
+	}
+	return false;
+    }
+
+    /**
+     * Returns how long to wait for the crawler threads to exit once the crawl
+     * is finished.
+     */
+    protected long getExitTimeout() {
+	long deadline = shutdownDeadline;
+	if (deadline > 0) {
+	    return Math.max(1, deadline - System.currentTimeMillis());
+	}
+	return CRAWLER_EXIT_TIMEOUT;
+    }
+
     /**
      * Once the crawling session finishes the controller collects the local data
      * of the crawler threads and stores them in a List. This function returns
@@ -341,25 +813,22 @@ public class CrawlController extends Configurable
 	    logger.error("Invalid seed URL: " + pageUrl);
 	    return;
 	}
+	WebURL webUrl = new WebURL();
+	webUrl.setURL(canonicalUrl);
+	webUrl.setDepth((short) 0);
 	if (docId < 0) {
-	    docId = docIdServer.getDocId(canonicalUrl);
-	    if (docId > 0) {
+	    if (!docIdServer.getOrAssign(webUrl)) {
 		// This URL is already seen.
 		return;
 	    }
-	    docId = docIdServer.getNewDocID(canonicalUrl);
 	} else {
 	    try {
 		docIdServer.addUrlAndDocId(canonicalUrl, docId);
 	    } catch (Exception e) {
 		logger.error("Could not add seed: " + e.getMessage());
 	    }
+	    webUrl.setDocid(docId);
 	}
-
-	WebURL webUrl = new WebURL();
-	webUrl.setURL(canonicalUrl);
-	webUrl.setDocid(docId);
-	webUrl.setDepth((short) 0);
 	if (!robotstxtServer.allows(webUrl)) {
 	    logger.info("Robots.txt does not allow this seed: " + pageUrl);
 	} else {
@@ -420,14 +889,35 @@ public class CrawlController extends Configurable
 	this.frontier = frontier;
     }
 
-    public DocIDServer getDocIdServer() {
+    public DocIDStore getDocIdStore() {
 	return docIdServer;
     }
 
+    public void setDocIdStore(DocIDStore docIdServer) {
+	this.docIdServer = docIdServer;
+    }
+
+    /**
+     * @deprecated Use {@link #getDocIdStore()} instead. Stores that are not
+     *             DocIDServers are wrapped in one.
+     */
+    @Deprecated
+    public DocIDServer getDocIdServer() {
+	return DocIDServer.of(docIdServer, config);
+    }
+
+    /**
+     * @deprecated Use {@link #setDocIdStore(DocIDStore)} instead.
+     */
+    @Deprecated
     public void setDocIdServer(DocIDServer docIdServer) {
 	this.docIdServer = docIdServer;
     }
 
+    public FrontierStorage getFrontierStorage() {
+	return frontierStorage;
+    }
+
     public Object getCustomData() {
 	return customData;
     }
@@ -447,11 +937,70 @@ public class CrawlController extends Configurable
     /**
      * Set the current crawling session set to 'shutdown'. Crawler threads
      * monitor the shutdown flag and when it is set to true, they will no longer
-     * process new pages.
+     * process new pages. The URLs they were assigned but did not get to are
+     * handed back to the frontier. If the config sets a shutdownTimeout, the
+     * shutdown is bounded by it, see {@link #shutdown(long)}.
      */
     public void shutdown() {
+	startShutdown(config.getShutdownTimeout());
+    }
+
+    /**
+     * Shuts the crawling session down and waits for it to finish, for at most
+     * timeout milliseconds. The crawlers stop after the page they are
+     * processing. If they are not done within half of the timeout, the
+     * requests in progress are aborted, and the URLs of the aborted pages are
+     * handed back to the frontier as well. Crawler threads that are still
+     * busy after three quarters of the timeout are left behind, and the
+     * frontier is closed, which flushes its counters and the Berkeley DB
+     * environment. A resumable crawl started again later picks up all URLs
+     * that were not processed.
+     * 
+     * @return true if the crawling session finished within the timeout.
+     */
+    public boolean shutdown(long timeout) throws InterruptedException {
+	if (timeout <= 0) {
+	    throw new IllegalArgumentException("Invalid shutdown timeout: " + timeout);
+	}
+	startShutdown(timeout);
+	return waitUntilFinish(timeout);
+    }
+
+    protected void startShutdown(final long timeout) {
 	logger.info("Shutting down...");
-	this.shuttingDown = true;
+	final long start = System.currentTimeMillis();
+	if (timeout > 0) {
+	    shutdownDeadline = start + timeout * 3 / 4;
+	}
+	synchronized (crawlers) {
+	    this.shuttingDown = true;
+	    for (Crawler crawler : crawlers) {
+		// Other crawlers stop once the frontier is finished
+		if (crawler instanceof ProcessingCrawler) {
+		    ((ProcessingCrawler) crawler).shutdown();
+		}
+	    }
+	}
 	frontier.finish();
+
+	if (timeout > 0) {
+	    Thread abortThread = new Thread(new Runnable() {
+
+		@Override
+		public void run() {
+		    try {
+			if (!waitUntilFinish(timeout / 2)) {
+			    logger.info("Crawlers did not stop within " + (timeout / 2)
+				    + " ms, aborting the requests in progress.");
+			    pageFetcher.abort();
+			}
+		    } catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		    }
+		}
+	    }, "Crawl shutdown");
+	    abortThread.setDaemon(true);
+	    abortThread.start();
+	}
     }
 }
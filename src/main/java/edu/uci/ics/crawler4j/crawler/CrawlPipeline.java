@@ -0,0 +1,561 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.crawler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+
+import edu.uci.ics.crawler4j.fetcher.AsyncPageFetcher;
+import edu.uci.ics.crawler4j.fetcher.CustomFetchStatus;
+import edu.uci.ics.crawler4j.fetcher.PageFetchResult;
+import edu.uci.ics.crawler4j.frontier.Frontier;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * Runs a crawl as three stages, each with threads of its own: the fetch stage
+ * takes URLs from the frontier and downloads the pages, the parse stage parses
+ * them and the visit stage admits their outgoing links and visits them. This
+ * way slow network I/O and CPU heavy parsing do not hold up each other.
+ * <p>
+ * The stages are connected by bounded queues. Once a queue is full the stage
+ * feeding it waits, so fetching never gets far ahead of parsing. Every thread
+ * has a crawler instance of its own, since crawlers are not thread-safe.
+ * <p>
+ * If the page fetcher of the controller is an {@link AsyncPageFetcher}, a
+ * dispatcher thread sends up to maxTotalConnections requests at a time, and
+ * the threads of the fetch stage only turn the responses into pages. A full
+ * parse queue then holds up the dispatcher as well.
+ */
+public class CrawlPipeline
+{
+
+    protected static final Logger logger = Logger.getLogger(CrawlPipeline.class.getName());
+
+    /**
+     * A stage of the pipeline and its metrics.
+     */
+    public static class Stage
+    {
+
+	private final String name;
+
+	private final BlockingQueue<Page> input;
+
+	private final List<Thread> threads = new ArrayList<>();
+
+	private final AtomicLong processed = new AtomicLong();
+
+	Stage(String name, BlockingQueue<Page> input) {
+	    this.name = name;
+	    this.input = input;
+	}
+
+	public String getName() {
+	    return name;
+	}
+
+	public int getThreadCount() {
+	    return threads.size();
+	}
+
+	/**
+	 * Returns the number of pages that are waiting in the queue of this
+	 * stage. The fetch stage reads from the frontier and has no queue.
+	 */
+	public int getQueueDepth() {
+	    return input == null ? 0 : input.size();
+	}
+
+	public int getQueueCapacity() {
+	    return input == null ? 0 : input.size() + input.remainingCapacity();
+	}
+
+	/**
+	 * Returns the number of URLs or pages this stage is done with.
+	 */
+	public long getProcessedCount() {
+	    return processed.get();
+	}
+
+	@Override
+	public String toString() {
+	    return name + ": " + threads.size() + " threads, " + getQueueDepth() + "/" + getQueueCapacity()
+		    + " queued, " + processed.get() + " processed";
+	}
+    }
+
+    protected final CrawlController controller;
+
+    protected final Frontier frontier;
+
+    protected final BlockingQueue<Page> parseQueue;
+
+    protected final BlockingQueue<Page> visitQueue;
+
+    protected final Stage fetchStage;
+
+    protected final Stage parseStage;
+
+    protected final Stage visitStage;
+
+    protected final List<ProcessingCrawler> crawlers = new ArrayList<>();
+
+    protected volatile boolean stopped = false;
+
+    /**
+     * How often, in milliseconds, the threads that wait on a queue check
+     * whether the pipeline was stopped.
+     */
+    protected static final int POLL_INTERVAL = 100;
+
+    /**
+     * A URL and the result of fetching it.
+     */
+    protected static class FetchedURL
+    {
+
+	final WebURL url;
+
+	final PageFetchResult fetchResult;
+
+	FetchedURL(WebURL url, PageFetchResult fetchResult) {
+	    this.url = url;
+	    this.fetchResult = fetchResult;
+	}
+    }
+
+    /**
+     * The async fetcher of the controller, or null if the fetch stage fetches
+     * the pages itself.
+     */
+    protected final AsyncPageFetcher asyncFetcher;
+
+    /**
+     * The responses of the async fetcher, waiting to be turned into pages by
+     * the fetch stage.
+     */
+    protected final BlockingQueue<FetchedURL> fetchedQueue = new LinkedBlockingQueue<>();
+
+    /**
+     * Permits for the requests of the async fetcher, held from sending the
+     * request until the fetch stage took the response.
+     */
+    protected final Semaphore fetchPermits;
+
+    protected final int maxFetchesInFlight;
+
+    protected final Thread dispatcherThread;
+
+    /**
+     * Creates the stages and their crawler instances. The parse and visit
+     * stages are sized by the config of the controller.
+     *
+     * @param numberOfFetchers
+     *            the number of threads of the fetch stage.
+     */
+    public CrawlPipeline(CrawlController controller, CrawlerFactory factory, int numberOfFetchers) throws Exception {
+	this.controller = controller;
+	this.frontier = controller.getFrontier();
+	CrawlConfig config = controller.getConfig();
+	int parseThreads = config.getParseThreads();
+	if (parseThreads == 0) {
+	    parseThreads = Runtime.getRuntime().availableProcessors();
+	}
+	parseQueue = new ArrayBlockingQueue<>(config.getPipelineQueueCapacity());
+	visitQueue = new ArrayBlockingQueue<>(config.getPipelineQueueCapacity());
+	fetchStage = new Stage("Fetch", null);
+	parseStage = new Stage("Parse", parseQueue);
+	visitStage = new Stage("Visit", visitQueue);
+
+	if (controller.getPageFetcher() instanceof AsyncPageFetcher) {
+	    asyncFetcher = (AsyncPageFetcher) controller.getPageFetcher();
+	    maxFetchesInFlight = config.getMaxTotalConnections();
+	    fetchPermits = new Semaphore(maxFetchesInFlight);
+	    dispatcherThread = new Thread(new Runnable() {
+
+		@Override
+		public void run() {
+		    dispatchLoop();
+		}
+	    }, "Fetch dispatcher");
+	} else {
+	    asyncFetcher = null;
+	    maxFetchesInFlight = 0;
+	    fetchPermits = null;
+	    dispatcherThread = null;
+	}
+
+	for (int i = 0; i < numberOfFetchers; i++) {
+	    final ProcessingCrawler crawler = newCrawler(factory);
+	    addThread(fetchStage, crawler, new Runnable() {
+
+		@Override
+		public void run() {
+		    if (asyncFetcher == null) {
+			fetchLoop(crawler);
+		    } else {
+			loadLoop(crawler);
+		    }
+		}
+	    });
+	}
+	for (int i = 0; i < parseThreads; i++) {
+	    final ProcessingCrawler crawler = newCrawler(factory);
+	    addThread(parseStage, crawler, new Runnable() {
+
+		@Override
+		public void run() {
+		    parseLoop(crawler);
+		}
+	    });
+	}
+	for (int i = 0; i < config.getVisitThreads(); i++) {
+	    final ProcessingCrawler crawler = newCrawler(factory);
+	    addThread(visitStage, crawler, new Runnable() {
+
+		@Override
+		public void run() {
+		    visitLoop(crawler);
+		}
+	    });
+	}
+    }
+
+    private ProcessingCrawler newCrawler(CrawlerFactory factory) throws Exception {
+	Crawler crawler = factory.newCrawler();
+	if (!(crawler instanceof ProcessingCrawler)) {
+	    throw new IllegalArgumentException(crawler.getClass().getName()
+		    + " has to implement ProcessingCrawler to run in a pipeline.");
+	}
+	crawler.init(crawlers.size() + 1, controller);
+	crawlers.add((ProcessingCrawler) crawler);
+	return (ProcessingCrawler) crawler;
+    }
+
+    private void addThread(Stage stage, Crawler crawler, Runnable loop) {
+	Thread thread = new Thread(loop, stage.getName() + " " + (stage.threads.size() + 1));
+	crawler.setThread(thread);
+	stage.threads.add(thread);
+    }
+
+    /**
+     * Starts the threads of all stages.
+     */
+    public void start() {
+	for (Crawler crawler : crawlers) {
+	    crawler.onStart();
+	}
+	for (Stage stage : getStages()) {
+	    for (Thread thread : stage.threads) {
+		thread.start();
+	    }
+	    logger.info(stage.getName() + " stage started with " + stage.threads.size() + " threads.");
+	}
+	if (dispatcherThread != null) {
+	    dispatcherThread.start();
+	    logger.info("Fetch dispatcher started with up to " + maxFetchesInFlight + " requests in flight.");
+	}
+    }
+
+    /**
+     * Stops the threads of all stages and waits for them to exit, for at most
+     * timeout milliseconds in total. The URLs of pages that are still queued
+     * are handed back to the frontier, so this should be called once the
+     * frontier is idle or finished.
+     */
+    public void stop(long timeout) throws InterruptedException {
+	// The threads are not interrupted, as they may be writing to the
+	// databases. They check the flag at least every POLL_INTERVAL ms while
+	// they wait on a queue, and once they are done with the page at hand.
+	stopped = true;
+	long deadline = System.currentTimeMillis() + timeout;
+	if (dispatcherThread != null) {
+	    dispatcherThread.join(Math.max(1, deadline - System.currentTimeMillis()));
+	}
+	for (Stage stage : getStages()) {
+	    for (Thread thread : stage.threads) {
+		thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+		if (thread.isAlive()) {
+		    logger.warn(thread.getName() + " did not stop within " + timeout + " ms.");
+		}
+	    }
+	}
+	List<WebURL> urls = new ArrayList<>();
+	synchronized (fetchedQueue) {
+	    // Responses that arrive from now on are released by the callback
+	    for (FetchedURL fetched : fetchedQueue) {
+		fetched.fetchResult.discardContentIfNotConsumed();
+		urls.add(fetched.url);
+	    }
+	    fetchedQueue.clear();
+	}
+	List<Page> pages = new ArrayList<>();
+	parseQueue.drainTo(pages);
+	visitQueue.drainTo(pages);
+	for (Page page : pages) {
+	    urls.add(page.getWebURL());
+	}
+	frontier.release(urls);
+    }
+
+    protected void fetchLoop(ProcessingCrawler crawler) {
+	List<WebURL> urls = new ArrayList<>(1);
+	while (!stopped) {
+	    urls.clear();
+	    frontier.getNextURLs(1, urls);
+	    if (urls.isEmpty()) {
+		if (frontier.isFinished()) {
+		    return;
+		}
+		continue;
+	    }
+	    WebURL url = urls.get(0);
+	    if (stopped || controller.isShuttingDown()) {
+		frontier.release(urls);
+		return;
+	    }
+	    Page page = null;
+	    try {
+		page = crawler.fetch(url);
+	    } catch (RuntimeException e) {
+		logger.error(e.getMessage() + ", while fetching: " + url.getURL());
+	    }
+	    fetchStage.processed.incrementAndGet();
+	    if (page == null) {
+		controller.setProcessed(url);
+	    } else if (!hand(page, parseQueue)) {
+		return;
+	    }
+	}
+    }
+
+    /**
+     * Takes URLs from the frontier and sends their requests with the async
+     * fetcher, as long as there are permits left. The responses are queued
+     * for the fetch stage.
+     */
+    protected void dispatchLoop() {
+	List<WebURL> urls = new ArrayList<>(1);
+	while (!stopped) {
+	    try {
+		if (!fetchPermits.tryAcquire(POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+		    continue;
+		}
+	    } catch (InterruptedException e) {
+		return;
+	    }
+	    urls.clear();
+	    frontier.getNextURLs(1, urls);
+	    if (urls.isEmpty()) {
+		fetchPermits.release();
+		if (frontier.isFinished()) {
+		    return;
+		}
+		continue;
+	    }
+	    final WebURL url = urls.get(0);
+	    if (stopped || controller.isShuttingDown()) {
+		fetchPermits.release();
+		frontier.release(urls);
+		return;
+	    }
+	    // Runs on an I/O dispatch thread of the fetcher, so it only queues
+	    // the response
+	    Futures.addCallback(asyncFetcher.fetchAsync(url), new FutureCallback<PageFetchResult>() {
+
+		@Override
+		public void onSuccess(PageFetchResult fetchResult) {
+		    queueFetched(new FetchedURL(url, fetchResult));
+		}
+
+		@Override
+		public void onFailure(Throwable t) {
+		    logger.error(t.getMessage() + ", while fetching: " + url.getURL());
+		    PageFetchResult fetchResult = new PageFetchResult();
+		    // abort() cancels the requests in progress
+		    fetchResult.setStatusCode(asyncFetcher.isAborted() ? CustomFetchStatus.Aborted
+			    : CustomFetchStatus.UnknownError);
+		    queueFetched(new FetchedURL(url, fetchResult));
+		}
+	    });
+	}
+    }
+
+    private void queueFetched(FetchedURL fetched) {
+	synchronized (fetchedQueue) {
+	    if (!stopped) {
+		fetchedQueue.add(fetched);
+		return;
+	    }
+	}
+	fetched.fetchResult.discardContentIfNotConsumed();
+	fetchPermits.release();
+	frontier.release(Collections.singletonList(fetched.url));
+    }
+
+    /**
+     * Turns the responses of the async fetcher into pages and passes them on
+     * to the parse stage.
+     */
+    protected void loadLoop(ProcessingCrawler crawler) {
+	while (!stopped) {
+	    FetchedURL fetched = take(fetchedQueue);
+	    if (fetched == null) {
+		return;
+	    }
+	    fetchPermits.release();
+	    Page page = null;
+	    try {
+		page = crawler.fetched(fetched.url, fetched.fetchResult);
+	    } catch (RuntimeException e) {
+		logger.error(e.getMessage() + ", while fetching: " + fetched.url.getURL());
+	    }
+	    fetchStage.processed.incrementAndGet();
+	    if (page == null) {
+		controller.setProcessed(fetched.url);
+	    } else if (!hand(page, parseQueue)) {
+		return;
+	    }
+	}
+    }
+
+    protected void parseLoop(ProcessingCrawler crawler) {
+	while (!stopped) {
+	    Page page = take(parseQueue);
+	    if (page == null) {
+		return;
+	    }
+	    boolean parsed = false;
+	    try {
+		parsed = crawler.parse(page);
+	    } catch (RuntimeException e) {
+		logger.error(e.getMessage() + ", while parsing: " + page.getWebURL().getURL());
+	    }
+	    parseStage.processed.incrementAndGet();
+	    if (!parsed) {
+		controller.setProcessed(page.getWebURL());
+	    } else if (!hand(page, visitQueue)) {
+		return;
+	    }
+	}
+    }
+
+    protected void visitLoop(ProcessingCrawler crawler) {
+	while (!stopped) {
+	    Page page = take(visitQueue);
+	    if (page == null) {
+		return;
+	    }
+	    try {
+		crawler.handle(page);
+	    } catch (RuntimeException e) {
+		logger.error(e.getMessage() + ", while visiting: " + page.getWebURL().getURL());
+	    } finally {
+		visitStage.processed.incrementAndGet();
+		controller.setProcessed(page.getWebURL());
+	    }
+	}
+    }
+
+    /**
+     * Passes a page on to the next stage, waiting while its queue is full. If
+     * the pipeline is stopped in the meantime, the URL of the page is handed
+     * back to the frontier and false is returned.
+     */
+    private boolean hand(Page page, BlockingQueue<Page> queue) {
+	try {
+	    while (!stopped) {
+		if (queue.offer(page, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+		    // If stop() drained the queue before the page was added,
+		    // the page has to be taken back out here
+		    if (!stopped || !queue.remove(page)) {
+			return true;
+		    }
+		    break;
+		}
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+	frontier.release(Collections.singletonList(page.getWebURL()));
+	return false;
+    }
+
+    /**
+     * Takes the next element of the queue, or returns null once the pipeline
+     * is stopped.
+     */
+    private <T> T take(BlockingQueue<T> queue) {
+	try {
+	    while (!stopped) {
+		T element = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+		if (element != null) {
+		    return element;
+		}
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+	return null;
+    }
+
+    /**
+     * Returns the number of requests of the async fetcher that were sent and
+     * whose responses were not taken by the fetch stage yet, 0 if the pages
+     * are not fetched asynchronously.
+     */
+    public int getFetchesInFlight() {
+	return fetchPermits == null ? 0 : maxFetchesInFlight - fetchPermits.availablePermits();
+    }
+
+    public Stage getFetchStage() {
+	return fetchStage;
+    }
+
+    public Stage getParseStage() {
+	return parseStage;
+    }
+
+    public Stage getVisitStage() {
+	return visitStage;
+    }
+
+    public List<Stage> getStages() {
+	List<Stage> stages = new ArrayList<>(3);
+	stages.add(fetchStage);
+	stages.add(parseStage);
+	stages.add(visitStage);
+	return stages;
+    }
+
+    public List<ProcessingCrawler> getCrawlers() {
+	return Collections.unmodifiableList(crawlers);
+    }
+}
@@ -2,6 +2,12 @@ package edu.uci.ics.crawler4j.crawler;
 
 import edu.uci.ics.crawler4j.url.WebURL;
 
+/**
+ * A crawler instance, run on a thread of its own by {@link CrawlController}.
+ * Optional capabilities go into sub-interfaces such as
+ * {@link ProcessingCrawler}, so classes that implement this interface
+ * directly keep compiling.
+ */
 // FIXME should really extends Runnable?
 public interface Crawler
     extends
@@ -1,6 +1,45 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
 package edu.uci.ics.crawler4j.crawler;
 
-public class CrawlerFactory
+/**
+ * Supplies the crawler instances of a crawl. The controller gets a crawler
+ * from the factory whenever it needs one, calls
+ * {@link Crawler#init(int, CrawlController)} on it and hands it back through
+ * {@link #release(Crawler)} once the crawler is not used anymore: when its
+ * thread died and is recreated, and at the end of the crawl.
+ * <p>
+ * See {@link ReflectiveCrawlerFactory} for a factory that creates a new
+ * instance every time and {@link PooledCrawlerFactory} for one that reuses
+ * released instances.
+ */
+public interface CrawlerFactory
 {
-    // TODO Implement!
+
+    /**
+     * Returns a crawler that is not used by anyone else. It may be a crawler
+     * that was used and released before, in which case it is initialized
+     * again.
+     */
+    Crawler newCrawler() throws Exception;
+
+    /**
+     * Gives back a crawler that the controller does not use anymore.
+     */
+    void release(Crawler crawler);
 }
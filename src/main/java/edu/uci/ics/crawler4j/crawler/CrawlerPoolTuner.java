@@ -0,0 +1,177 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.crawler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+import org.apache.log4j.Logger;
+
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.frontier.Frontier;
+
+/**
+ * Adjusts the number of crawler threads of a running crawl, see
+ * {@link CrawlController#setNumberOfCrawlers(int)}.
+ * <p>
+ * Every interval the tuner looks at the average fetch latency measured by the
+ * {@link PageFetcher}, the CPU use of the process and the number of URLs
+ * queued in the frontier. Threads that spend most of their time waiting for
+ * responses are cheap, so while they do and enough URLs are queued, threads
+ * are added in proportion to the CPU left unused below targetCpuLoad. Threads
+ * are removed while the CPU use is above the target. Where the CPU use is not
+ * available, the number of threads that keeps the processors busy is
+ * estimated as cores * targetCpuLoad * (1 + wait / compute) instead.
+ */
+public class CrawlerPoolTuner
+    implements
+    Runnable
+{
+
+    protected static final Logger logger = Logger.getLogger(CrawlerPoolTuner.class.getName());
+
+    protected final CrawlController controller;
+
+    protected final CrawlConfig config;
+
+    protected final PageFetcher pageFetcher;
+
+    protected final Frontier frontier;
+
+    protected final int cores = Runtime.getRuntime().availableProcessors();
+
+    protected Thread thread;
+
+    protected volatile boolean running = false;
+
+    private long lastTime;
+    private long lastFetchCount;
+    private long lastFetchTime;
+    private long lastProcessed;
+
+    public CrawlerPoolTuner(CrawlController controller) {
+	this.controller = controller;
+	this.config = controller.getConfig();
+	this.pageFetcher = controller.getPageFetcher();
+	this.frontier = controller.getFrontier();
+    }
+
+    public void start() {
+	lastTime = System.currentTimeMillis();
+	lastFetchCount = pageFetcher.getFetchCount();
+	lastFetchTime = pageFetcher.getTotalFetchTime();
+	lastProcessed = frontier.getNumberOfProcessedPages();
+	running = true;
+	thread = new Thread(this, "CrawlerPoolTuner");
+	thread.setDaemon(true);
+	thread.start();
+    }
+
+    public void shutdown() {
+	running = false;
+	if (thread != null) {
+	    thread.interrupt();
+	}
+    }
+
+    @Override
+    public void run() {
+	while (running) {
+	    try {
+		Thread.sleep(config.getAutoTuneInterval());
+	    } catch (InterruptedException e) {
+		return;
+	    }
+	    try {
+		tune();
+	    } catch (RuntimeException e) {
+		logger.error("Error while tuning the number of crawlers: " + e.getMessage());
+	    }
+	}
+    }
+
+    protected void tune() {
+	long now = System.currentTimeMillis();
+	long fetchCount = pageFetcher.getFetchCount();
+	long fetchTime = pageFetcher.getTotalFetchTime();
+	long processed = frontier.getNumberOfProcessedPages();
+	double cpuLoad = getCpuLoad();
+
+	int current = controller.getNumberOfCrawlers();
+	int target = getTargetNumberOfCrawlers(current, now - lastTime, processed - lastProcessed, fetchCount
+		- lastFetchCount, fetchTime - lastFetchTime, cpuLoad, frontier.getQueueLength());
+	lastTime = now;
+	lastFetchCount = fetchCount;
+	lastFetchTime = fetchTime;
+	lastProcessed = processed;
+
+	if (target != current) {
+	    logger.info("Changing the number of crawlers from " + current + " to " + target);
+	    controller.setNumberOfCrawlers(target);
+	}
+    }
+
+    /**
+     * Returns the recent CPU use of this process as a fraction of all
+     * processors. Falls back to the system load average where the JVM does not
+     * report it, and returns a negative value if neither is available.
+     */
+    protected double getCpuLoad() {
+	OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+	if (os instanceof com.sun.management.OperatingSystemMXBean) {
+	    double load = ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuLoad();
+	    if (load >= 0) {
+		return load;
+	    }
+	}
+	return os.getSystemLoadAverage() / cores;
+    }
+
+    /**
+     * Returns the number of crawlers to use next, given what was measured
+     * during the last interval.
+     *
+     * @param cpuLoad
+     *            the CPU use as a fraction of all processors, negative if not
+     *            available.
+     */
+    protected int getTargetNumberOfCrawlers(int current, long elapsed, long processed, long fetches,
+	    long fetchTime, double cpuLoad, long queueLength) {
+	int target = current;
+	// The estimates assume that the threads always have work, which only
+	// holds while enough URLs are queued
+	if (processed > 0 && fetches > 0 && queueLength >= current) {
+	    double wait = (double) fetchTime / fetches;
+	    double busy = (double) current * elapsed / processed;
+	    if (cpuLoad < 0) {
+		double compute = Math.max(busy - wait, 1);
+		target = (int) Math.round(cores * config.getTargetCpuLoad() * (1 + wait / compute));
+	    } else if (wait * 2 >= busy) {
+		target = (int) Math.round(current * config.getTargetCpuLoad() / Math.max(cpuLoad, 0.01));
+	    }
+	}
+	if (cpuLoad > config.getTargetCpuLoad()) {
+	    target = Math.min(target, (int) (current * config.getTargetCpuLoad() / cpuLoad));
+	}
+
+	// Change gradually, the measurements lag behind
+	int step = Math.max(1, current / 4);
+	target = Math.max(current - step, Math.min(current + step, target));
+	return Math.max(config.getMinCrawlers(), Math.min(config.getMaxCrawlers(), target));
+    }
+}
@@ -17,15 +17,17 @@
 
 package edu.uci.ics.crawler4j.crawler;
 
+import java.io.InputStream;
 import java.nio.charset.Charset;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.entity.ContentType;
-import org.apache.http.util.EntityUtils;
 
+import edu.uci.ics.crawler4j.fetcher.PageTooBigException;
 import edu.uci.ics.crawler4j.parser.ParseData;
 import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.BufferPool;
 
 /**
  * This class contains the data for a fetched and parsed page.
@@ -73,6 +75,8 @@ public class Page {
      */
     protected ParseData parseData;
 
+	private static final BufferPool UNPOOLED = new BufferPool(4096, 0);
+
 	public Page(WebURL url) {
 		this.url = url;
 	}
@@ -90,6 +94,19 @@ public class Page {
      * HttpEntity.
      */
 	public void load(HttpEntity entity) throws Exception {
+		load(entity, Integer.MAX_VALUE, UNPOOLED);
+	}
+
+	/**
+	 * Loads the content of this page from a fetched HttpEntity, reading it
+	 * into buffers of the given pool. The limit applies to the content as it
+	 * is read, after decompression, so the download stops as soon as it is
+	 * passed.
+	 * 
+	 * @throws PageTooBigException
+	 *             if the content is longer than maxSize bytes.
+	 */
+	public void load(HttpEntity entity, int maxSize, BufferPool buffers) throws Exception {
 
 		contentType = null;
 		Header type = entity.getContentType();
@@ -108,7 +125,17 @@ public class Page {
 			contentCharset = charset.displayName();	
 		}
 
-		contentData = EntityUtils.toByteArray(entity);
+		contentData = null;
+		InputStream in = entity.getContent();
+		if (in != null) {
+			byte[] content = buffers.read(in, maxSize);
+			if (content == null) {
+				// Closing the stream would read the rest of it
+				throw new PageTooBigException("Content is larger than " + maxSize + " bytes");
+			}
+			in.close();
+			contentData = content;
+		}
 	}
 	
 	/**
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.crawler;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps released crawlers and hands them out again instead of creating new
+ * ones. Crawlers that hold expensive state, such as parsers, buffers or
+ * database handles, set it up once and keep it across thread restarts and
+ * across crawls, as long as the same factory is passed to the controller.
+ * <p>
+ * Crawlers used with this factory must expect
+ * {@link Crawler#init(int, CrawlController)} to be called more than once, and
+ * reset whatever state should not carry over there.
+ */
+public class PooledCrawlerFactory
+    implements
+    CrawlerFactory
+{
+
+    protected final CrawlerFactory delegate;
+
+    protected final Queue<Crawler> pool = new ConcurrentLinkedQueue<>();
+
+    protected final AtomicLong created = new AtomicLong();
+
+    protected final AtomicLong reused = new AtomicLong();
+
+    /**
+     * @param delegate
+     *            the factory that creates crawlers while the pool is empty.
+     */
+    public PooledCrawlerFactory(CrawlerFactory delegate) {
+	this.delegate = delegate;
+    }
+
+    public PooledCrawlerFactory(Class<? extends Crawler> crawlerClass) {
+	this(new ReflectiveCrawlerFactory(crawlerClass));
+    }
+
+    /**
+     * Creates crawlers until the pool holds at least the given number of
+     * them, so that starting a crawl does not have to.
+     */
+    public void preallocate(int numberOfCrawlers) throws Exception {
+	while (pool.size() < numberOfCrawlers) {
+	    pool.add(delegate.newCrawler());
+	    created.incrementAndGet();
+	}
+    }
+
+    @Override
+    public Crawler newCrawler() throws Exception {
+	Crawler crawler = pool.poll();
+	if (crawler != null) {
+	    reused.incrementAndGet();
+	    return crawler;
+	}
+	created.incrementAndGet();
+	return delegate.newCrawler();
+    }
+
+    @Override
+    public void release(Crawler crawler) {
+	crawler.setThread(null);
+	pool.add(crawler);
+    }
+
+    /**
+     * Returns the number of crawlers waiting in the pool.
+     */
+    public int getPoolSize() {
+	return pool.size();
+    }
+
+    /**
+     * Returns the number of crawlers created by the delegate factory.
+     */
+    public long getCreatedCount() {
+	return created.get();
+    }
+
+    /**
+     * Returns the number of times a crawler was taken from the pool instead
+     * of being created.
+     */
+    public long getReusedCount() {
+	return reused.get();
+    }
+}
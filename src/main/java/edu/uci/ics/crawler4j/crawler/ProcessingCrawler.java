@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.crawler;
+
+import edu.uci.ics.crawler4j.fetcher.PageFetchResult;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * A {@link Crawler} that can be handed single URLs to process, instead of
+ * taking them from the frontier in {@link #run()}, or single steps of the
+ * processing of a URL. This is what the executor mode of
+ * {@link CrawlController} and the stages of a {@link CrawlPipeline} need. It
+ * can also be asked to stop early, which the controller uses to shrink the
+ * number of crawlers of a running crawl.
+ * {@link WebCrawler} and {@link AbstractCrawler} implement it; crawlers that
+ * implement {@link Crawler} directly keep working in the thread-per-crawler
+ * mode.
+ */
+public interface ProcessingCrawler
+    extends
+    Crawler
+{
+
+    /**
+     * Fetches and processes a single URL that was taken from the frontier.
+     * The page is fetched and parsed, its outgoing links are scheduled and it
+     * is passed to {@link #visit(Page)}. The URL is not marked as processed in
+     * the frontier, which is left to the caller.
+     */
+    void process(WebURL url);
+
+    /**
+     * First step of {@link #process(WebURL)}: fetches the URL and loads the
+     * content of the page, handling redirects and error status codes. Used by
+     * the fetch stage of a {@link CrawlPipeline}.
+     *
+     * @return the fetched page, or null if there is nothing more to do for the
+     *         URL.
+     */
+    Page fetch(WebURL url);
+
+    /**
+     * Same as {@link #fetch(WebURL)}, for a URL that was already fetched. The
+     * fetch stage of a {@link CrawlPipeline} uses it for the results of an
+     * {@link edu.uci.ics.crawler4j.fetcher.AsyncPageFetcher}.
+     *
+     * @return the fetched page, or null if there is nothing more to do for the
+     *         URL.
+     */
+    Page fetched(WebURL url, PageFetchResult fetchResult);
+
+    /**
+     * Second step of {@link #process(WebURL)}: parses a fetched page.
+     *
+     * @return true if the page was parsed and should be handled.
+     */
+    boolean parse(Page page);
+
+    /**
+     * Last step of {@link #process(WebURL)}: schedules the outgoing links of
+     * a parsed page and visits it.
+     */
+    void handle(Page page);
+
+    /**
+     * Asks this crawler to stop once it is done with the page it is
+     * processing. The URLs it was assigned but did not get to are handed back
+     * to the frontier. Used to shrink the number of crawlers of a running
+     * crawl.
+     */
+    void shutdown();
+}
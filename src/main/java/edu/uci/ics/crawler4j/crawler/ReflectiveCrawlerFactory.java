@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.crawler;
+
+/**
+ * Creates a new instance of the crawler class through its no-argument
+ * constructor every time a crawler is needed. Released crawlers are dropped.
+ * This is what the controller uses when it is started with a crawler class.
+ */
+public class ReflectiveCrawlerFactory
+    implements
+    CrawlerFactory
+{
+
+    protected final Class<? extends Crawler> crawlerClass;
+
+    public ReflectiveCrawlerFactory(Class<? extends Crawler> crawlerClass) {
+	this.crawlerClass = crawlerClass;
+    }
+
+    @Override
+    public Crawler newCrawler() throws InstantiationException, IllegalAccessException {
+	return crawlerClass.newInstance();
+    }
+
+    @Override
+    public void release(Crawler crawler) {
+	// Nothing to keep
+    }
+
+    public Class<? extends Crawler> getCrawlerClass() {
+	return crawlerClass;
+    }
+}
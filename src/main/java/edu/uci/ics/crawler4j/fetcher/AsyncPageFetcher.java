@@ -0,0 +1,459 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.client.params.CookiePolicy;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.params.ConnRoutePNames;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.DefaultHttpAsyncClient;
+import org.apache.http.impl.nio.conn.PoolingClientAsyncConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.conn.scheme.AsyncScheme;
+import org.apache.http.nio.conn.scheme.AsyncSchemeRegistry;
+import org.apache.http.nio.conn.ssl.SSLLayeringStrategy;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.params.CoreProtocolPNames;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParamBean;
+import org.apache.http.protocol.HttpContext;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.url.URLCanonicalizer;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * A {@link PageFetcher} that sends its requests with a non-blocking HTTP
+ * client and hands out futures of the results. A few I/O dispatch threads
+ * serve all connections, so thousands of requests can be in flight without a
+ * thread each. Requests are not sent before the politeness window of their
+ * host opens; a single timer thread sends them then, without waiting for the
+ * response. The content is read into memory as it arrives, and responses
+ * larger than the max download size are cut off, so the returned results can
+ * be passed to {@link PageFetchResult#fetchContent} without further network
+ * I/O.
+ * <p>
+ * The blocking {@link #fetchHeader(WebURL)} waits for the future, so this
+ * fetcher can be used wherever a PageFetcher is. The fetchers are sized by
+ * fetcherThreads, maxTotalConnections and maxConnectionsPerHost. Hosts are
+ * resolved by the system resolver, the dnsCacheSize only applies to the
+ * blocking client.
+ */
+public class AsyncPageFetcher extends PageFetcher {
+
+	protected final DefaultHttpAsyncClient asyncClient;
+
+	protected final ScheduledExecutorService timer;
+
+	/**
+	 * The requests that were sent and not answered yet, to be cancelled by
+	 * {@link #abort()}.
+	 */
+	protected final Set<Future<HttpResponse>> pendingFutures = Collections
+			.newSetFromMap(new ConcurrentHashMap<Future<HttpResponse>, Boolean>());
+
+	public AsyncPageFetcher(CrawlConfig config) throws IOReactorException {
+		super(config);
+
+		IOReactorConfig reactorConfig = new IOReactorConfig();
+		reactorConfig.setIoThreadCount(config.getFetcherThreads());
+		reactorConfig.setConnectTimeout(config.getConnectionTimeout());
+		reactorConfig.setSoTimeout(config.getSocketTimeout());
+
+		AsyncSchemeRegistry schemeRegistry = new AsyncSchemeRegistry();
+		schemeRegistry.register(new AsyncScheme("http", 80, null));
+		if (config.isIncludeHttpsPages()) {
+			schemeRegistry.register(new AsyncScheme("https", 443, SSLLayeringStrategy.getDefaultStrategy()));
+		}
+
+		PoolingClientAsyncConnectionManager asyncConnectionManager = new PoolingClientAsyncConnectionManager(
+				new DefaultConnectingIOReactor(reactorConfig), schemeRegistry);
+		asyncConnectionManager.setMaxTotal(config.getMaxTotalConnections());
+		asyncConnectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerHost());
+		asyncClient = new DefaultHttpAsyncClient(asyncConnectionManager);
+
+		HttpParams params = asyncClient.getParams();
+		HttpProtocolParamBean paramsBean = new HttpProtocolParamBean(params);
+		paramsBean.setVersion(HttpVersion.HTTP_1_1);
+		paramsBean.setContentCharset("UTF-8");
+		paramsBean.setUseExpectContinue(false);
+
+		params.setParameter(ClientPNames.COOKIE_POLICY, CookiePolicy.BROWSER_COMPATIBILITY);
+		params.setParameter(CoreProtocolPNames.USER_AGENT, config.getUserAgentString());
+		params.setIntParameter(CoreConnectionPNames.SO_TIMEOUT, config.getSocketTimeout());
+		params.setIntParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, config.getConnectionTimeout());
+
+		params.setBooleanParameter("http.protocol.handle-redirects", false);
+
+		if (config.getProxyHost() != null) {
+			if (config.getProxyUsername() != null) {
+				asyncClient.getCredentialsProvider().setCredentials(
+						new AuthScope(config.getProxyHost(), config.getProxyPort()),
+						new UsernamePasswordCredentials(config.getProxyUsername(), config.getProxyPassword()));
+			}
+			params.setParameter(ConnRoutePNames.DEFAULT_PROXY,
+					new HttpHost(config.getProxyHost(), config.getProxyPort()));
+		}
+
+		timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Fetch timer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		asyncClient.start();
+	}
+
+	/**
+	 * Fetches the given URL in the background. Callbacks can be attached to
+	 * the returned future with Guava's Futures.addCallback; they run on an
+	 * I/O dispatch thread, so they should hand slow work off to other
+	 * threads. Requests answered with 429 or 503 are sent again up to
+	 * rateLimitRetries times, once the host may be fetched again.
+	 */
+	public ListenableFuture<PageFetchResult> fetchAsync(WebURL webUrl) {
+		SettableFuture<PageFetchResult> future = SettableFuture.create();
+		schedule(webUrl, future, 0);
+		return future;
+	}
+
+	/**
+	 * Waits for the result of {@link #fetchAsync(WebURL)}.
+	 */
+	@Override
+	public PageFetchResult fetchHeader(WebURL webUrl) {
+		try {
+			return fetchAsync(webUrl).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			logger.error(e.getCause().getMessage() + " while fetching " + webUrl.getURL());
+		}
+		PageFetchResult fetchResult = new PageFetchResult();
+		fetchResult.setStatusCode(CustomFetchStatus.UnknownError);
+		return fetchResult;
+	}
+
+	/**
+	 * Sends the request once the politeness window of the host opens.
+	 */
+	protected void schedule(final WebURL webUrl, final SettableFuture<PageFetchResult> future, final int attempt) {
+		if (aborted) {
+			future.set(newResult(CustomFetchStatus.Aborted));
+			return;
+		}
+		if (circuitBreaker.isOpen(webUrl.getHost(), System.currentTimeMillis())) {
+			// Do not wait for the politeness window of a dead host
+			future.set(newResult(CustomFetchStatus.HostUnavailable));
+			return;
+		}
+		long waitTime = politenessScheduler.reserve(webUrl.getHost(), System.currentTimeMillis());
+		if (waitTime <= 0) {
+			send(webUrl, future, attempt);
+			return;
+		}
+		try {
+			timer.schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					send(webUrl, future, attempt);
+				}
+			}, waitTime, TimeUnit.MILLISECONDS);
+		} catch (RuntimeException e) {
+			// The timer is shut down
+			future.set(newResult(CustomFetchStatus.Aborted));
+		}
+	}
+
+	/**
+	 * Sends the request right away and completes the future with the result
+	 * once the response is read.
+	 */
+	protected void send(final WebURL webUrl, final SettableFuture<PageFetchResult> future, final int attempt) {
+		if (aborted) {
+			future.set(newResult(CustomFetchStatus.Aborted));
+			return;
+		}
+		if (!circuitBreaker.allowRequest(webUrl.getHost(), System.currentTimeMillis())) {
+			future.set(newResult(CustomFetchStatus.HostUnavailable));
+			return;
+		}
+		final String toFetchURL = webUrl.getURL();
+		final long start = System.nanoTime();
+		final HttpGet get;
+		try {
+			get = newRequest(toFetchURL);
+		} catch (IllegalArgumentException e) {
+			logger.error(e.getMessage() + " while fetching " + toFetchURL);
+			future.set(newResult(CustomFetchStatus.UnknownError));
+			return;
+		}
+		final Future<?>[] pending = new Future<?>[1];
+		FutureCallback<HttpResponse> callback = new FutureCallback<HttpResponse>() {
+
+			@Override
+			public void completed(HttpResponse response) {
+				done();
+				int statusCode = response.getStatusLine().getStatusCode();
+				long now = System.currentTimeMillis();
+				circuitBreaker.onSuccess(webUrl.getHost());
+				politenessScheduler.onResponse(webUrl.getHost(), statusCode, (System.nanoTime() - start) / 1000000,
+						getRetryAfter(response, now), now);
+				if ((statusCode == CustomFetchStatus.TooManyRequests || statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE)
+						&& attempt < config.getRateLimitRetries() && !aborted) {
+					logger.info("Retrying " + toFetchURL + " after status " + statusCode);
+					schedule(webUrl, future, attempt + 1);
+					return;
+				}
+				future.set(toFetchResult(toFetchURL, get, response));
+			}
+
+			@Override
+			public void failed(Exception e) {
+				done();
+				if (aborted) {
+					future.set(newResult(CustomFetchStatus.Aborted));
+				} else if (e instanceof PageTooBigException) {
+					// The host did answer
+					circuitBreaker.onSuccess(webUrl.getHost());
+					logger.info("Skipping a page which was bigger than max allowed size: " + toFetchURL);
+					future.set(newResult(CustomFetchStatus.PageTooBig));
+				} else if (e instanceof IOException) {
+					circuitBreaker.onFailure(webUrl.getHost(), System.currentTimeMillis());
+					politenessScheduler.onResponse(webUrl.getHost(), CustomFetchStatus.FatalTransportError,
+							(System.nanoTime() - start) / 1000000, 0, System.currentTimeMillis());
+					logger.error("Fatal transport error: " + e.getMessage() + " while fetching " + toFetchURL
+							+ " (link found in doc #" + webUrl.getParentDocid() + ")");
+					future.set(newResult(CustomFetchStatus.FatalTransportError));
+				} else {
+					logger.error(e.getMessage() + " while fetching " + toFetchURL);
+					future.set(newResult(CustomFetchStatus.UnknownError));
+				}
+			}
+
+			@Override
+			public void cancelled() {
+				done();
+				future.set(newResult(CustomFetchStatus.Aborted));
+			}
+
+			private void done() {
+				synchronized (pending) {
+					pendingFutures.remove(pending[0]);
+					pending[0] = null;
+				}
+				fetchCount.incrementAndGet();
+				fetchTime.addAndGet(System.nanoTime() - start);
+			}
+		};
+		try {
+			Future<HttpResponse> response = asyncClient.execute(HttpAsyncMethods.create(get),
+					new BufferingResponseConsumer(config.getMaxDownloadSize()), callback);
+			synchronized (pending) {
+				// The callback may have run already
+				if (!response.isDone()) {
+					pending[0] = response;
+					pendingFutures.add(response);
+				}
+			}
+			if (aborted) {
+				response.cancel(true);
+			}
+		} catch (RuntimeException e) {
+			// The client is shut down
+			future.set(newResult(aborted ? CustomFetchStatus.Aborted : CustomFetchStatus.UnknownError));
+		}
+	}
+
+	/**
+	 * Turns the response into a fetch result, the way
+	 * {@link PageFetcher#fetchHeaderNow(WebURL)} does.
+	 */
+	protected PageFetchResult toFetchResult(String toFetchURL, HttpGet get, HttpResponse response) {
+		PageFetchResult fetchResult = new PageFetchResult();
+		fetchResult.setRequest(get);
+		fetchResult.setMaxContentSize(config.getMaxDownloadSize());
+		fetchResult.setBufferPool(bufferPool);
+		fetchResult.setEntity(response.getEntity());
+		fetchResult.setResponseHeaders(response.getAllHeaders());
+		int statusCode = response.getStatusLine().getStatusCode();
+		if (statusCode == HttpStatus.SC_NOT_MODIFIED) {
+			notModifiedCount.incrementAndGet();
+			fetchResult.setFetchedUrl(toFetchURL);
+		} else if (statusCode == HttpStatus.SC_MOVED_PERMANENTLY || statusCode == HttpStatus.SC_MOVED_TEMPORARILY) {
+			Header header = response.getFirstHeader("Location");
+			if (header != null) {
+				fetchResult.setMovedToUrl(URLCanonicalizer.getCanonicalURL(header.getValue(), toFetchURL));
+			}
+		} else if (statusCode == HttpStatus.SC_OK) {
+			fetchResult.setFetchedUrl(toFetchURL);
+			if (response.getEntity() == null) {
+				statusCode = CustomFetchStatus.UnknownError;
+			}
+		} else if (statusCode != HttpStatus.SC_NOT_FOUND) {
+			logger.info("Failed: " + response.getStatusLine().toString() + ", while fetching " + toFetchURL);
+		}
+		fetchResult.setStatusCode(statusCode);
+		return fetchResult;
+	}
+
+	private static PageFetchResult newResult(int statusCode) {
+		PageFetchResult fetchResult = new PageFetchResult();
+		fetchResult.setStatusCode(statusCode);
+		return fetchResult;
+	}
+
+	/**
+	 * Reads the content of a response into memory as it arrives, and fails
+	 * with a {@link PageTooBigException} once it gets larger than the max
+	 * download size. Gzipped content is decompressed when it is loaded into
+	 * a page, where the limit is checked again.
+	 */
+	protected static class BufferingResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+
+		private final int maxContentSize;
+
+		private final ByteBuffer buffer = ByteBuffer.allocate(CONTENT_BUFFER_SIZE);
+
+		private HttpResponse response;
+
+		private ByteArrayOutputStream content;
+
+		public BufferingResponseConsumer(int maxContentSize) {
+			this.maxContentSize = maxContentSize;
+		}
+
+		@Override
+		protected void onResponseReceived(HttpResponse response) {
+			this.response = response;
+		}
+
+		@Override
+		protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+			long length = entity.getContentLength();
+			if (length > maxContentSize) {
+				throw new PageTooBigException("Content-Length is larger than " + maxContentSize + " bytes");
+			}
+			content = new ByteArrayOutputStream(length > 0 ? (int) length : CONTENT_BUFFER_SIZE);
+		}
+
+		@Override
+		protected void onContentReceived(ContentDecoder decoder, IOControl ioctrl) throws IOException {
+			int read;
+			while ((read = decoder.read(buffer)) > 0) {
+				if (content.size() + read > maxContentSize) {
+					throw new PageTooBigException("Content is larger than " + maxContentSize + " bytes");
+				}
+				content.write(buffer.array(), 0, read);
+				buffer.clear();
+			}
+			buffer.clear();
+		}
+
+		@Override
+		protected HttpResponse buildResult(HttpContext context) {
+			if (content != null) {
+				ByteArrayEntity entity = new ByteArrayEntity(content.toByteArray());
+				entity.setContentType(response.getFirstHeader("Content-Type"));
+				Header contentEncoding = response.getFirstHeader("Content-Encoding");
+				entity.setContentEncoding(contentEncoding);
+				if (contentEncoding != null && isGzip(contentEncoding)) {
+					response.setEntity(new GzipDecompressingEntity(entity));
+				} else {
+					response.setEntity(entity);
+				}
+			}
+			return response;
+		}
+
+		private static boolean isGzip(Header contentEncoding) {
+			for (HeaderElement codec : contentEncoding.getElements()) {
+				if (codec.getName().equalsIgnoreCase("gzip")) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		protected void releaseResources() {
+			content = null;
+		}
+	}
+
+	/**
+	 * Cancels the requests that are in progress as well, and makes further
+	 * fetches fail right away with {@link CustomFetchStatus#Aborted}.
+	 */
+	@Override
+	public void abort() {
+		super.abort();
+		for (Future<HttpResponse> future : pendingFutures) {
+			future.cancel(true);
+		}
+	}
+
+	@Override
+	public synchronized void shutDown() {
+		timer.shutdownNow();
+		try {
+			asyncClient.shutdown();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		super.shutDown();
+	}
+}
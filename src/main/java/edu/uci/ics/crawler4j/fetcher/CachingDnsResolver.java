@@ -0,0 +1,305 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.conn.DnsResolver;
+import org.apache.log4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import edu.uci.ics.crawler4j.crawler.Configurable;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+
+/**
+ * A {@link DnsResolver} that caches the addresses of up to dnsCacheSize
+ * hosts, for dnsCacheTtl milliseconds each. Failed resolutions are cached
+ * for dnsNegativeCacheTtl milliseconds, so URLs of a host that does not exist
+ * do not each wait for the name servers.
+ * <p>
+ * Hosts can be resolved ahead of their first connection with
+ * {@link #prefetch(String)}, which the frontier does for the URLs it hands
+ * out. Concurrent resolutions of the same host, including prefetches, share a
+ * single lookup.
+ */
+public class CachingDnsResolver extends Configurable implements DnsResolver {
+
+	protected static final Logger logger = Logger.getLogger(CachingDnsResolver.class.getName());
+
+	/**
+	 * Number of prefetches that may wait for a thread. Further prefetches are
+	 * dropped; the host is then resolved when it is connected to.
+	 */
+	protected static final int PREFETCH_QUEUE_CAPACITY = 1024;
+
+	protected final Cache<String, Entry> cache;
+
+	protected final ThreadPoolExecutor prefetchExecutor;
+
+	/**
+	 * Hosts that are waiting to be prefetched or being prefetched.
+	 */
+	protected final ConcurrentMap<String, Boolean> pendingPrefetches = new ConcurrentHashMap<>();
+
+	protected final AtomicLong hitCount = new AtomicLong();
+
+	protected final AtomicLong missCount = new AtomicLong();
+
+	protected final AtomicLong resolveTime = new AtomicLong();
+
+	protected final AtomicLong lookupCount = new AtomicLong();
+
+	protected final AtomicLong lookupTime = new AtomicLong();
+
+	protected final AtomicLong prefetchCount = new AtomicLong();
+
+	public CachingDnsResolver(CrawlConfig config) {
+		super(config);
+		long maxTtl = Math.max(config.getDnsCacheTtl(), config.getDnsNegativeCacheTtl());
+		cache = CacheBuilder.newBuilder().maximumSize(config.getDnsCacheSize())
+				.expireAfterWrite(maxTtl, TimeUnit.MILLISECONDS).build();
+		if (config.getDnsPrefetchThreads() > 0) {
+			final AtomicInteger threadNumber = new AtomicInteger();
+			prefetchExecutor = new ThreadPoolExecutor(config.getDnsPrefetchThreads(), config.getDnsPrefetchThreads(),
+					0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(PREFETCH_QUEUE_CAPACITY),
+					new ThreadFactory() {
+
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, "DNS prefetch " + threadNumber.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		} else {
+			prefetchExecutor = null;
+		}
+	}
+
+	@Override
+	public InetAddress[] resolve(String host) throws UnknownHostException {
+		long start = System.nanoTime();
+		try {
+			String key = host.toLowerCase(Locale.ROOT);
+			Entry entry = getFresh(key, System.currentTimeMillis());
+			if (entry != null) {
+				hitCount.incrementAndGet();
+			} else {
+				missCount.incrementAndGet();
+				entry = load(key);
+			}
+			return entry.getAddresses(host);
+		} finally {
+			resolveTime.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Resolves the host in the background unless its addresses are cached
+	 * already. Returns right away.
+	 */
+	public void prefetch(String host) {
+		if (prefetchExecutor == null || host == null || host.isEmpty()) {
+			return;
+		}
+		final String key = host.toLowerCase(Locale.ROOT);
+		if (getFresh(key, System.currentTimeMillis()) != null
+				|| pendingPrefetches.putIfAbsent(key, Boolean.TRUE) != null) {
+			return;
+		}
+		try {
+			prefetchExecutor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						if (getFresh(key, System.currentTimeMillis()) == null) {
+							load(key);
+							prefetchCount.incrementAndGet();
+						}
+					} catch (RuntimeException e) {
+						logger.debug("Error while prefetching " + key + ": " + e.getMessage());
+					} finally {
+						pendingPrefetches.remove(key);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			pendingPrefetches.remove(key);
+		}
+	}
+
+	/**
+	 * Returns the cached entry of the host if it has not expired yet, and
+	 * evicts it otherwise.
+	 */
+	protected Entry getFresh(String key, long now) {
+		Entry entry = cache.getIfPresent(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.expires > now) {
+			return entry;
+		}
+		cache.asMap().remove(key, entry);
+		return null;
+	}
+
+	/**
+	 * Looks the host up and caches the result. If another thread is already
+	 * looking it up, waits for that lookup instead.
+	 */
+	protected Entry load(final String key) {
+		try {
+			return cache.get(key, new Callable<Entry>() {
+
+				@Override
+				public Entry call() {
+					return lookup(key);
+				}
+			});
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			throw new IllegalStateException("Error while resolving " + key, e.getCause());
+		}
+	}
+
+	protected Entry lookup(String host) {
+		long start = System.nanoTime();
+		try {
+			InetAddress[] addresses = InetAddress.getAllByName(host);
+			return new Entry(addresses, null, System.currentTimeMillis() + config.getDnsCacheTtl());
+		} catch (UnknownHostException e) {
+			return new Entry(null, e.getMessage(), System.currentTimeMillis() + config.getDnsNegativeCacheTtl());
+		} finally {
+			lookupCount.incrementAndGet();
+			lookupTime.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Stops the prefetch threads.
+	 */
+	public void close() {
+		if (prefetchExecutor != null) {
+			prefetchExecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns the number of resolutions that were answered from the cache.
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Returns the number of resolutions that had to wait for a lookup.
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Returns the share of resolutions that were answered from the cache, or
+	 * 0 if nothing was resolved yet.
+	 */
+	public double getHitRatio() {
+		long hits = hitCount.get();
+		long total = hits + missCount.get();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * Returns the average time in milliseconds a connection waited for its
+	 * host to be resolved, cache hits included.
+	 */
+	public double getAverageResolveTime() {
+		long count = hitCount.get() + missCount.get();
+		return count == 0 ? 0 : resolveTime.get() / 1000000.0 / count;
+	}
+
+	/**
+	 * Returns the number of lookups sent to the name servers, prefetches
+	 * included.
+	 */
+	public long getLookupCount() {
+		return lookupCount.get();
+	}
+
+	/**
+	 * Returns the average time in milliseconds a lookup took.
+	 */
+	public double getAverageLookupTime() {
+		long count = lookupCount.get();
+		return count == 0 ? 0 : lookupTime.get() / 1000000.0 / count;
+	}
+
+	/**
+	 * Returns the number of hosts that were resolved by prefetching.
+	 */
+	public long getPrefetchCount() {
+		return prefetchCount.get();
+	}
+
+	public long size() {
+		return cache.size();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("DNS cache: %d hosts, hit ratio %.2f, %.1f ms per resolution, "
+				+ "%d lookups (%d prefetched), %.1f ms per lookup", size(), getHitRatio(), getAverageResolveTime(),
+				getLookupCount(), getPrefetchCount(), getAverageLookupTime());
+	}
+
+	protected static class Entry {
+		final InetAddress[] addresses;
+		// Message of the UnknownHostException if the host could not be resolved
+		final String error;
+		final long expires;
+
+		Entry(InetAddress[] addresses, String error, long expires) {
+			this.addresses = addresses;
+			this.error = error;
+			this.expires = expires;
+		}
+
+		InetAddress[] getAddresses(String host) throws UnknownHostException {
+			if (addresses == null) {
+				throw new UnknownHostException(error != null ? error : host);
+			}
+			return addresses.clone();
+		}
+	}
+}
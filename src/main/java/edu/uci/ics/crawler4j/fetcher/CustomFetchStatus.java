@@ -27,6 +27,11 @@ public class CustomFetchStatus {
 	public static final int PageTooBig = 1001;
 	public static final int FatalTransportError = 1005;
 	public static final int UnknownError = 1006;
+	public static final int Aborted = 1007;
+	public static final int HostUnavailable = 1008;
+
+	// Not defined by the HttpStatus of httpcore 4.2
+	public static final int TooManyRequests = 429;
 
 	public static String getStatusDescription(int code) {
 		switch (code) {
@@ -58,6 +63,8 @@ public class CustomFetchStatus {
 			return "Not Implemented";
 		case HttpStatus.SC_BAD_GATEWAY:
 			return "Bad Gateway";
+		case TooManyRequests:
+			return "Too Many Requests";
 		case HttpStatus.SC_SERVICE_UNAVAILABLE:
 			return "Service Unavailable";
 		case HttpStatus.SC_CONTINUE:
@@ -96,6 +103,10 @@ public class CustomFetchStatus {
 			return "Fatal transport error";
 		case UnknownError:
 			return "Unknown error";
+		case Aborted:
+			return "Aborted by shutdown";
+		case HostUnavailable:
+			return "Host unavailable";
 		default:
 			return "(" + code + ")";
 		}
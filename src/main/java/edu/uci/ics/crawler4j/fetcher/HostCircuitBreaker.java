@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+import edu.uci.ics.crawler4j.crawler.Configurable;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+
+/**
+ * Stops requests to hosts that do not respond, so crawler threads are not
+ * tied up by connection and socket timeouts.
+ * <p>
+ * After circuitBreakerThreshold consecutive transport errors the circuit of
+ * a host opens, and requests to it are rejected right away with
+ * {@link CustomFetchStatus#HostUnavailable}. Once circuitBreakerOpenTime has
+ * passed the circuit is half-open: a single request is let through to probe
+ * the host. Any response closes the circuit again, while a failed probe opens
+ * it for twice as long as before. After circuitBreakerMaxProbes failed probes
+ * the host is given up on.
+ */
+public class HostCircuitBreaker extends Configurable {
+
+	protected static final Logger logger = Logger.getLogger(HostCircuitBreaker.class.getName());
+
+	protected final ConcurrentMap<String, HostState> hosts = new ConcurrentHashMap<>();
+
+	public HostCircuitBreaker(CrawlConfig config) {
+		super(config);
+	}
+
+	public boolean isEnabled() {
+		return config.getCircuitBreakerThreshold() > 0;
+	}
+
+	/**
+	 * Returns true if a request to the host would be rejected now. Unlike
+	 * {@link #allowRequest(String, long)} this does not let a probe through.
+	 */
+	public boolean isOpen(String host, long now) {
+		HostState state = hosts.get(host);
+		if (state == null) {
+			return false;
+		}
+		synchronized (state) {
+			return isOpen(state, now);
+		}
+	}
+
+	/**
+	 * Returns true if a request to the host may be sent. If the circuit of the
+	 * host is half-open, the request is the probe and further requests are
+	 * rejected until it is reported with {@link #onSuccess(String)} or
+	 * {@link #onFailure(String, long)}.
+	 */
+	public boolean allowRequest(String host, long now) {
+		HostState state = hosts.get(host);
+		if (state == null) {
+			return true;
+		}
+		synchronized (state) {
+			if (isOpen(state, now)) {
+				return false;
+			}
+			if (state.failures >= config.getCircuitBreakerThreshold()) {
+				state.probeTime = now;
+			}
+			return true;
+		}
+	}
+
+	protected boolean isOpen(HostState state, long now) {
+		if (state.failures < config.getCircuitBreakerThreshold()) {
+			return false;
+		}
+		if (state.givenUp || now < state.openUntil) {
+			return true;
+		}
+		// A probe that was never reported does not block the host forever
+		return state.probeTime > 0
+				&& now - state.probeTime < config.getConnectionTimeout() + config.getSocketTimeout();
+	}
+
+	/**
+	 * Reports that the host answered a request, with whatever status code.
+	 * This closes its circuit.
+	 */
+	public void onSuccess(String host) {
+		HostState state = hosts.remove(host);
+		if (state != null && state.failures >= config.getCircuitBreakerThreshold()) {
+			logger.info("Host " + host + " is reachable again, closing its circuit.");
+		}
+	}
+
+	/**
+	 * Reports that a request to the host failed with a transport error.
+	 */
+	public void onFailure(String host, long now) {
+		if (!isEnabled()) {
+			return;
+		}
+		HostState state = hosts.get(host);
+		if (state == null) {
+			HostState newState = new HostState();
+			state = hosts.putIfAbsent(host, newState);
+			if (state == null) {
+				state = newState;
+			}
+		}
+		synchronized (state) {
+			state.failures++;
+			if (state.probeTime > 0) {
+				state.probeTime = 0;
+				state.failedProbes++;
+				if (state.failedProbes >= config.getCircuitBreakerMaxProbes()) {
+					state.givenUp = true;
+					logger.warn("Giving up on host " + host + " after " + state.failedProbes + " failed probes.");
+				} else {
+					state.openUntil = now + ((long) config.getCircuitBreakerOpenTime() << Math.min(state.failedProbes, 10));
+				}
+			} else if (state.failures == config.getCircuitBreakerThreshold()) {
+				state.openUntil = now + config.getCircuitBreakerOpenTime();
+				logger.info("Opening the circuit of host " + host + " after " + state.failures
+						+ " consecutive transport errors.");
+			}
+		}
+	}
+
+	/**
+	 * Returns the time at which the host will be probed again, 0 if its
+	 * circuit is closed and -1 if it was given up on. While a probe is in
+	 * progress, this is the time by which it is over.
+	 */
+	public long getRetryTime(String host) {
+		HostState state = hosts.get(host);
+		if (state == null) {
+			return 0;
+		}
+		synchronized (state) {
+			if (state.givenUp) {
+				return -1;
+			}
+			if (state.failures < config.getCircuitBreakerThreshold()) {
+				return 0;
+			}
+			if (state.probeTime > 0) {
+				return Math.max(state.openUntil, state.probeTime + config.getConnectionTimeout()
+						+ config.getSocketTimeout());
+			}
+			return state.openUntil;
+		}
+	}
+
+	/**
+	 * Returns the number of hosts whose circuit is open or half-open,
+	 * including the ones that were given up on.
+	 */
+	public int getNumberOfOpenCircuits() {
+		int open = 0;
+		for (HostState state : hosts.values()) {
+			synchronized (state) {
+				if (state.failures >= config.getCircuitBreakerThreshold()) {
+					open++;
+				}
+			}
+		}
+		return open;
+	}
+
+	protected static class HostState {
+		int failures = 0;
+		int failedProbes = 0;
+		long openUntil = 0;
+		// Time the probe of a half-open circuit was sent, 0 if there is none
+		long probeTime = 0;
+		boolean givenUp = false;
+	}
+}
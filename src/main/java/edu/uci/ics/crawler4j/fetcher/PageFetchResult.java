@@ -17,15 +17,21 @@
 
 package edu.uci.ics.crawler4j.fetcher;
 
+import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.HttpEntityWrapper;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 
 import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.util.BufferPool;
 
 /**
  * @author Yasser Ganjisaffar <lastname at gmail dot com>
@@ -39,6 +45,9 @@ public class PageFetchResult {
 	protected Header[] responseHeaders = null;
 	protected String fetchedUrl = null;
 	protected String movedToUrl = null;
+	protected HttpUriRequest request = null;
+	protected int maxContentSize = Integer.MAX_VALUE;
+	protected BufferPool bufferPool = null;
 
 	public int getStatusCode() {
 		return statusCode;
@@ -74,9 +83,17 @@ public class PageFetchResult {
 
 	public boolean fetchContent(Page page) {
 		try {
-			page.load(entity);
+			if (bufferPool == null) {
+				page.load(entity);
+			} else {
+				page.load(entity, maxContentSize, bufferPool);
+			}
 			page.setFetchResponseHeaders(responseHeaders);
 			return true;
+		} catch (PageTooBigException e) {
+			logger.info("Skipping a page which was bigger than max allowed size: " + page.getWebURL().getURL());
+			statusCode = CustomFetchStatus.PageTooBig;
+			abort();
 		} catch (Exception e) {
 			logger.info("Exception while fetching content for: " + page.getWebURL().getURL() + " [" + e.getMessage()
 					+ "]");
@@ -84,6 +101,76 @@ public class PageFetchResult {
 		return false;
 	}
 
+	/**
+	 * Reads the content into memory, so that it can be passed to
+	 * {@link #fetchContent(Page)} later without network I/O. The size limit
+	 * is enforced as the content is read.
+	 * 
+	 * @throws PageTooBigException
+	 *             if the content is larger than the max content size. The
+	 *             request is aborted then.
+	 */
+	public void bufferContent() throws IOException {
+		if (entity == null) {
+			return;
+		}
+		InputStream in = entity.getContent();
+		if (in == null) {
+			return;
+		}
+		BufferPool buffers = bufferPool != null ? bufferPool : new BufferPool(4096, 0);
+		final byte[] content = buffers.read(in, maxContentSize);
+		if (content == null) {
+			statusCode = CustomFetchStatus.PageTooBig;
+			abort();
+			throw new PageTooBigException("Content is larger than " + maxContentSize + " bytes");
+		}
+		in.close();
+		entity = new HttpEntityWrapper(entity) {
+
+			@Override
+			public InputStream getContent() {
+				return new ByteArrayInputStream(content);
+			}
+
+			@Override
+			public long getContentLength() {
+				return content.length;
+			}
+
+			@Override
+			public boolean isRepeatable() {
+				return true;
+			}
+
+			@Override
+			public boolean isStreaming() {
+				return false;
+			}
+
+			@Override
+			public void writeTo(OutputStream out) throws IOException {
+				out.write(content);
+			}
+
+			@Override
+			@SuppressWarnings("deprecation")
+			public void consumeContent() {
+				// Nothing to release
+			}
+		};
+	}
+
+	/**
+	 * Aborts the request, which closes its connection without reading the
+	 * rest of the content.
+	 */
+	public void abort() {
+		if (request != null) {
+			request.abort();
+		}
+	}
+
 	public void discardContentIfNotConsumed() {
 		try {
 			if (entity != null) {
@@ -100,6 +187,37 @@ public class PageFetchResult {
 		}
 	}
 
+	public HttpUriRequest getRequest() {
+		return request;
+	}
+
+	public void setRequest(HttpUriRequest request) {
+		this.request = request;
+	}
+
+	public int getMaxContentSize() {
+		return maxContentSize;
+	}
+
+	/**
+	 * Max number of bytes {@link #fetchContent(Page)} reads before the page
+	 * is considered too big.
+	 */
+	public void setMaxContentSize(int maxContentSize) {
+		this.maxContentSize = maxContentSize;
+	}
+
+	public BufferPool getBufferPool() {
+		return bufferPool;
+	}
+
+	/**
+	 * The pool of the buffers the content is read into.
+	 */
+	public void setBufferPool(BufferPool bufferPool) {
+		this.bufferPool = bufferPool;
+	}
+
 	public String getMovedToUrl() {
 		return movedToUrl;
 	}
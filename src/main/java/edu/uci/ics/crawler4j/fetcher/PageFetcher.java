@@ -19,7 +19,10 @@ package edu.uci.ics.crawler4j.fetcher;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Date;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.http.Header;
@@ -37,6 +40,7 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.params.ClientPNames;
 import org.apache.http.client.params.CookiePolicy;
+import org.apache.http.conn.DnsResolver;
 import org.apache.http.conn.params.ConnRoutePNames;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
@@ -44,7 +48,10 @@ import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.entity.HttpEntityWrapper;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.cookie.DateParseException;
+import org.apache.http.impl.cookie.DateUtils;
 import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.CoreConnectionPNames;
 import org.apache.http.params.CoreProtocolPNames;
@@ -55,8 +62,11 @@ import org.apache.log4j.Logger;
 
 import edu.uci.ics.crawler4j.crawler.Configurable;
 import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.frontier.ValidatorStore;
+import edu.uci.ics.crawler4j.frontier.Validators;
 import edu.uci.ics.crawler4j.url.URLCanonicalizer;
 import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.BufferPool;
 
 /**
  * @author Yasser Ganjisaffar <lastname at gmail dot com>
@@ -69,14 +79,68 @@ public class PageFetcher extends Configurable {
 
 	protected DefaultHttpClient httpClient;
 
-	protected final Object mutex = new Object();
+	protected PolitenessScheduler politenessScheduler;
 
-	protected long lastFetchTime = 0;
+	protected HostCircuitBreaker circuitBreaker;
 
 	protected IdleConnectionMonitorThread connectionMonitorThread = null;
 
+	/**
+	 * Number of requests sent and the total time (in nanoseconds) it took to
+	 * get their responses, see {@link #getAverageFetchTime()}.
+	 */
+	protected final AtomicLong fetchCount = new AtomicLong();
+	protected final AtomicLong fetchTime = new AtomicLong();
+
+	protected volatile boolean aborted = false;
+
+	/**
+	 * The requests that are waiting for a response, so {@link #abort()} can
+	 * abort them.
+	 */
+	protected final Set<HttpGet> pendingRequests = Collections.newSetFromMap(new ConcurrentHashMap<HttpGet, Boolean>());
+
+	/**
+	 * Size of the buffers page content is read into. Up to
+	 * CONTENT_BUFFERS_PER_CONNECTION of them are kept for each connection, so
+	 * typical pages are read without allocating buffers.
+	 */
+	protected static final int CONTENT_BUFFER_SIZE = 16 * 1024;
+	protected static final int CONTENT_BUFFERS_PER_CONNECTION = 8;
+
+	protected final BufferPool bufferPool;
+
+	/**
+	 * Validators of previously fetched pages, see
+	 * {@link #setValidatorStore(ValidatorStore)}.
+	 */
+	protected ValidatorStore validatorStore = null;
+
+	protected final AtomicLong notModifiedCount = new AtomicLong();
+
+	protected final DnsResolver dnsResolver;
+
+	/**
+	 * Creates a fetcher that resolves hosts with a {@link CachingDnsResolver}
+	 * if dnsCacheSize is set, and with the JVM default resolver otherwise.
+	 */
 	public PageFetcher(CrawlConfig config) {
+		this(config, config.getDnsCacheSize() > 0 ? new CachingDnsResolver(config) : new SystemDefaultDnsResolver());
+	}
+
+	/**
+	 * Creates a fetcher that resolves the hosts it connects to with the given
+	 * resolver.
+	 */
+	public PageFetcher(CrawlConfig config, DnsResolver dnsResolver) {
 		super(config);
+		this.dnsResolver = dnsResolver;
+
+		bufferPool = new BufferPool(CONTENT_BUFFER_SIZE, config.getMaxTotalConnections()
+				* CONTENT_BUFFERS_PER_CONNECTION);
+
+		politenessScheduler = new PolitenessScheduler(config);
+		circuitBreaker = new HostCircuitBreaker(config);
 
 		HttpParams params = new BasicHttpParams();
 		HttpProtocolParamBean paramsBean = new HttpProtocolParamBean(params);
@@ -98,7 +162,7 @@ public class PageFetcher extends Configurable {
 			schemeRegistry.register(new Scheme("https", 443, SSLSocketFactory.getSocketFactory()));
 		}
 
-		connectionManager = new PoolingClientConnectionManager(schemeRegistry);
+		connectionManager = new PoolingClientConnectionManager(schemeRegistry, dnsResolver);
 		connectionManager.setMaxTotal(config.getMaxTotalConnections());
 		connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerHost());
 		httpClient = new DefaultHttpClient(connectionManager, params);
@@ -121,6 +185,10 @@ public class PageFetcher extends Configurable {
             public void process(final HttpResponse response, final HttpContext context) throws HttpException,
                     IOException {
                 HttpEntity entity = response.getEntity();
+                if (entity == null) {
+                    // 304 Not Modified has no content
+                    return;
+                }
                 Header contentEncoding = entity.getContentEncoding();
                 if (contentEncoding != null) {
                     HeaderElement[] codecs = contentEncoding.getElements();
@@ -142,26 +210,79 @@ public class PageFetcher extends Configurable {
 
 	}
 
+	/**
+	 * Waits for the politeness window of the host and sends the request.
+	 * Requests answered with 429 or 503 are sent again up to
+	 * rateLimitRetries times, once the host may be fetched again.
+	 */
 	public PageFetchResult fetchHeader(WebURL webUrl) {
+		for (int attempt = 0;; attempt++) {
+			if (circuitBreaker.isOpen(webUrl.getHost(), System.currentTimeMillis())) {
+				// Do not wait for the politeness window of a dead host
+				PageFetchResult fetchResult = new PageFetchResult();
+				fetchResult.setStatusCode(CustomFetchStatus.HostUnavailable);
+				return fetchResult;
+			}
+			try {
+				politenessScheduler.acquire(webUrl);
+			} catch (InterruptedException e) {
+				PageFetchResult fetchResult = new PageFetchResult();
+				fetchResult.setStatusCode(CustomFetchStatus.UnknownError);
+				return fetchResult;
+			}
+			PageFetchResult fetchResult = fetchHeaderNow(webUrl);
+			int statusCode = fetchResult.getStatusCode();
+			if ((statusCode != CustomFetchStatus.TooManyRequests && statusCode != HttpStatus.SC_SERVICE_UNAVAILABLE)
+					|| attempt >= config.getRateLimitRetries() || aborted) {
+				return fetchResult;
+			}
+			fetchResult.discardContentIfNotConsumed();
+			logger.info("Retrying " + webUrl.getURL() + " after status " + statusCode);
+		}
+	}
+
+	/**
+	 * Sends the request right away. The caller is responsible for respecting
+	 * the politeness delay of the host.
+	 */
+	protected PageFetchResult fetchHeaderNow(WebURL webUrl) {
 		PageFetchResult fetchResult = new PageFetchResult();
 		String toFetchURL = webUrl.getURL();
 		HttpGet get = null;
+		if (aborted) {
+			fetchResult.setStatusCode(CustomFetchStatus.Aborted);
+			return fetchResult;
+		}
+		if (!circuitBreaker.allowRequest(webUrl.getHost(), System.currentTimeMillis())) {
+			fetchResult.setStatusCode(CustomFetchStatus.HostUnavailable);
+			return fetchResult;
+		}
+		long start = System.nanoTime();
 		try {
-			get = new HttpGet(toFetchURL);
-			synchronized (mutex) {
-				long now = (new Date()).getTime();
-				if (now - lastFetchTime < config.getPolitenessDelay()) {
-					Thread.sleep(config.getPolitenessDelay() - (now - lastFetchTime));
-				}
-				lastFetchTime = (new Date()).getTime();
+			get = newRequest(toFetchURL);
+			pendingRequests.add(get);
+			if (aborted) {
+				get.abort();
 			}
-			get.addHeader("Accept-Encoding", "gzip");
 			HttpResponse response = httpClient.execute(get);
+			fetchResult.setRequest(get);
+			fetchResult.setMaxContentSize(config.getMaxDownloadSize());
+			fetchResult.setBufferPool(bufferPool);
 			fetchResult.setEntity(response.getEntity());
 			fetchResult.setResponseHeaders(response.getAllHeaders());
 			
 			int statusCode = response.getStatusLine().getStatusCode();
+			long now = System.currentTimeMillis();
+			circuitBreaker.onSuccess(webUrl.getHost());
+			politenessScheduler.onResponse(webUrl.getHost(), statusCode, (System.nanoTime() - start) / 1000000,
+					getRetryAfter(response, now), now);
 			if (statusCode != HttpStatus.SC_OK) {
+				if (statusCode == HttpStatus.SC_NOT_MODIFIED) {
+					notModifiedCount.incrementAndGet();
+					fetchResult.setFetchedUrl(toFetchURL);
+					fetchResult.setStatusCode(statusCode);
+					return fetchResult;
+				}
 				if (statusCode != HttpStatus.SC_NOT_FOUND) {
 					if (statusCode == HttpStatus.SC_MOVED_PERMANENTLY || statusCode == HttpStatus.SC_MOVED_TEMPORARILY) {
 						Header header = response.getFirstHeader("Location");
@@ -214,6 +335,13 @@ public class PageFetcher extends Configurable {
 			get.abort();
 			
 		} catch (IOException e) {
+			if (aborted) {
+				fetchResult.setStatusCode(CustomFetchStatus.Aborted);
+				return fetchResult;
+			}
+			circuitBreaker.onFailure(webUrl.getHost(), System.currentTimeMillis());
+			politenessScheduler.onResponse(webUrl.getHost(), CustomFetchStatus.FatalTransportError,
+					(System.nanoTime() - start) / 1000000, 0, System.currentTimeMillis());
 			logger.error("Fatal transport error: " + e.getMessage() + " while fetching " + toFetchURL
 					+ " (link found in doc #" + webUrl.getParentDocid() + ")");
 			fetchResult.setStatusCode(CustomFetchStatus.FatalTransportError);
@@ -228,6 +356,11 @@ public class PageFetcher extends Configurable {
 				logger.error(e.getMessage() + " while fetching " + webUrl.getURL());
 			}
 		} finally {
+			if (get != null) {
+				pendingRequests.remove(get);
+			}
+			fetchCount.incrementAndGet();
+			fetchTime.addAndGet(System.nanoTime() - start);
 			try {
 				if (fetchResult.getEntity() == null && get != null) {
 					get.abort();
@@ -236,22 +369,154 @@ public class PageFetcher extends Configurable {
 				e.printStackTrace();
 			}
 		}
-		fetchResult.setStatusCode(CustomFetchStatus.UnknownError);
+		fetchResult.setStatusCode(aborted ? CustomFetchStatus.Aborted : CustomFetchStatus.UnknownError);
 		return fetchResult;
 	}
 
+	/**
+	 * Creates the request for the given URL. Pages whose validators are known
+	 * are requested conditionally.
+	 */
+	protected HttpGet newRequest(String toFetchURL) {
+		HttpGet get = new HttpGet(toFetchURL);
+		get.addHeader("Accept-Encoding", "gzip");
+		if (validatorStore != null) {
+			Validators validators = validatorStore.get(toFetchURL);
+			if (validators != null) {
+				if (validators.getETag() != null) {
+					get.addHeader("If-None-Match", validators.getETag());
+				}
+				if (validators.getLastModified() != null) {
+					get.addHeader("If-Modified-Since", validators.getLastModified());
+				}
+			}
+		}
+		return get;
+	}
+
+	/**
+	 * Returns the time in milliseconds the Retry-After header of the response
+	 * asks to wait, given as seconds or as an HTTP date, or 0 if there is no
+	 * such header.
+	 */
+	protected static long getRetryAfter(HttpResponse response, long now) {
+		Header header = response.getFirstHeader("Retry-After");
+		if (header == null) {
+			return 0;
+		}
+		String value = header.getValue().trim();
+		try {
+			return Math.max(0, Long.parseLong(value) * 1000);
+		} catch (NumberFormatException e) {
+			try {
+				return Math.max(0, DateUtils.parseDate(value).getTime() - now);
+			} catch (DateParseException e2) {
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * Aborts the requests that are in progress and makes further fetches fail
+	 * right away with {@link CustomFetchStatus#Aborted}. Aborted requests are
+	 * not retried. All connections are closed too, which also stops pages
+	 * whose content is still being downloaded. Used to shut down a crawl
+	 * without waiting for slow servers. The fetcher cannot be used
+	 * afterwards.
+	 */
+	public void abort() {
+		aborted = true;
+		for (HttpGet get : pendingRequests) {
+			get.abort();
+		}
+		connectionManager.shutdown();
+	}
+
+	public boolean isAborted() {
+		return aborted;
+	}
+
+	/**
+	 * Lets the fetcher send conditional requests for the pages whose
+	 * validators are in the given store. The server answers with
+	 * {@link HttpStatus#SC_NOT_MODIFIED} if such a page did not change. The
+	 * validators are recorded by the crawlers once they have fetched a page.
+	 */
+	public void setValidatorStore(ValidatorStore validatorStore) {
+		this.validatorStore = validatorStore;
+	}
+
+	public ValidatorStore getValidatorStore() {
+		return validatorStore;
+	}
+
+	/**
+	 * Returns the number of requests that were answered with 304 Not
+	 * Modified.
+	 */
+	public long getNotModifiedCount() {
+		return notModifiedCount.get();
+	}
+
+	/**
+	 * Returns the pool of the buffers page content is read into.
+	 */
+	public BufferPool getBufferPool() {
+		return bufferPool;
+	}
+
 	public synchronized void shutDown() {
 		if (connectionMonitorThread != null) {
 			connectionManager.shutdown();
 			connectionMonitorThread.shutdown();
 		}
+		if (dnsResolver instanceof CachingDnsResolver) {
+			((CachingDnsResolver) dnsResolver).close();
+			logger.info(dnsResolver);
+		}
 	}
 	
 	public HttpClient getHttpClient() {
 		return httpClient;
 	}
 
-	private static class GzipDecompressingEntity extends HttpEntityWrapper {
+	public PolitenessScheduler getPolitenessScheduler() {
+		return politenessScheduler;
+	}
+
+	public DnsResolver getDnsResolver() {
+		return dnsResolver;
+	}
+
+	public HostCircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	/**
+	 * Returns the number of requests sent by this fetcher so far.
+	 */
+	public long getFetchCount() {
+		return fetchCount.get();
+	}
+
+	/**
+	 * Returns the total time in milliseconds spent waiting for responses.
+	 * Politeness delays are not included.
+	 */
+	public long getTotalFetchTime() {
+		return fetchTime.get() / 1000000;
+	}
+
+	/**
+	 * Returns the average time in milliseconds it took to get a response, or
+	 * 0 if nothing was fetched yet.
+	 */
+	public double getAverageFetchTime() {
+		long count = fetchCount.get();
+		return count == 0 ? 0 : fetchTime.get() / 1000000.0 / count;
+	}
+
+	protected static class GzipDecompressingEntity extends HttpEntityWrapper {
 
 		public GzipDecompressingEntity(final HttpEntity entity) {
 			super(entity);
@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.fetcher;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.uci.ics.crawler4j.crawler.Configurable;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * Keeps track of the next time each host may be fetched, so that requests to
+ * different hosts can go out in parallel while requests to the same host are
+ * at least politenessDelay milliseconds apart.
+ * <p>
+ * With adaptive politeness, every host has a delay of its own that is
+ * adjusted after each response, see {@link #onResponse}. Like TCP congestion
+ * control this is additive increase, multiplicative decrease: the request
+ * rate to a host grows by a constant step while it answers quickly and
+ * without errors, and is halved on errors or when the host slows down.
+ */
+public class PolitenessScheduler extends Configurable {
+
+	/**
+	 * Number of hosts above which hosts with an already open politeness window
+	 * are dropped from the schedule.
+	 */
+	protected static final int PURGE_THRESHOLD = 10000;
+
+	protected final ConcurrentMap<String, HostSlot> hostSlots = new ConcurrentHashMap<>();
+
+	protected final AtomicInteger reservationsSincePurge = new AtomicInteger();
+
+	/**
+	 * Requests per second the rate to a healthy host grows by with each
+	 * response.
+	 */
+	protected static final double RATE_INCREASE = 0.5;
+
+	/**
+	 * A response that takes this many times longer than the average response
+	 * time of its host is taken as a sign that the host is overloaded.
+	 */
+	protected static final double SLOWDOWN_FACTOR = 2;
+
+	public PolitenessScheduler(CrawlConfig config) {
+		super(config);
+	}
+
+	/**
+	 * Blocks the calling thread until the given URL can be fetched without
+	 * violating the politeness delay of its host.
+	 */
+	public void acquire(WebURL webUrl) throws InterruptedException {
+		long waitTime = reserve(webUrl.getHost(), System.currentTimeMillis());
+		if (waitTime > 0) {
+			Thread.sleep(waitTime);
+		}
+	}
+
+	/**
+	 * Reserves the next fetch slot of the given host.
+	 *
+	 * @return the number of milliseconds (relative to 'now') the caller has to
+	 *         wait before sending its request.
+	 */
+	public long reserve(String host, long now) {
+		if (reservationsSincePurge.incrementAndGet() >= PURGE_THRESHOLD) {
+			reservationsSincePurge.set(0);
+			purge(now);
+		}
+		while (true) {
+			HostSlot slot = getSlot(host);
+			synchronized (slot) {
+				if (slot.removed) {
+					// The slot was purged after we looked it up, try again
+					// with the one that replaced it.
+					continue;
+				}
+				long fetchTime = Math.max(now, slot.nextFetchTime);
+				slot.nextFetchTime = fetchTime + getDelay(slot);
+				return fetchTime - now;
+			}
+		}
+	}
+
+	/**
+	 * Reports how a host answered a request. A wait requested by a
+	 * Retry-After header is always honored, up to maxPolitenessDelay. With
+	 * adaptive politeness, the delay of the host is doubled on 429 and 5xx
+	 * responses, other errors and responses that took much longer than usual,
+	 * and otherwise shortened so that the request rate grows by
+	 * RATE_INCREASE. It stays within minPolitenessDelay and
+	 * maxPolitenessDelay.
+	 * 
+	 * @param statusCode
+	 *            the status code of the response, or a
+	 *            {@link CustomFetchStatus} code if there was none.
+	 * @param responseTime
+	 *            the time in milliseconds it took to get the response.
+	 * @param retryAfter
+	 *            the time in milliseconds the host asked to wait, 0 if it did
+	 *            not.
+	 */
+	public void onResponse(String host, int statusCode, long responseTime, long retryAfter, long now) {
+		while (true) {
+			HostSlot slot = getSlot(host);
+			synchronized (slot) {
+				if (slot.removed) {
+					continue;
+				}
+				if (retryAfter > 0) {
+					long wait = Math.min(retryAfter, config.getMaxPolitenessDelay());
+					slot.nextFetchTime = Math.max(slot.nextFetchTime, now + wait);
+				}
+				if (config.isAdaptivePoliteness()) {
+					adapt(slot, statusCode, responseTime);
+				}
+				return;
+			}
+		}
+	}
+
+	protected void adapt(HostSlot slot, int statusCode, long responseTime) {
+		long delay = getDelay(slot);
+		boolean error = statusCode == CustomFetchStatus.TooManyRequests || statusCode >= 500;
+		if (error || (slot.responseTime > 0 && responseTime > SLOWDOWN_FACTOR * slot.responseTime)) {
+			delay = Math.max(delay * 2, Math.max(1, config.getMinPolitenessDelay()));
+		} else {
+			double rate = 1000.0 / Math.max(1, delay);
+			delay = (long) (1000.0 / (rate + RATE_INCREASE));
+		}
+		slot.delay = Math.max(config.getMinPolitenessDelay(), Math.min(config.getMaxPolitenessDelay(), delay));
+		if (!error) {
+			slot.responseTime = slot.responseTime == 0 ? responseTime : 0.8 * slot.responseTime + 0.2
+					* responseTime;
+		}
+	}
+
+	protected long getDelay(HostSlot slot) {
+		if (slot.delay < 0 || !config.isAdaptivePoliteness()) {
+			return config.getPolitenessDelay();
+		}
+		return slot.delay;
+	}
+
+	/**
+	 * Returns the current politeness delay of the given host in
+	 * milliseconds.
+	 */
+	public long getDelay(String host) {
+		HostSlot slot = hostSlots.get(host);
+		if (slot == null) {
+			return config.getPolitenessDelay();
+		}
+		synchronized (slot) {
+			return getDelay(slot);
+		}
+	}
+
+	/**
+	 * Returns the earliest time (in milliseconds) at which the given host can
+	 * be fetched again.
+	 */
+	public long getNextFetchTime(String host) {
+		HostSlot slot = hostSlots.get(host);
+		if (slot == null) {
+			return 0;
+		}
+		synchronized (slot) {
+			return slot.nextFetchTime;
+		}
+	}
+
+	public int getNumberOfHosts() {
+		return hostSlots.size();
+	}
+
+	protected HostSlot getSlot(String host) {
+		HostSlot slot = hostSlots.get(host);
+		if (slot == null) {
+			HostSlot newSlot = new HostSlot();
+			slot = hostSlots.putIfAbsent(host, newSlot);
+			if (slot == null) {
+				slot = newSlot;
+			}
+		}
+		return slot;
+	}
+
+	/**
+	 * Drops the hosts whose politeness window is already open. They behave
+	 * exactly like hosts that have never been fetched. Hosts whose adaptive
+	 * delay grew above politenessDelay are kept, so they are not hit at the
+	 * default rate again.
+	 */
+	protected void purge(long now) {
+		if (hostSlots.size() < PURGE_THRESHOLD) {
+			return;
+		}
+		Iterator<HostSlot> it = hostSlots.values().iterator();
+		while (it.hasNext()) {
+			HostSlot slot = it.next();
+			synchronized (slot) {
+				if (slot.nextFetchTime <= now && getDelay(slot) <= config.getPolitenessDelay()) {
+					slot.removed = true;
+					it.remove();
+				}
+			}
+		}
+	}
+
+	protected static class HostSlot {
+		long nextFetchTime = 0;
+		boolean removed = false;
+		// Adaptive delay, -1 until the first response
+		long delay = -1;
+		// Average response time, 0 until the first response
+		double responseTime = 0;
+	}
+}
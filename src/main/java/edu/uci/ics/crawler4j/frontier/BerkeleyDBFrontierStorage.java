@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import java.io.File;
+
+import com.sleepycat.je.Durability;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+
+import edu.uci.ics.crawler4j.crawler.Configurable;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.util.FileUtils;
+
+/**
+ * The default frontier storage, which keeps the URL queue, the docids and the
+ * counters in Berkeley DB databases of a single environment. The databases
+ * are transactional if the crawl is resumable, and deferred-write otherwise.
+ */
+public class BerkeleyDBFrontierStorage extends Configurable
+    implements
+    FrontierStorage
+{
+
+    protected Environment env;
+
+    protected DocIDStore docIdServer;
+
+    protected WorkQueues workQueues;
+
+    protected Counters counters;
+
+    protected ValidatorDB validators = null;
+
+    protected GroupCommitter groupCommitter = null;
+
+    /**
+     * False if the environment and the docid store were handed in by the
+     * caller, who closes them.
+     */
+    protected final boolean ownsEnvironment;
+
+    public BerkeleyDBFrontierStorage(CrawlConfig config) throws Exception {
+	super(config);
+	ownsEnvironment = true;
+	boolean resumable = config.isResumableCrawling();
+	env = openEnvironment(config, resumable);
+	StripedDocIDServer stripedDocIdServer = new StripedDocIDServer(env, config);
+	docIdServer = stripedDocIdServer;
+	counters = new Counters(env, config);
+	if (config.isConditionalGet()) {
+	    validators = new ValidatorDB(config);
+	}
+	if (resumable) {
+	    workQueues = new ResumableWorkQueues(env, "PendingURLsDB");
+	} else {
+	    workQueues = new WorkQueues(env, "PendingURLsDB", false);
+	}
+	if (resumable && config.getGroupCommitInterval() > 0) {
+	    groupCommitter = new GroupCommitter(env, config.getGroupCommitInterval(), config.getGroupCommitOperations());
+	    stripedDocIdServer.setGroupCommitter(groupCommitter);
+	    counters.setGroupCommitter(groupCommitter);
+	    workQueues.setGroupCommitter(groupCommitter);
+	}
+    }
+
+    /**
+     * Creates a storage in an environment that was opened by the caller, with
+     * the given docid store. Closing the storage leaves both open. This is
+     * how frontiers were set up before there were frontier storages.
+     */
+    public BerkeleyDBFrontierStorage(Environment env, CrawlConfig config, DocIDStore docIdServer) {
+	super(config);
+	ownsEnvironment = false;
+	this.env = env;
+	this.docIdServer = docIdServer;
+	counters = new Counters(env, config);
+	if (config.isResumableCrawling()) {
+	    workQueues = new ResumableWorkQueues(env, "PendingURLsDB");
+	} else {
+	    workQueues = new WorkQueues(env, "PendingURLsDB", false);
+	}
+    }
+
+    /**
+     * Opens the Berkeley DB environment in the 'frontier' folder of the crawl
+     * storage folder. Unless the environment is transactional, its previous
+     * content is deleted. Transactional environments commit without syncing
+     * if group commits are enabled, see {@link GroupCommitter}.
+     */
+    public static Environment openEnvironment(CrawlConfig config, boolean transactional) throws Exception {
+	EnvironmentConfig envConfig = new EnvironmentConfig();
+	envConfig.setAllowCreate(true);
+	envConfig.setTransactional(transactional);
+	envConfig.setLocking(transactional);
+	if (transactional && config.getGroupCommitInterval() > 0) {
+	    envConfig.setDurability(Durability.COMMIT_NO_SYNC);
+	}
+
+	File envHome = new File(config.getCrawlStorageFolder() + "/frontier");
+	if (!envHome.exists()) {
+	    if (!envHome.mkdir()) {
+		throw new Exception("Couldn't create this folder: " + envHome.getAbsolutePath());
+	    }
+	}
+	if (!transactional) {
+	    FileUtils.deleteFolderContents(envHome);
+	}
+
+	return new Environment(envHome, envConfig);
+    }
+
+    public Environment getEnvironment() {
+	return env;
+    }
+
+    @Override
+    public URLQueue getURLQueue() {
+	return workQueues;
+    }
+
+    @Override
+    public DocIDStore getDocIDStore() {
+	return docIdServer;
+    }
+
+    @Override
+    public CounterStore getCounters() {
+	return counters;
+    }
+
+    @Override
+    public ValidatorStore getValidatorStore() {
+	return validators;
+    }
+
+    @Override
+    public void sync() {
+	workQueues.sync();
+	docIdServer.sync();
+	counters.sync();
+	if (validators != null) {
+	    validators.sync();
+	}
+    }
+
+    @Override
+    public void close() {
+	sync();
+	workQueues.close();
+	counters.close();
+	if (validators != null) {
+	    validators.close();
+	}
+	if (groupCommitter != null) {
+	    groupCommitter.close();
+	}
+	if (ownsEnvironment) {
+	    docIdServer.close();
+	    env.close();
+	}
+    }
+}
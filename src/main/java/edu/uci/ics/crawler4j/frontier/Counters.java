@@ -17,20 +17,25 @@
 
 package edu.uci.ics.crawler4j.frontier;
 
+import com.google.common.util.concurrent.AtomicLongMap;
 import com.sleepycat.je.*;
 import edu.uci.ics.crawler4j.crawler.Configurable;
 import edu.uci.ics.crawler4j.crawler.CrawlConfig;
 import edu.uci.ics.crawler4j.util.ByteArrayUtils;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
 
 /**
  * @author Yasser Ganjisaffar <lastname at gmail dot com>
  */
 
-public class Counters extends Configurable {
+public class Counters extends Configurable implements CounterStore {
 	
+	private static final Logger logger = Logger.getLogger(Counters.class.getName());
+
 	public class ReservedCounterNames {
 		public final static String SCHEDULED_PAGES = "Scheduled-Pages";
 		public final static String PROCESSED_PAGES = "Processed-Pages";
@@ -41,13 +46,32 @@ public class Counters extends Configurable {
 
 	protected final Object mutex = new Object();
 
-	protected Map<String, Long> counterValues;
+	/**
+	 * Counter values are updated without locking. In resumable crawls, they
+	 * are persisted by a background thread every countersFlushInterval
+	 * milliseconds, so the persisted values can lag behind by that much.
+	 */
+	protected final AtomicLongMap<String> counterValues = AtomicLongMap.create();
+
+	protected final AtomicBoolean dirty = new AtomicBoolean(false);
+
+	protected Thread flusher = null;
+
+	/**
+	 * The flusher waits on this lock between flushes, and is woken up through
+	 * it when the counters are closed. It is never interrupted, since an
+	 * interrupt during a transaction would invalidate the environment.
+	 */
+	protected final Object flusherLock = new Object();
+
+	protected volatile boolean closed = false;
+
+	protected GroupCommitter groupCommitter = null;
 
 	public Counters(Environment env, CrawlConfig config) throws DatabaseException {
 		super(config);
 
 		this.env = env;
-		this.counterValues = new HashMap<>();
 
 		/*
 		 * When crawling is set to be resumable, we have to keep the statistics
@@ -72,67 +96,101 @@ public class Counters extends Configurable {
 				if (value.getData().length > 0) {
 					String name = new String(key.getData());
 					long counterValue = ByteArrayUtils.byteArray2Long(value.getData());
-					counterValues.put(name, new Long(counterValue));
+					counterValues.put(name, counterValue);
 				}
 				result = cursor.getNext(key, value, null);
 			}
 			cursor.close();
 			tnx.commit();
+
+			startFlusher();
 		}
 	}
 
+	/**
+	 * If set, the commits of the counters are reported to the given
+	 * committer, see {@link GroupCommitter}.
+	 */
+	public void setGroupCommitter(GroupCommitter groupCommitter) {
+		this.groupCommitter = groupCommitter;
+	}
+
+	@Override
 	public long getValue(String name) {
-		synchronized (mutex) {
-			Long value = counterValues.get(name);
-			if (value == null) {
-				return 0;
-			}
-			return value.longValue();
-		}
+		return counterValues.get(name);
 	}
 
+	@Override
 	public void setValue(String name, long value) {
-		synchronized (mutex) {
-			try {
-				counterValues.put(name, new Long(value));
-				if (statisticsDB != null) {
-					Transaction txn = env.beginTransaction(null, null);					
-					statisticsDB.put(txn, new DatabaseEntry(name.getBytes()),
-							new DatabaseEntry(ByteArrayUtils.long2ByteArray(value)));
-					txn.commit();
-				}
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-		}
+		counterValues.put(name, value);
+		dirty.set(true);
 	}
 
+	@Override
 	public void increment(String name) {
 		increment(name, 1);
 	}
 
+	@Override
 	public void increment(String name, long addition) {
-		synchronized (mutex) {
-			long prevValue = getValue(name);
-			setValue(name, prevValue + addition);
-		}
+		counterValues.addAndGet(name, addition);
+		dirty.set(true);
 	}
 
-	public void sync() {
-		if (config.isResumableCrawling()) {
-			return;
-		}
+	/**
+	 * Writes a snapshot of all counters to the Statistics database in one
+	 * transaction, if they have changed since the last flush.
+	 */
+	public void flush() {
 		if (statisticsDB == null) {
 			return;
 		}
-		try {
-			statisticsDB.sync();
-		} catch (DatabaseException e) {
-			e.printStackTrace();
+		synchronized (mutex) {
+			if (!dirty.getAndSet(false)) {
+				return;
+			}
+			Transaction txn = null;
+			try {
+				txn = env.beginTransaction(null, null);
+				for (Map.Entry<String, Long> entry : counterValues.asMap().entrySet()) {
+					statisticsDB.put(txn, new DatabaseEntry(entry.getKey().getBytes()),
+							new DatabaseEntry(ByteArrayUtils.long2ByteArray(entry.getValue())));
+				}
+				txn.commit();
+				txn = null;
+				if (groupCommitter != null) {
+					groupCommitter.onCommit();
+				}
+			} catch (DatabaseException e) {
+				dirty.set(true);
+				logger.error("Error while persisting the counters: " + e.getMessage());
+			} finally {
+				if (txn != null) {
+					txn.abort();
+				}
+			}
 		}
 	}
 
+	@Override
+	public void sync() {
+		flush();
+	}
+
+	@Override
 	public void close() {
+		closed = true;
+		if (flusher != null) {
+			synchronized (flusherLock) {
+				flusherLock.notifyAll();
+			}
+			try {
+				flusher.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		flush();
 		try {
 			if (statisticsDB != null) {
 				statisticsDB.close();
@@ -141,4 +199,28 @@ public class Counters extends Configurable {
 			e.printStackTrace();
 		}
 	}
+
+	protected void startFlusher() {
+		flusher = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				while (!closed) {
+					synchronized (flusherLock) {
+						if (!closed) {
+							try {
+								flusherLock.wait(config.getCountersFlushInterval());
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+								return;
+							}
+						}
+					}
+					flush();
+				}
+			}
+		}, "CountersFlusher");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
 }
@@ -17,6 +17,9 @@
 
 package edu.uci.ics.crawler4j.frontier;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.log4j.Logger;
 
 import com.sleepycat.je.Database;
@@ -28,6 +31,7 @@ import com.sleepycat.je.OperationStatus;
 
 import edu.uci.ics.crawler4j.crawler.Configurable;
 import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.url.WebURL;
 import edu.uci.ics.crawler4j.util.ByteArrayUtils;
 
 /**
@@ -35,6 +39,8 @@ import edu.uci.ics.crawler4j.util.ByteArrayUtils;
  */
 
 public class DocIDServer extends Configurable
+    implements
+    DocIDStore
 {
 
     protected static final Logger logger = Logger.getLogger(DocIDServer.class.getName());
@@ -63,6 +69,27 @@ public class DocIDServer extends Configurable
 	}
     }
 
+    /**
+     * Constructor for subclasses that keep the docids somewhere else than in
+     * the DocIDs database.
+     */
+    protected DocIDServer(CrawlConfig config) {
+	super(config);
+	lastDocID = 0;
+    }
+
+    /**
+     * Returns the given store as a DocIDServer, for code that was written
+     * against this class before {@link DocIDStore} was introduced. Stores that
+     * are not DocIDServers are wrapped in one that delegates to them.
+     */
+    public static DocIDServer of(DocIDStore store, CrawlConfig config) {
+	if (store == null || store instanceof DocIDServer) {
+	    return (DocIDServer) store;
+	}
+	return new DelegatingDocIDServer(store, config);
+    }
+
     /**
      * Returns the docid of an already seen url.
      * 
@@ -71,6 +98,7 @@ public class DocIDServer extends Configurable
      * @return the docid of the url if it is seen before. Otherwise -1 is
      *         returned.
      */
+    @Override
     public int getDocId(String url) {
 	synchronized (mutex) {
 	    if (docIDsDB == null) {
@@ -92,6 +120,7 @@ public class DocIDServer extends Configurable
 	}
     }
 
+    @Override
     public int getNewDocID(String url) {
 	synchronized (mutex) {
 	    try {
@@ -112,6 +141,43 @@ public class DocIDServer extends Configurable
 	}
     }
 
+    @Override
+    public boolean getOrAssign(WebURL webURL) {
+	synchronized (mutex) {
+	    int docid = getDocId(webURL.getURL());
+	    if (docid > 0) {
+		webURL.setDocid(docid);
+		return false;
+	    }
+	    docid = getNewDocID(webURL.getURL());
+	    webURL.setDocid(docid);
+	    return docid > 0;
+	}
+    }
+
+    @Override
+    public void lookupAll(List<WebURL> webURLs) {
+	synchronized (mutex) {
+	    for (WebURL webURL : webURLs) {
+		webURL.setDocid(getDocId(webURL.getURL()));
+	    }
+	}
+    }
+
+    @Override
+    public List<WebURL> getOrAssignAll(List<WebURL> webURLs) {
+	List<WebURL> assigned = new ArrayList<>();
+	synchronized (mutex) {
+	    for (WebURL webURL : webURLs) {
+		if (getOrAssign(webURL)) {
+		    assigned.add(webURL);
+		}
+	    }
+	}
+	return assigned;
+    }
+
+    @Override
     public void addUrlAndDocId(String url, int docId) throws Exception {
 	synchronized (mutex) {
 	    if (docId <= lastDocID) {
@@ -132,10 +198,12 @@ public class DocIDServer extends Configurable
 	}
     }
 
+    @Override
     public boolean isSeenBefore(String url) {
 	return getDocId(url) != -1;
     }
 
+    @Override
     public int getDocCount() {
 	try {
 	    return (int) docIDsDB.count();
@@ -145,6 +213,7 @@ public class DocIDServer extends Configurable
 	return -1;
     }
 
+    @Override
     public void sync() {
 	if (config.isResumableCrawling()) {
 	    return;
@@ -159,6 +228,7 @@ public class DocIDServer extends Configurable
 	}
     }
 
+    @Override
     public void close() {
 	try {
 	    docIDsDB.close();
@@ -166,4 +236,65 @@ public class DocIDServer extends Configurable
 	    e.printStackTrace();
 	}
     }
+
+    private static class DelegatingDocIDServer extends DocIDServer
+    {
+
+	private final DocIDStore store;
+
+	DelegatingDocIDServer(DocIDStore store, CrawlConfig config) {
+	    super(config);
+	    this.store = store;
+	}
+
+	@Override
+	public int getDocId(String url) {
+	    return store.getDocId(url);
+	}
+
+	@Override
+	public int getNewDocID(String url) {
+	    return store.getNewDocID(url);
+	}
+
+	@Override
+	public boolean getOrAssign(WebURL webURL) {
+	    return store.getOrAssign(webURL);
+	}
+
+	@Override
+	public void lookupAll(List<WebURL> webURLs) {
+	    store.lookupAll(webURLs);
+	}
+
+	@Override
+	public List<WebURL> getOrAssignAll(List<WebURL> webURLs) {
+	    return store.getOrAssignAll(webURLs);
+	}
+
+	@Override
+	public void addUrlAndDocId(String url, int docId) throws Exception {
+	    store.addUrlAndDocId(url, docId);
+	}
+
+	@Override
+	public boolean isSeenBefore(String url) {
+	    return store.isSeenBefore(url);
+	}
+
+	@Override
+	public int getDocCount() {
+	    return store.getDocCount();
+	}
+
+	@Override
+	public void sync() {
+	    store.sync();
+	}
+
+	@Override
+	public void close() {
+	    store.close();
+	}
+    }
 }
@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import java.util.List;
+
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * Maps each seen URL to a unique docid.
+ */
+public interface DocIDStore
+{
+
+    /**
+     * Returns the docid of an already seen url.
+     * 
+     * @param url
+     *            the URL for which the docid is returned.
+     * @return the docid of the url if it is seen before. Otherwise -1 is
+     *         returned.
+     */
+    int getDocId(String url);
+
+    /**
+     * Assigns a new docid to the url, unless it already has one.
+     * 
+     * @return the docid of the url.
+     */
+    int getNewDocID(String url);
+
+    /**
+     * Atomically looks up the docid of the given URL and assigns a new one if
+     * it has not been seen before. In both cases the docid is set on the
+     * WebURL.
+     * 
+     * @return true if a new docid was assigned by this call, false if the URL
+     *         had been seen before.
+     */
+    boolean getOrAssign(WebURL webURL);
+
+    /**
+     * Sets the docid of each of the given URLs that has been seen before, and
+     * -1 on the others.
+     */
+    void lookupAll(List<WebURL> webURLs);
+
+    /**
+     * Does the same as {@link #getOrAssign(WebURL)} for all given URLs as one
+     * batch, in a single transaction if the store is transactional.
+     * 
+     * @return the URLs that got a new docid from this call, in the order in
+     *         which they were given.
+     */
+    List<WebURL> getOrAssignAll(List<WebURL> webURLs);
+
+    /**
+     * Assigns the given docid to the url. The docid has to be larger than all
+     * previously assigned docids.
+     */
+    void addUrlAndDocId(String url, int docId) throws Exception;
+
+    boolean isSeenBefore(String url);
+
+    int getDocCount();
+
+    void sync();
+
+    void close();
+}
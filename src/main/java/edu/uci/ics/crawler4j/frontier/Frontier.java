@@ -17,15 +17,22 @@
 
 package edu.uci.ics.crawler4j.frontier;
 
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.log4j.Logger;
 
-import com.sleepycat.je.DatabaseException;
 import com.sleepycat.je.Environment;
 
 import edu.uci.ics.crawler4j.crawler.Configurable;
 import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.fetcher.CachingDnsResolver;
+import edu.uci.ics.crawler4j.fetcher.PolitenessScheduler;
 import edu.uci.ics.crawler4j.frontier.Counters.ReservedCounterNames;
 import edu.uci.ics.crawler4j.url.WebURL;
 
@@ -38,75 +45,138 @@ public class Frontier extends Configurable
 
     protected static final Logger logger = Logger.getLogger(Frontier.class.getName());
 
-    protected WorkQueues workQueues;
+    protected FrontierStorage storage;
 
-    protected InProcessPagesDB inProcessPages;
+    protected URLQueue workQueues;
 
+    /**
+     * Per-host queues that are used instead of handing out URLs in global
+     * order if the host partitioned frontier is enabled. Otherwise null.
+     */
+    protected HostQueues hostQueues;
+
+    /**
+     * Guards the queues and the counters below. Crawlers waiting for URLs and
+     * threads waiting for the frontier to become idle wait on it, and every
+     * change that may concern them notifies it. Since the check for work and
+     * the wait happen under the same lock, no wakeup can get lost.
+     */
     protected final Object mutex = new Object();
-    protected final Object waitingList = new Object();
 
-    protected boolean isFinished = false;
+    protected volatile boolean isFinished = false;
 
     protected long scheduledPages;
 
-    protected DocIDServer docIdServer;
+    /**
+     * Number of URLs waiting in the queues, kept here because counting the
+     * entries of a Berkeley DB database takes a scan. Guarded by mutex.
+     */
+    protected long queuedPages;
 
-    protected Counters counters;
+    /**
+     * Number of URLs that were handed out by getNextURLs and are neither
+     * processed nor released yet. Guarded by mutex.
+     */
+    protected long inFlightPages = 0;
 
-    public Frontier(Environment env, CrawlConfig config, DocIDServer docIdServer) {
+    /**
+     * The deques holding the URLs crawlers have taken but not started on yet,
+     * see {@link #newWorkDeque()}.
+     */
+    protected final List<Deque<WebURL>> workDeques = new CopyOnWriteArrayList<>();
+
+    /**
+     * Number of URLs taken from the deque of another crawler. Guarded by
+     * mutex.
+     */
+    protected long stolenPages = 0;
+
+    /**
+     * A URL that is held back until a given time.
+     */
+    protected static class ParkedURL implements Comparable<ParkedURL>
+    {
+	final WebURL url;
+
+	final long until;
+
+	ParkedURL(WebURL url, long until) {
+	    this.url = url;
+	    this.until = until;
+	}
+
+	@Override
+	public int compareTo(ParkedURL other) {
+	    return Long.compare(until, other.until);
+	}
+    }
+
+    /**
+     * URLs that crawlers asked to retry later, see {@link #defer(WebURL, long)},
+     * and that are not marked as processed yet. Guarded by mutex.
+     */
+    protected final Map<WebURL, Long> deferredPages = new IdentityHashMap<>();
+
+    /**
+     * Deferred URLs waiting for their time to come, ordered by that time.
+     * They stay recorded as in process, so a resumable crawl that is
+     * interrupted in the meantime schedules them again. Guarded by mutex.
+     */
+    protected final PriorityQueue<ParkedURL> parkedPages = new PriorityQueue<>();
+
+    /**
+     * Resolves the hosts of URLs ahead of their fetch, see
+     * {@link #setDnsResolver(CachingDnsResolver)}. Null if not used.
+     */
+    protected CachingDnsResolver dnsResolver;
+
+    protected DocIDStore docIdServer;
+
+    protected CounterStore counters;
+
+    public Frontier(CrawlConfig config, FrontierStorage storage) {
 	super(config);
-	this.counters = new Counters(env, config);
-	this.docIdServer = docIdServer;
-	try {
-	    workQueues = new WorkQueues(env, "PendingURLsDB", config.isResumableCrawling());
-	    if (config.isResumableCrawling()) {
-		scheduledPages = counters.getValue(ReservedCounterNames.SCHEDULED_PAGES);
-		inProcessPages = new InProcessPagesDB(env);
-		long numPreviouslyInProcessPages = inProcessPages.getLength();
-		if (numPreviouslyInProcessPages > 0) {
-		    logger.info("Rescheduling " + numPreviouslyInProcessPages + " URLs from previous crawl.");
-		    scheduledPages -= numPreviouslyInProcessPages;
-		    while (true) {
-			List<WebURL> urls = inProcessPages.get(100);
-			if (urls.size() == 0) {
-			    break;
-			}
-			scheduleAll(urls);
-			inProcessPages.delete(urls.size());
-		    }
-		}
-	    } else {
-		inProcessPages = null;
-		scheduledPages = 0;
-	    }
-	} catch (DatabaseException e) {
-	    logger.error("Error while initializing the Frontier: " + e.getMessage());
-	    workQueues = null;
+	this.storage = storage;
+	this.workQueues = storage.getURLQueue();
+	this.docIdServer = storage.getDocIDStore();
+	this.counters = storage.getCounters();
+	if (config.isHostPartitionedFrontier()) {
+	    hostQueues = new HostQueues(config.getPolitenessDelay());
 	}
+	scheduledPages = counters.getValue(ReservedCounterNames.SCHEDULED_PAGES);
+	queuedPages = workQueues.getLength();
+    }
+
+    /**
+     * Creates a frontier whose queue and counters are kept in the given
+     * environment, next to the docids of the given server.
+     * 
+     * @deprecated Use {@link #Frontier(CrawlConfig, FrontierStorage)} with a
+     *             {@link FrontierStorage} instead.
+     */
+    @Deprecated
+    public Frontier(Environment env, CrawlConfig config, DocIDServer docIdServer) {
+	this(config, new BerkeleyDBFrontierStorage(env, config, docIdServer));
     }
 
     public void scheduleAll(List<WebURL> urls) {
 	int maxPagesToFetch = config.getMaxPagesToFetch();
 	synchronized (mutex) {
-	    int newScheduledPage = 0;
-	    for (WebURL url : urls) {
-		if (maxPagesToFetch > 0 && (scheduledPages + newScheduledPage) >= maxPagesToFetch) {
-		    break;
-		}
+	    List<WebURL> toPut = urls;
+	    if (maxPagesToFetch > 0 && scheduledPages + urls.size() > maxPagesToFetch) {
+		toPut = urls.subList(0, (int) Math.max(0, maxPagesToFetch - scheduledPages));
+	    }
+	    if (!toPut.isEmpty()) {
 		try {
-		    workQueues.put(url);
-		    newScheduledPage++;
-		} catch (DatabaseException e) {
-		    logger.error("Error while puting the url in the work queue.");
+		    workQueues.putAll(toPut);
+		    scheduledPages += toPut.size();
+		    queuedPages += toPut.size();
+		    counters.increment(Counters.ReservedCounterNames.SCHEDULED_PAGES, toPut.size());
+		} catch (RuntimeException e) {
+		    logger.error("Error while puting the urls in the work queue.");
 		}
 	    }
-	    if (newScheduledPage > 0) {
-		scheduledPages += newScheduledPage;
-		counters.increment(Counters.ReservedCounterNames.SCHEDULED_PAGES, newScheduledPage);
-	    }
-	    synchronized (waitingList) {
-		waitingList.notifyAll();
-	    }
+	    mutex.notifyAll();
 	}
     }
 
@@ -117,65 +187,406 @@ public class Frontier extends Configurable
 		if (maxPagesToFetch < 0 || scheduledPages < maxPagesToFetch) {
 		    workQueues.put(url);
 		    scheduledPages++;
+		    queuedPages++;
 		    counters.increment(Counters.ReservedCounterNames.SCHEDULED_PAGES);
 		}
-	    } catch (DatabaseException e) {
+	    } catch (RuntimeException e) {
 		logger.error("Error while puting the url in the work queue.");
 	    }
+	    mutex.notifyAll();
 	}
     }
 
+    /**
+     * Takes up to max URLs from the queue and adds them to result. If no URL
+     * is available, waits until some are scheduled or released, or until the
+     * frontier is finished, in which case result is left empty.
+     */
     public void getNextURLs(int max, List<WebURL> result) {
-	while (true) {
-	    synchronized (mutex) {
-		if (isFinished) {
-		    return;
-		}
+	getNextURLs(max, result, null);
+    }
+
+    /**
+     * Same as {@link #getNextURLs(int, List)}, but also adds the URLs to the
+     * given work deque before the mutex is released, so a crawler waiting for
+     * URLs can never miss them: either they are still in the queue or they
+     * can be stolen from the deque.
+     */
+    public void getNextURLs(int max, List<WebURL> result, Deque<WebURL> workDeque) {
+	synchronized (mutex) {
+	    while (!isFinished) {
+		long waitTime = 0;
+		long parkedWait = unpark(System.currentTimeMillis());
 		try {
-		    List<WebURL> curResults = workQueues.get(max);
-		    workQueues.delete(curResults.size());
-		    if (inProcessPages != null) {
-			for (WebURL curPage : curResults) {
-			    inProcessPages.put(curPage);
+		    if (hostQueues != null) {
+			fillHostQueues();
+			long now = System.currentTimeMillis();
+			hostQueues.poll(max, now, result);
+			if (result.isEmpty() && hostQueues.size() > 0) {
+			    // Wait for the first politeness window to open
+			    waitTime = Math.max(1, hostQueues.getNextReadyTime() - now);
 			}
+		    } else {
+			result.addAll(workQueues.take(max));
 		    }
-		    result.addAll(curResults);
-		} catch (DatabaseException e) {
+		    if (result.isEmpty() && (hostQueues == null || hostQueues.size() == 0)) {
+			// The queue is empty, in case a put replaced a URL that was
+			// already queued the count is off
+			queuedPages = 0;
+		    }
+		} catch (RuntimeException e) {
 		    logger.error("Error while getting next urls: " + e.getMessage());
 		    e.printStackTrace();
 		}
 		if (result.size() > 0) {
+		    prefetch(result);
+		    inFlightPages += result.size();
+		    queuedPages = Math.max(0, queuedPages - result.size());
+		    fill(workDeque, result);
 		    return;
 		}
-	    }
-	    try {
-		synchronized (waitingList) {
-		    waitingList.wait();
+		if (steal(max, result) > 0) {
+		    fill(workDeque, result);
+		    return;
+		}
+		if (parkedWait > 0 && (waitTime == 0 || parkedWait < waitTime)) {
+		    waitTime = parkedWait;
+		}
+		try {
+		    mutex.wait(waitTime);
+		} catch (InterruptedException ignored) {
+		    // Do nothing
 		}
-	    } catch (InterruptedException ignored) {
-		// Do nothing
 	    }
-	    if (isFinished) {
-		return;
+	}
+    }
+
+    private static void fill(Deque<WebURL> workDeque, List<WebURL> urls) {
+	if (workDeque != null) {
+	    workDeque.addAll(urls);
+	}
+    }
+
+    /**
+     * Returns a deque for a crawler to hold the URLs it got from getNextURLs
+     * in. The crawler takes URLs from the head of the deque, one at a time.
+     * Once the queue of the frontier is empty, crawlers that ask for more URLs
+     * steal from the tail of the deques of the others, so URLs do not wait
+     * behind a slow page while other crawlers are idle. The deque should be
+     * filled by {@link #getNextURLs(int, List, Deque)}. The deque must be
+     * given back with {@link #removeWorkDeque(Deque)} after the URLs left in
+     * it have been released.
+     */
+    public Deque<WebURL> newWorkDeque() {
+	Deque<WebURL> deque = new ConcurrentLinkedDeque<>();
+	workDeques.add(deque);
+	return deque;
+    }
+
+    public void removeWorkDeque(Deque<WebURL> deque) {
+	workDeques.remove(deque);
+    }
+
+    /**
+     * Moves up to half of the URLs of the fullest work deque, but no more than
+     * max, to result. Must be called while holding mutex. The URLs are still
+     * counted as in flight, so only the crawler that processes them changes.
+     * 
+     * @return the number of stolen URLs.
+     */
+    protected int steal(int max, List<WebURL> result) {
+	Deque<WebURL> victim = null;
+	int victimSize = 0;
+	for (Deque<WebURL> deque : workDeques) {
+	    int size = deque.size();
+	    if (size > victimSize) {
+		victim = deque;
+		victimSize = size;
+	    }
+	}
+	if (victim == null) {
+	    return 0;
+	}
+	int toSteal = Math.min(max, (victimSize + 1) / 2);
+	int stolen = 0;
+	while (stolen < toSteal) {
+	    WebURL url = victim.pollLast();
+	    if (url == null) {
+		break;
 	    }
+	    result.add(url);
+	    stolen++;
+	}
+	stolenPages += stolen;
+	return stolen;
+    }
+
+    /**
+     * Returns the number of URLs crawlers took from the deques of other
+     * crawlers.
+     */
+    public long getNumberOfStolenPages() {
+	synchronized (mutex) {
+	    return stolenPages;
+	}
+    }
+
+    /**
+     * Moves URLs from the work queues to the per-host queues until they hold
+     * hostQueuesCapacity URLs. In resumable mode these URLs are recorded as in
+     * process, so they are rescheduled if the crawl is interrupted.
+     */
+    protected void fillHostQueues() {
+	int capacity = config.getHostQueuesCapacity();
+	if (hostQueues.size() > capacity / 2) {
+	    return;
+	}
+	List<WebURL> urls = workQueues.take(capacity - hostQueues.size());
+	for (WebURL url : urls) {
+	    hostQueues.add(url);
+	}
+	prefetch(urls);
+    }
+
+    /**
+     * Has the hosts of the given URLs resolved in the background, so that
+     * their addresses are cached by the time the URLs are fetched.
+     */
+    protected void prefetch(List<WebURL> urls) {
+	if (dnsResolver == null) {
+	    return;
+	}
+	String lastHost = null;
+	for (WebURL url : urls) {
+	    String host = url.getHost();
+	    if (host != null && !host.equals(lastHost)) {
+		dnsResolver.prefetch(getHostName(host));
+		lastHost = host;
+	    }
+	}
+    }
+
+    /**
+     * Strips the port, and the brackets of an IPv6 address, from the host of
+     * a WebURL, which leaves the name the connection manager resolves.
+     */
+    protected static String getHostName(String host) {
+	if (host.startsWith("[")) {
+	    int end = host.indexOf(']');
+	    return end > 0 ? host.substring(1, end) : host;
+	}
+	int colon = host.indexOf(':');
+	return colon >= 0 ? host.substring(0, colon) : host;
+    }
+
+    /**
+     * Moves the parked URLs whose time has come back to the queue. Must be
+     * called while holding mutex.
+     * 
+     * @return the number of milliseconds until the next parked URL is due, or
+     *         0 if no URL is parked.
+     */
+    protected long unpark(long now) {
+	while (!parkedPages.isEmpty()) {
+	    ParkedURL parked = parkedPages.peek();
+	    if (parked.until > now) {
+		return parked.until - now;
+	    }
+	    parkedPages.poll();
+	    try {
+		workQueues.put(parked.url);
+		queuedPages++;
+		workQueues.setProcessed(parked.url);
+	    } catch (RuntimeException e) {
+		logger.error("Error while unparking: " + parked.url.getURL() + ", " + e.getMessage());
+	    }
+	}
+	return 0;
+    }
+
+    /**
+     * Asks for a URL that was returned by getNextURLs to be handed out again
+     * no earlier than until, for example because its host is not reachable at
+     * the moment. The crawler then marks the URL as processed as usual, which
+     * parks it instead of counting it. The URL keeps the frontier from
+     * becoming idle while it is parked.
+     */
+    public void defer(WebURL url, long until) {
+	synchronized (mutex) {
+	    deferredPages.put(url, until);
 	}
     }
 
     public void setProcessed(WebURL webURL) {
+	synchronized (mutex) {
+	    Long until = deferredPages.remove(webURL);
+	    if (until != null) {
+		parkedPages.add(new ParkedURL(webURL, until));
+		mutex.notifyAll();
+		onDone(1);
+		return;
+	    }
+	}
 	counters.increment(ReservedCounterNames.PROCESSED_PAGES);
-	if (inProcessPages != null) {
-	    if (!inProcessPages.removeURL(webURL)) {
-		logger.warn("Could not remove: " + webURL.getURL() + " from list of processed pages.");
+	if (!workQueues.setProcessed(webURL)) {
+	    logger.warn("Could not remove: " + webURL.getURL() + " from list of processed pages.");
+	}
+	onDone(1);
+    }
+
+    /**
+     * Gives back URLs that were returned by getNextURLs but will not be
+     * processed by the crawler that got them. They are put back in the queue.
+     */
+    public void release(List<WebURL> urls) {
+	if (urls.isEmpty()) {
+	    return;
+	}
+	synchronized (mutex) {
+	    try {
+		workQueues.putAll(urls);
+		queuedPages += urls.size();
+		for (WebURL url : urls) {
+		    deferredPages.remove(url);
+		    workQueues.setProcessed(url);
+		}
+	    } catch (RuntimeException e) {
+		logger.error("Error while releasing urls: " + e.getMessage());
+	    }
+	    mutex.notifyAll();
+	}
+	onDone(urls.size());
+    }
+
+    protected void onDone(int pages) {
+	synchronized (mutex) {
+	    inFlightPages -= pages;
+	    if (inFlightPages <= 0) {
+		mutex.notifyAll();
+	    }
+	}
+    }
+
+    /**
+     * Returns true if no URL is queued or parked and no URL that was handed
+     * out is still being processed, which means that the crawl has run out of
+     * work. Uses the queued page count instead of counting the queue, since
+     * the monitor checks this on every notification of the mutex.
+     */
+    public boolean isIdle() {
+	synchronized (mutex) {
+	    return inFlightPages <= 0 && parkedPages.isEmpty() && queuedPages <= 0
+		    && (hostQueues == null || hostQueues.size() == 0);
+	}
+    }
+
+    /**
+     * Waits until the frontier becomes idle (see {@link #isIdle()}) or is
+     * finished, for at most timeout milliseconds.
+     * 
+     * @return true if the frontier is idle.
+     */
+    public boolean awaitIdle(long timeout) throws InterruptedException {
+	long deadline = System.currentTimeMillis() + timeout;
+	synchronized (mutex) {
+	    while (!isIdle()) {
+		long remaining = deadline - System.currentTimeMillis();
+		if (remaining <= 0 || isFinished) {
+		    return false;
+		}
+		mutex.wait(remaining);
 	    }
+	    return true;
 	}
     }
 
+    /**
+     * Waits until all URLs handed out by getNextURLs are processed or
+     * released, for at most timeout milliseconds. Unlike
+     * {@link #awaitIdle(long)} this does not care about the queue, so it is
+     * what a shutdown waits for.
+     *
+     * @return true if no URL is assigned to a crawler any more.
+     */
+    public boolean awaitNoAssignedPages(long timeout) throws InterruptedException {
+	long deadline = System.currentTimeMillis() + timeout;
+	synchronized (mutex) {
+	    while (inFlightPages > 0) {
+		long remaining = deadline - System.currentTimeMillis();
+		if (remaining <= 0) {
+		    return false;
+		}
+		mutex.wait(remaining);
+	    }
+	    return true;
+	}
+    }
+
+    /**
+     * Returns how many URLs a crawler should take with its next call to
+     * getNextURLs. The queued URLs are split evenly between the crawlers, so
+     * that none of them hoards URLs the others could work on once the queue
+     * runs low, and a batch should not take longer than urlBatchDuration to
+     * process. The result is kept within the bounds set in the config.
+     * 
+     * @param numberOfCrawlers
+     *            the number of crawlers that take URLs from this frontier.
+     * @param millisPerUrl
+     *            the time it recently took the crawler to process a URL, or 0
+     *            if not known yet.
+     */
+    public int getBatchSize(int numberOfCrawlers, double millisPerUrl) {
+	long size;
+	synchronized (mutex) {
+	    size = queuedPages / Math.max(1, numberOfCrawlers);
+	}
+	if (millisPerUrl > 0) {
+	    size = Math.min(size, (long) (config.getUrlBatchDuration() / millisPerUrl));
+	}
+	return (int) Math.max(config.getMinUrlBatchSize(), Math.min(config.getMaxUrlBatchSize(), size));
+    }
+
     public long getQueueLength() {
+	if (hostQueues != null) {
+	    synchronized (mutex) {
+		return workQueues.getLength() + hostQueues.size();
+	    }
+	}
 	return workQueues.getLength();
     }
 
+    /**
+     * Lets the per-host queues take the politeness windows tracked by the
+     * fetcher into account. Has no effect unless the host partitioned frontier
+     * is enabled.
+     */
+    public void setPolitenessScheduler(PolitenessScheduler politenessScheduler) {
+	if (hostQueues != null) {
+	    hostQueues.setPolitenessScheduler(politenessScheduler);
+	}
+    }
+
+    /**
+     * Lets the frontier prefetch the hosts of the URLs it hands out, and of
+     * the URLs it moves to the per-host queues, with the given resolver.
+     */
+    public void setDnsResolver(CachingDnsResolver dnsResolver) {
+	this.dnsResolver = dnsResolver;
+    }
+
     public long getNumberOfAssignedPages() {
-	return inProcessPages.getLength();
+	synchronized (mutex) {
+	    return inFlightPages;
+	}
+    }
+
+    /**
+     * Returns the number of deferred URLs that wait to be queued again.
+     */
+    public int getNumberOfParkedPages() {
+	synchronized (mutex) {
+	    return parkedPages.size();
+	}
     }
 
     public long getNumberOfProcessedPages() {
@@ -183,25 +594,24 @@ public class Frontier extends Configurable
     }
 
     public void sync() {
-	workQueues.sync();
-	docIdServer.sync();
-	counters.sync();
+	storage.sync();
     }
 
     public boolean isFinished() {
 	return isFinished;
     }
 
+    /**
+     * Closes the storage of this frontier, including its docid store.
+     */
     public void close() {
-	sync();
-	workQueues.close();
-	counters.close();
+	storage.close();
     }
 
     public void finish() {
-	isFinished = true;
-	synchronized (waitingList) {
-	    waitingList.notifyAll();
+	synchronized (mutex) {
+	    isFinished = true;
+	    mutex.notifyAll();
 	}
     }
 }
@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+/**
+ * The storage engine behind the {@link Frontier}. An implementation provides
+ * the URL queue, the URL-to-docid store, the counters and the validators of a
+ * crawl, and owns whatever resources they share.
+ * 
+ * @see BerkeleyDBFrontierStorage
+ * @see InMemoryFrontierStorage
+ */
+public interface FrontierStorage
+{
+
+    URLQueue getURLQueue();
+
+    DocIDStore getDocIDStore();
+
+    CounterStore getCounters();
+
+    /**
+     * Returns the store of the validators used for conditional requests, or
+     * null if they are not enabled in the config.
+     */
+    ValidatorStore getValidatorStore();
+
+    /**
+     * Flushes all stores to their persistent storage, if they have one.
+     */
+    void sync();
+
+    /**
+     * Closes all stores and releases the resources of this storage.
+     */
+    void close();
+}
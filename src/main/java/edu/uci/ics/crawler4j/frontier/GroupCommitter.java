@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+
+/**
+ * Makes the commits of a transactional environment durable in groups. The
+ * environment is expected to commit without syncing its log, and this class
+ * syncs the environment every interval milliseconds, or earlier once
+ * maxOperations commits have been reported through {@link #onCommit()}. A
+ * crash can therefore only lose the commits of the last group. Since the log
+ * is written sequentially, what survives is always a prefix of the committed
+ * transactions.
+ */
+public class GroupCommitter implements Runnable
+{
+
+    private static final Logger logger = Logger.getLogger(GroupCommitter.class.getName());
+
+    protected final Environment env;
+
+    protected final long interval;
+
+    protected final int maxOperations;
+
+    protected final AtomicInteger pendingOperations = new AtomicInteger();
+
+    protected final Object waitingLock = new Object();
+
+    protected volatile boolean closed = false;
+
+    protected Thread thread;
+
+    public GroupCommitter(Environment env, long interval, int maxOperations) {
+	this.env = env;
+	this.interval = interval;
+	this.maxOperations = maxOperations;
+	thread = new Thread(this, "GroupCommitter");
+	thread.setDaemon(true);
+	thread.start();
+    }
+
+    /**
+     * Called after each commit that has not been synced yet.
+     */
+    public void onCommit() {
+	if (pendingOperations.incrementAndGet() == maxOperations) {
+	    synchronized (waitingLock) {
+		waitingLock.notifyAll();
+	    }
+	}
+    }
+
+    public int getPendingOperations() {
+	return pendingOperations.get();
+    }
+
+    @Override
+    public void run() {
+	while (!closed) {
+	    synchronized (waitingLock) {
+		if (!closed && pendingOperations.get() < maxOperations) {
+		    try {
+			waitingLock.wait(interval);
+		    } catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		    }
+		}
+	    }
+	    flush();
+	}
+    }
+
+    /**
+     * Syncs all commits reported so far to disk.
+     */
+    public void flush() {
+	if (pendingOperations.getAndSet(0) == 0) {
+	    return;
+	}
+	try {
+	    env.sync();
+	} catch (DatabaseException e) {
+	    logger.error("Error while syncing the frontier environment: " + e.getMessage());
+	}
+    }
+
+    /**
+     * Stops the background thread and syncs the remaining commits.
+     */
+    public void close() {
+	closed = true;
+	synchronized (waitingLock) {
+	    waitingLock.notifyAll();
+	}
+	try {
+	    thread.join();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+	flush();
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import edu.uci.ics.crawler4j.fetcher.PolitenessScheduler;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * An in-memory set of per-host URL queues plus a heap of hosts ordered by the
+ * time their politeness window opens. It is used by the {@link Frontier} to
+ * hand out URLs of hosts that can be fetched right away.
+ *
+ * This class is not thread-safe, callers are expected to synchronize on their
+ * own lock.
+ */
+public class HostQueues
+{
+
+    protected final Map<String, HostQueue> hostQueues = new HashMap<>();
+
+    protected final PriorityQueue<HostQueue> readyHeap = new PriorityQueue<>();
+
+    protected final int politenessDelay;
+
+    protected PolitenessScheduler politenessScheduler;
+
+    protected int size = 0;
+
+    public HostQueues(int politenessDelay) {
+	this.politenessDelay = politenessDelay;
+    }
+
+    /**
+     * If set, the politeness windows tracked by the fetcher are taken into
+     * account when deciding whether a host is ready.
+     */
+    public void setPolitenessScheduler(PolitenessScheduler politenessScheduler) {
+	this.politenessScheduler = politenessScheduler;
+    }
+
+    public void add(WebURL url) {
+	String host = url.getHost();
+	HostQueue queue = hostQueues.get(host);
+	if (queue == null) {
+	    queue = new HostQueue(host);
+	    hostQueues.put(host, queue);
+	    readyHeap.add(queue);
+	}
+	queue.urls.add(url);
+	size++;
+    }
+
+    /**
+     * Moves up to max URLs to the result list, at most one per host, taken
+     * from the hosts whose politeness window is open at the given time.
+     */
+    public void poll(int max, long now, List<WebURL> result) {
+	int count = 0;
+	while (count < max && !readyHeap.isEmpty() && readyHeap.peek().readyTime <= now) {
+	    HostQueue queue = readyHeap.poll();
+	    if (politenessScheduler != null) {
+		long nextFetchTime = politenessScheduler.getNextFetchTime(queue.host);
+		if (nextFetchTime > now) {
+		    queue.readyTime = nextFetchTime;
+		    readyHeap.add(queue);
+		    continue;
+		}
+	    }
+	    result.add(queue.urls.poll());
+	    size--;
+	    count++;
+	    if (queue.urls.isEmpty()) {
+		hostQueues.remove(queue.host);
+	    } else {
+		queue.readyTime = now + politenessDelay;
+		readyHeap.add(queue);
+	    }
+	}
+    }
+
+    /**
+     * Returns the earliest time at which one of the hosts becomes ready, or
+     * Long.MAX_VALUE if there are no queued URLs.
+     */
+    public long getNextReadyTime() {
+	if (readyHeap.isEmpty()) {
+	    return Long.MAX_VALUE;
+	}
+	return readyHeap.peek().readyTime;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public int getNumberOfHosts() {
+	return hostQueues.size();
+    }
+
+    protected static class HostQueue implements Comparable<HostQueue>
+    {
+	final String host;
+	final ArrayDeque<WebURL> urls = new ArrayDeque<>();
+	long readyTime = 0;
+
+	HostQueue(String host) {
+	    this.host = host;
+	}
+
+	@Override
+	public int compareTo(HostQueue other) {
+	    return Long.compare(readyTime, other.readyTime);
+	}
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseConfig;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.OperationStatus;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.url.URLFingerprint;
+import edu.uci.ics.crawler4j.util.ByteArrayUtils;
+import edu.uci.ics.crawler4j.util.LongIntHashMap;
+
+/**
+ * A URL-seen store for non-resumable crawls that maps 64-bit URL fingerprints
+ * to docids in a primitive hash map. Once the memory budget is used up, new
+ * entries are spilled to a deferred-write Berkeley DB database.
+ */
+public class InMemoryDocIDServer extends DocIDServer
+{
+
+    protected final LongIntHashMap docIds = new LongIntHashMap(64 * 1024);
+
+    protected final Environment env;
+
+    protected final MemoryBudget memoryBudget;
+
+    protected long reservedBytes = 0;
+
+    protected Database spilledDocIDsDB = null;
+
+    public InMemoryDocIDServer(Environment env, CrawlConfig config, MemoryBudget memoryBudget) {
+	super(config);
+	this.env = env;
+	this.memoryBudget = memoryBudget;
+    }
+
+    @Override
+    public int getDocId(String url) {
+	synchronized (mutex) {
+	    return getDocId(URLFingerprint.getFingerprint(url));
+	}
+    }
+
+    @Override
+    public int getNewDocID(String url) {
+	synchronized (mutex) {
+	    try {
+		long fingerprint = URLFingerprint.getFingerprint(url);
+		int docid = getDocId(fingerprint);
+		if (docid > 0) {
+		    return docid;
+		}
+
+		lastDocID++;
+		store(fingerprint, lastDocID);
+		return lastDocID;
+	    } catch (Exception e) {
+		e.printStackTrace();
+	    }
+	    return -1;
+	}
+    }
+
+    @Override
+    public void addUrlAndDocId(String url, int docId) throws Exception {
+	synchronized (mutex) {
+	    if (docId <= lastDocID) {
+		throw new Exception("Requested doc id: " + docId + " is not larger than: " + lastDocID);
+	    }
+
+	    // Make sure that we have not already assigned a docid for this URL
+	    long fingerprint = URLFingerprint.getFingerprint(url);
+	    int prevDocid = getDocId(fingerprint);
+	    if (prevDocid > 0) {
+		if (prevDocid == docId) {
+		    return;
+		}
+		throw new Exception("Doc id: " + prevDocid + " is already assigned to URL: " + url);
+	    }
+
+	    store(fingerprint, docId);
+	    lastDocID = docId;
+	}
+    }
+
+    @Override
+    public int getDocCount() {
+	synchronized (mutex) {
+	    try {
+		long count = docIds.size();
+		if (spilledDocIDsDB != null) {
+		    count += spilledDocIDsDB.count();
+		}
+		return (int) count;
+	    } catch (DatabaseException e) {
+		e.printStackTrace();
+	    }
+	    return -1;
+	}
+    }
+
+    @Override
+    public void sync() {
+	// Nothing to persist
+    }
+
+    @Override
+    public void close() {
+	synchronized (mutex) {
+	    memoryBudget.release(reservedBytes);
+	    reservedBytes = 0;
+	    try {
+		if (spilledDocIDsDB != null) {
+		    spilledDocIDsDB.close();
+		    spilledDocIDsDB = null;
+		}
+	    } catch (DatabaseException e) {
+		e.printStackTrace();
+	    }
+	}
+    }
+
+    protected int getDocId(long fingerprint) {
+	int docid = docIds.get(fingerprint);
+	if (docid > 0 || spilledDocIDsDB == null) {
+	    return docid;
+	}
+	try {
+	    DatabaseEntry value = new DatabaseEntry();
+	    OperationStatus result = spilledDocIDsDB.get(null, new DatabaseEntry(ByteArrayUtils.long2ByteArray(fingerprint)),
+		    value, null);
+	    if (result == OperationStatus.SUCCESS && value.getData().length > 0) {
+		return ByteArrayUtils.byteArray2Int(value.getData());
+	    }
+	} catch (Exception e) {
+	    e.printStackTrace();
+	}
+	return -1;
+    }
+
+    protected void store(long fingerprint, int docId) throws DatabaseException {
+	if (memoryBudget.tryReserve(LongIntHashMap.BYTES_PER_ENTRY)) {
+	    reservedBytes += LongIntHashMap.BYTES_PER_ENTRY;
+	    docIds.putIfAbsent(fingerprint, docId);
+	    return;
+	}
+	if (spilledDocIDsDB == null) {
+	    DatabaseConfig dbConfig = new DatabaseConfig();
+	    dbConfig.setAllowCreate(true);
+	    dbConfig.setTransactional(false);
+	    dbConfig.setDeferredWrite(true);
+	    spilledDocIDsDB = env.openDatabase(null, "SpilledDocIDs", dbConfig);
+	}
+	spilledDocIDsDB.put(null, new DatabaseEntry(ByteArrayUtils.long2ByteArray(fingerprint)),
+		new DatabaseEntry(ByteArrayUtils.int2ByteArray(docId)));
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import com.sleepycat.je.Environment;
+
+import edu.uci.ics.crawler4j.crawler.Configurable;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+
+/**
+ * Frontier storage for non-resumable crawls that keeps the URL queue and the
+ * docids in memory, see {@link InMemoryWorkQueues} and
+ * {@link InMemoryDocIDServer}. A non-transactional Berkeley DB environment is
+ * only written to once the memory budget is exceeded.
+ */
+public class InMemoryFrontierStorage extends Configurable
+    implements
+    FrontierStorage
+{
+
+    protected Environment env;
+
+    protected MemoryBudget memoryBudget;
+
+    protected InMemoryDocIDServer docIdServer;
+
+    protected InMemoryWorkQueues workQueues;
+
+    protected Counters counters;
+
+    protected ValidatorDB validators = null;
+
+    public InMemoryFrontierStorage(CrawlConfig config) throws Exception {
+	super(config);
+	if (config.isResumableCrawling()) {
+	    throw new Exception("In-memory frontier can not be used for resumable crawling.");
+	}
+	env = BerkeleyDBFrontierStorage.openEnvironment(config, false);
+	memoryBudget = new MemoryBudget(config.getFrontierMemoryBudget());
+	docIdServer = new InMemoryDocIDServer(env, config, memoryBudget);
+	workQueues = new InMemoryWorkQueues(env, "SpilledURLsDB", memoryBudget);
+	// Counters are not persisted for non-resumable crawls
+	counters = new Counters(env, config);
+	if (config.isConditionalGet()) {
+	    validators = new ValidatorDB(config);
+	}
+    }
+
+    public MemoryBudget getMemoryBudget() {
+	return memoryBudget;
+    }
+
+    @Override
+    public URLQueue getURLQueue() {
+	return workQueues;
+    }
+
+    @Override
+    public DocIDStore getDocIDStore() {
+	return docIdServer;
+    }
+
+    @Override
+    public CounterStore getCounters() {
+	return counters;
+    }
+
+    @Override
+    public ValidatorStore getValidatorStore() {
+	return validators;
+    }
+
+    @Override
+    public void sync() {
+	// Nothing to persist but the validators
+	if (validators != null) {
+	    validators.sync();
+	}
+    }
+
+    @Override
+    public void close() {
+	workQueues.close();
+	counters.close();
+	docIdServer.close();
+	if (validators != null) {
+	    validators.close();
+	}
+	env.close();
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * A heap based queue of pending URLs for non-resumable crawls. URLs are kept
+ * as objects, so nothing is serialized on put and take. Once the memory budget
+ * is used up, newly scheduled URLs are spilled to a deferred-write Berkeley DB
+ * database. The head of the heap is compared with the head of the spill
+ * database on every take, and spilled URLs are read back in batches whenever
+ * they come first, so URLs are taken in the same order as from
+ * {@link WorkQueues}.
+ */
+public class InMemoryWorkQueues extends WorkQueues
+{
+
+    /**
+     * Number of URLs that are moved from the spill database back to the heap
+     * at once.
+     */
+    protected static final int REFILL_SIZE = 1000;
+
+    /**
+     * Same order as the keys that are used by {@link WorkQueues}.
+     */
+    protected static final Comparator<WebURL> URL_ORDER = new Comparator<WebURL>() {
+
+	@Override
+	public int compare(WebURL a, WebURL b) {
+	    int cmp = Integer.compare(a.getPriority() & 0xFF, b.getPriority() & 0xFF);
+	    if (cmp != 0) {
+		return cmp;
+	    }
+	    cmp = Integer.compare(Math.min(a.getDepth(), Byte.MAX_VALUE), Math.min(b.getDepth(), Byte.MAX_VALUE));
+	    if (cmp != 0) {
+		return cmp;
+	    }
+	    return Integer.compare(a.getDocid(), b.getDocid());
+	}
+    };
+
+    protected final PriorityQueue<WebURL> heap = new PriorityQueue<>(1024, URL_ORDER);
+
+    protected final MemoryBudget memoryBudget;
+
+    protected long reservedBytes = 0;
+
+    protected final String spillDbName;
+
+    protected WorkQueues spilledURLs = null;
+
+    /**
+     * Number of URLs in the spill database, kept here so it does not have to
+     * be counted.
+     */
+    protected long spilledCount = 0;
+
+    /**
+     * The first URL of the spill database, or null if it has to be read.
+     */
+    protected WebURL spillHead = null;
+
+    public InMemoryWorkQueues(Environment env, String spillDbName, MemoryBudget memoryBudget) {
+	super(env, false);
+	this.spillDbName = spillDbName;
+	this.memoryBudget = memoryBudget;
+    }
+
+    @Override
+    public List<WebURL> get(int max) throws DatabaseException {
+	synchronized (mutex) {
+	    List<WebURL> results = poll(max);
+	    heap.addAll(results);
+	    return results;
+	}
+    }
+
+    @Override
+    public void delete(int count) throws DatabaseException {
+	synchronized (mutex) {
+	    List<WebURL> deleted = poll(count);
+	    for (WebURL url : deleted) {
+		release(url);
+	    }
+	}
+    }
+
+    /**
+     * Removes up to max URLs from the head of this queue and returns them. The
+     * in-memory queue is only used for non-resumable crawls, so
+     * inProcessPages is expected to be null.
+     */
+    @Override
+    public List<WebURL> take(int max, WorkQueues inProcessPages) throws DatabaseException {
+	synchronized (mutex) {
+	    List<WebURL> results = poll(max);
+	    for (WebURL url : results) {
+		release(url);
+	    }
+	    if (inProcessPages != null) {
+		for (WebURL url : results) {
+		    inProcessPages.put(url);
+		}
+	    }
+	    return results;
+	}
+    }
+
+    @Override
+    public void put(WebURL url) throws DatabaseException {
+	synchronized (mutex) {
+	    long size = estimateSize(url);
+	    if (memoryBudget.tryReserve(size)) {
+		reservedBytes += size;
+		heap.add(url);
+	    } else {
+		if (spilledURLs == null) {
+		    spilledURLs = new WorkQueues(env, spillDbName, false);
+		}
+		spilledURLs.put(url);
+		spilledCount++;
+		if (spillHead != null && URL_ORDER.compare(url, spillHead) < 0) {
+		    spillHead = url;
+		}
+	    }
+	}
+    }
+
+    @Override
+    public void putAll(List<WebURL> urls) throws DatabaseException {
+	synchronized (mutex) {
+	    for (WebURL url : urls) {
+		put(url);
+	    }
+	}
+    }
+
+    @Override
+    public long getLength() {
+	synchronized (mutex) {
+	    return heap.size() + spilledCount;
+	}
+    }
+
+    @Override
+    public void sync() {
+	// Nothing to persist
+    }
+
+    @Override
+    public void close() {
+	synchronized (mutex) {
+	    heap.clear();
+	    memoryBudget.release(reservedBytes);
+	    reservedBytes = 0;
+	    if (spilledURLs != null) {
+		spilledURLs.close();
+		spilledURLs = null;
+	    }
+	    spilledCount = 0;
+	    spillHead = null;
+	}
+    }
+
+    /**
+     * Removes up to max URLs from the heap, refilling it from the spill
+     * database whenever the first spilled URL comes before the head of the
+     * heap.
+     */
+    protected List<WebURL> poll(int max) throws DatabaseException {
+	List<WebURL> results = new ArrayList<>(Math.min(max, heap.size() + 1));
+	while (results.size() < max) {
+	    WebURL firstSpilled = spilledCount > 0 ? getSpillHead() : null;
+	    if (firstSpilled != null && (heap.isEmpty() || URL_ORDER.compare(firstSpilled, heap.peek()) < 0)) {
+		refill();
+	    }
+	    if (heap.isEmpty()) {
+		break;
+	    }
+	    results.add(heap.poll());
+	}
+	return results;
+    }
+
+    /**
+     * Returns the first URL of the spill database, or null if it is empty.
+     */
+    protected WebURL getSpillHead() throws DatabaseException {
+	if (spillHead == null) {
+	    List<WebURL> head = spilledURLs.get(1);
+	    if (head.isEmpty()) {
+		spilledCount = 0;
+		return null;
+	    }
+	    spillHead = head.get(0);
+	}
+	return spillHead;
+    }
+
+    protected boolean refill() throws DatabaseException {
+	if (spilledURLs == null) {
+	    return false;
+	}
+	List<WebURL> urls = spilledURLs.take(REFILL_SIZE, null);
+	spilledCount = urls.isEmpty() ? 0 : Math.max(0, spilledCount - urls.size());
+	spillHead = null;
+	for (WebURL url : urls) {
+	    long size = estimateSize(url);
+	    memoryBudget.reserve(size);
+	    reservedBytes += size;
+	    heap.add(url);
+	}
+	return !urls.isEmpty();
+    }
+
+    protected void release(WebURL url) {
+	long size = estimateSize(url);
+	memoryBudget.release(size);
+	reservedBytes -= size;
+    }
+
+    /**
+     * Rough estimate of the heap space used by a WebURL and its strings.
+     */
+    protected static long estimateSize(WebURL url) {
+	long chars = 3L * url.getURL().length();
+	if (url.getParentUrl() != null) {
+	    chars += url.getParentUrl().length();
+	}
+	if (url.getAnchor() != null) {
+	    chars += url.getAnchor().length();
+	}
+	return 200 + 2 * chars;
+    }
+}
@@ -77,6 +77,7 @@ public class InProcessPagesDB extends WorkQueues {
 					}
 					if (txn != null) {
 						txn.commit();
+						onCommit();
 					}
 				}
 			} catch (Exception e) {
@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the (estimated) number of bytes held in memory by the
+ * in-memory frontier components. Once the budget is used up, these components
+ * spill new entries to disk.
+ */
+public class MemoryBudget
+{
+
+    protected final long maxBytes;
+
+    protected final AtomicLong usedBytes = new AtomicLong();
+
+    public MemoryBudget(long maxBytes) {
+	this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Reserves the given number of bytes if they fit in the budget.
+     * 
+     * @return true if the bytes were reserved, false if the caller should
+     *         spill to disk instead.
+     */
+    public boolean tryReserve(long bytes) {
+	while (true) {
+	    long used = usedBytes.get();
+	    if (used + bytes > maxBytes) {
+		return false;
+	    }
+	    if (usedBytes.compareAndSet(used, used + bytes)) {
+		return true;
+	    }
+	}
+    }
+
+    /**
+     * Reserves the given number of bytes even if they exceed the budget.
+     */
+    public void reserve(long bytes) {
+	usedBytes.addAndGet(bytes);
+    }
+
+    public void release(long bytes) {
+	usedBytes.addAndGet(-bytes);
+    }
+
+    public long getUsedBytes() {
+	return usedBytes.get();
+    }
+
+    public long getMaxBytes() {
+	return maxBytes;
+    }
+}
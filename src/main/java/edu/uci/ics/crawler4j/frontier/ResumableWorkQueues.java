@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * The queue of pending URLs of a resumable crawl. URLs that are taken from it
+ * are moved to an {@link InProcessPagesDB} within the same transaction. When a
+ * crawl is resumed, the URLs that were in process are moved back to the queue.
+ */
+public class ResumableWorkQueues extends WorkQueues
+{
+
+    private static final Logger logger = Logger.getLogger(ResumableWorkQueues.class.getName());
+
+    protected InProcessPagesDB inProcessPages;
+
+    public ResumableWorkQueues(Environment env, String dbName) throws DatabaseException {
+	super(env, dbName, true);
+	inProcessPages = new InProcessPagesDB(env);
+	long numPreviouslyInProcessPages = inProcessPages.getLength();
+	if (numPreviouslyInProcessPages > 0) {
+	    logger.info("Rescheduling " + numPreviouslyInProcessPages + " URLs from previous crawl.");
+	    while (!inProcessPages.take(100, this).isEmpty()) {
+		// Keep moving
+	    }
+	}
+    }
+
+    @Override
+    public void setGroupCommitter(GroupCommitter groupCommitter) {
+	super.setGroupCommitter(groupCommitter);
+	inProcessPages.setGroupCommitter(groupCommitter);
+    }
+
+    @Override
+    public List<WebURL> take(int max) throws DatabaseException {
+	return take(max, inProcessPages);
+    }
+
+    @Override
+    public boolean setProcessed(WebURL url) {
+	return inProcessPages.removeURL(url);
+    }
+
+    @Override
+    public long getInProcessLength() {
+	return inProcessPages.getLength();
+    }
+
+    @Override
+    public void close() {
+	super.close();
+	inProcessPages.close();
+    }
+}
@@ -0,0 +1,545 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.sleepycat.je.Cursor;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseConfig;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.OperationStatus;
+import com.sleepycat.je.Transaction;
+
+import edu.uci.ics.crawler4j.crawler.Configurable;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.url.URLFingerprint;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.ByteArrayUtils;
+import edu.uci.ics.crawler4j.util.ConcurrentBloomFilter;
+
+/**
+ * A Berkeley DB docid store keyed by the 64-bit fingerprint of each URL
+ * instead of its full bytes. Lookups and assignments only lock one of
+ * {@link #STRIPES} stripes, picked by the fingerprint, so crawler threads
+ * working on different URLs do not contend with each other.
+ * 
+ * Two different URLs with the same fingerprint are treated as the same URL.
+ * With 64-bit fingerprints this is expected to happen less than once in a
+ * crawl of a hundred million URLs.
+ * 
+ * If an expected URL count is configured, a {@link ConcurrentBloomFilter} of
+ * all stored fingerprints is kept in memory. Lookups of URLs that the filter
+ * has definitely not seen are answered without touching the database.
+ */
+public class StripedDocIDServer extends Configurable
+    implements
+    DocIDStore
+{
+
+    protected static final Logger logger = Logger.getLogger(StripedDocIDServer.class.getName());
+
+    /**
+     * Number of lock stripes, has to be a power of two.
+     */
+    protected static final int STRIPES = 256;
+
+    /**
+     * Name of the URL keyed database of {@link DocIDServer}, which resumable
+     * crawls of earlier versions left behind.
+     */
+    protected static final String LEGACY_DATABASE_NAME = "DocIDs";
+
+    /**
+     * Number of legacy entries that are migrated in one transaction.
+     */
+    protected static final int MIGRATION_BATCH_SIZE = 10000;
+
+    protected static final Comparator<BatchEntry> BATCH_ORDER = new Comparator<BatchEntry>() {
+
+	@Override
+	public int compare(BatchEntry a, BatchEntry b) {
+	    if (a.stripe != b.stripe) {
+		return Integer.compare(a.stripe, b.stripe);
+	    }
+	    return Long.compare(a.fingerprint, b.fingerprint);
+	}
+    };
+
+    protected final Object[] locks = new Object[STRIPES];
+
+    protected final AtomicInteger lastDocID = new AtomicInteger();
+
+    protected final Environment env;
+
+    protected Database docIDsDB = null;
+
+    protected GroupCommitter groupCommitter = null;
+
+    protected ConcurrentBloomFilter bloomFilter = null;
+
+    protected final AtomicLong bloomFilterLookups = new AtomicLong();
+
+    protected final AtomicLong bloomFilterNegatives = new AtomicLong();
+
+    protected final AtomicLong bloomFilterFalsePositives = new AtomicLong();
+
+    public StripedDocIDServer(Environment env, CrawlConfig config) throws DatabaseException {
+	super(config);
+	this.env = env;
+	for (int i = 0; i < STRIPES; i++) {
+	    locks[i] = new Object();
+	}
+	DatabaseConfig dbConfig = new DatabaseConfig();
+	dbConfig.setAllowCreate(true);
+	dbConfig.setTransactional(config.isResumableCrawling());
+	dbConfig.setDeferredWrite(!config.isResumableCrawling());
+	docIDsDB = env.openDatabase(null, "FingerprintDocIDs", dbConfig);
+	int lastMigratedDocID = 0;
+	if (config.isResumableCrawling() && env.getDatabaseNames().contains(LEGACY_DATABASE_NAME)) {
+	    lastMigratedDocID = migrateLegacyDocIDs();
+	}
+	if (config.getExpectedUrlCount() > 0) {
+	    bloomFilter = new ConcurrentBloomFilter(config.getExpectedUrlCount(), config.getBloomFilterFalsePositiveRate());
+	    logger.info("Using a Bloom filter of " + bloomFilter.getMemoryBytes() + " bytes for the URL-seen test.");
+	}
+	if (config.isResumableCrawling()) {
+	    // Docids are not dense, ids of aborted transactions are skipped, so
+	    // the count of stored URLs is not the last docid
+	    lastDocID.set(Math.max(loadStoredDocIDs(), lastMigratedDocID));
+	}
+    }
+
+    /**
+     * If set, the commits of this store are reported to the given committer,
+     * see {@link GroupCommitter}.
+     */
+    public void setGroupCommitter(GroupCommitter groupCommitter) {
+	this.groupCommitter = groupCommitter;
+    }
+
+    @Override
+    public int getDocId(String url) {
+	return getDocId(null, URLFingerprint.getFingerprint(url));
+    }
+
+    @Override
+    public int getNewDocID(String url) {
+	long fingerprint = URLFingerprint.getFingerprint(url);
+	synchronized (getLock(fingerprint)) {
+	    try {
+		// Make sure that we have not already assigned a docid for this
+		// URL
+		int docid = getDocId(null, fingerprint);
+		if (docid > 0) {
+		    return docid;
+		}
+
+		docid = lastDocID.incrementAndGet();
+		store(null, fingerprint, docid);
+		return docid;
+	    } catch (Exception e) {
+		e.printStackTrace();
+	    }
+	    return -1;
+	}
+    }
+
+    @Override
+    public boolean getOrAssign(WebURL webURL) {
+	long fingerprint = URLFingerprint.getFingerprint(webURL.getURL());
+	synchronized (getLock(fingerprint)) {
+	    int docid = getDocId(null, fingerprint);
+	    if (docid > 0) {
+		webURL.setDocid(docid);
+		return false;
+	    }
+	    try {
+		docid = lastDocID.incrementAndGet();
+		store(null, fingerprint, docid);
+		webURL.setDocid(docid);
+		return true;
+	    } catch (Exception e) {
+		e.printStackTrace();
+	    }
+	    webURL.setDocid(-1);
+	    return false;
+	}
+    }
+
+    @Override
+    public void lookupAll(List<WebURL> webURLs) {
+	for (WebURL webURL : webURLs) {
+	    webURL.setDocid(getDocId(webURL.getURL()));
+	}
+    }
+
+    /**
+     * The URLs are handled in the order of their stripes, so that concurrent
+     * batches can not deadlock on each other's uncommitted records.
+     */
+    @Override
+    public List<WebURL> getOrAssignAll(List<WebURL> webURLs) {
+	BatchEntry[] entries = new BatchEntry[webURLs.size()];
+	for (int i = 0; i < entries.length; i++) {
+	    entries[i] = new BatchEntry(i, webURLs.get(i));
+	}
+	Arrays.sort(entries, BATCH_ORDER);
+
+	boolean[] isNew = new boolean[entries.length];
+	Transaction txn = null;
+	try {
+	    if (config.isResumableCrawling()) {
+		txn = env.beginTransaction(null, null);
+	    }
+	    BatchEntry previous = null;
+	    for (BatchEntry entry : entries) {
+		if (previous != null && previous.fingerprint == entry.fingerprint) {
+		    // The same URL twice in one batch
+		    entry.webURL.setDocid(previous.webURL.getDocid());
+		    continue;
+		}
+		synchronized (locks[entry.stripe]) {
+		    int docid = getDocId(txn, entry.fingerprint);
+		    if (docid <= 0) {
+			docid = lastDocID.incrementAndGet();
+			store(txn, entry.fingerprint, docid);
+			isNew[entry.index] = true;
+		    }
+		    entry.webURL.setDocid(docid);
+		}
+		previous = entry;
+	    }
+	    if (txn != null) {
+		txn.commit();
+		onCommit();
+	    }
+	} catch (DatabaseException e) {
+	    e.printStackTrace();
+	    if (txn != null) {
+		txn.abort();
+	    }
+	    for (WebURL webURL : webURLs) {
+		webURL.setDocid(-1);
+	    }
+	    return new ArrayList<>();
+	}
+
+	List<WebURL> assigned = new ArrayList<>();
+	for (int i = 0; i < isNew.length; i++) {
+	    if (isNew[i]) {
+		assigned.add(webURLs.get(i));
+	    }
+	}
+	return assigned;
+    }
+
+    @Override
+    public void addUrlAndDocId(String url, int docId) throws Exception {
+	long fingerprint = URLFingerprint.getFingerprint(url);
+	synchronized (getLock(fingerprint)) {
+	    // Make sure that we have not already assigned a docid for this URL
+	    int prevDocid = getDocId(null, fingerprint);
+	    if (prevDocid > 0) {
+		if (prevDocid == docId) {
+		    return;
+		}
+		throw new Exception("Doc id: " + prevDocid + " is already assigned to URL: " + url);
+	    }
+
+	    while (true) {
+		int last = lastDocID.get();
+		if (docId <= last) {
+		    throw new Exception("Requested doc id: " + docId + " is not larger than: " + last);
+		}
+		if (lastDocID.compareAndSet(last, docId)) {
+		    break;
+		}
+	    }
+	    store(null, fingerprint, docId);
+	}
+    }
+
+    @Override
+    public boolean isSeenBefore(String url) {
+	return getDocId(url) != -1;
+    }
+
+    @Override
+    public int getDocCount() {
+	try {
+	    return (int) docIDsDB.count();
+	} catch (DatabaseException e) {
+	    e.printStackTrace();
+	}
+	return -1;
+    }
+
+    @Override
+    public void sync() {
+	if (config.isResumableCrawling()) {
+	    return;
+	}
+	try {
+	    docIDsDB.sync();
+	} catch (DatabaseException e) {
+	    e.printStackTrace();
+	}
+    }
+
+    /**
+     * Returns the number of lookups that were checked against the Bloom
+     * filter.
+     */
+    public long getBloomFilterLookups() {
+	return bloomFilterLookups.get();
+    }
+
+    /**
+     * Returns the number of lookups that the Bloom filter answered on its own
+     * because the URL was definitely new.
+     */
+    public long getBloomFilterNegatives() {
+	return bloomFilterNegatives.get();
+    }
+
+    /**
+     * Returns the number of lookups for which the Bloom filter reported a
+     * possibly seen URL that turned out not to be in the database.
+     */
+    public long getBloomFilterFalsePositives() {
+	return bloomFilterFalsePositives.get();
+    }
+
+    /**
+     * Returns the observed false positive rate of the Bloom filter, that is
+     * the share of lookups of unseen URLs that still went to the database.
+     */
+    public double getBloomFilterFalsePositiveRate() {
+	long falsePositives = bloomFilterFalsePositives.get();
+	long unseen = bloomFilterNegatives.get() + falsePositives;
+	return unseen == 0 ? 0 : (double) falsePositives / unseen;
+    }
+
+    /**
+     * Returns the number of bytes used by the Bloom filter, or 0 if it is not
+     * enabled.
+     */
+    public long getBloomFilterMemoryBytes() {
+	return bloomFilter == null ? 0 : bloomFilter.getMemoryBytes();
+    }
+
+    @Override
+    public void close() {
+	if (bloomFilter != null) {
+	    logger.info("URL-seen Bloom filter: " + getBloomFilterLookups() + " lookups, " + getBloomFilterNegatives()
+		    + " answered from memory, " + getBloomFilterFalsePositives() + " false positives (observed rate: "
+		    + getBloomFilterFalsePositiveRate() + ", expected rate: " + bloomFilter.getExpectedFalsePositiveRate()
+		    + "), " + getBloomFilterMemoryBytes() + " bytes");
+	}
+	try {
+	    docIDsDB.close();
+	} catch (DatabaseException e) {
+	    e.printStackTrace();
+	}
+    }
+
+    protected Object getLock(long fingerprint) {
+	return locks[getStripe(fingerprint)];
+    }
+
+    protected void onCommit() {
+	if (groupCommitter != null) {
+	    groupCommitter.onCommit();
+	}
+    }
+
+    protected static int getStripe(long fingerprint) {
+	return (int) (fingerprint ^ (fingerprint >>> 32)) & (STRIPES - 1);
+    }
+
+    protected int getDocId(Transaction txn, long fingerprint) {
+	if (bloomFilter != null) {
+	    bloomFilterLookups.incrementAndGet();
+	    if (!bloomFilter.mightContain(fingerprint)) {
+		bloomFilterNegatives.incrementAndGet();
+		return -1;
+	    }
+	}
+	try {
+	    DatabaseEntry value = new DatabaseEntry();
+	    OperationStatus result = docIDsDB.get(txn, new DatabaseEntry(ByteArrayUtils.long2ByteArray(fingerprint)), value, null);
+	    if (result == OperationStatus.SUCCESS && value.getData().length > 0) {
+		return ByteArrayUtils.byteArray2Int(value.getData());
+	    }
+	} catch (Exception e) {
+	    e.printStackTrace();
+	}
+	if (bloomFilter != null) {
+	    bloomFilterFalsePositives.incrementAndGet();
+	}
+	return -1;
+    }
+
+    protected void store(Transaction txn, long fingerprint, int docId) throws DatabaseException {
+	if (bloomFilter != null) {
+	    // Added before the database write, so that a concurrent lookup can
+	    // at worst see a false positive, never a false negative.
+	    bloomFilter.put(fingerprint);
+	}
+	docIDsDB.put(txn, new DatabaseEntry(ByteArrayUtils.long2ByteArray(fingerprint)), new DatabaseEntry(ByteArrayUtils.int2ByteArray(docId)));
+	if (txn == null) {
+	    // Auto-committed
+	    onCommit();
+	}
+    }
+
+    /**
+     * Moves the docids of a resumable crawl that was started with
+     * {@link DocIDServer} into this store and removes its database, so the
+     * URLs it had seen are not crawled again. Entries are copied in batches
+     * of their own transactions and existing fingerprints are kept, so a
+     * migration that is interrupted simply starts over on the next run.
+     * 
+     * @return the largest migrated docid.
+     */
+    protected int migrateLegacyDocIDs() throws DatabaseException {
+	DatabaseConfig legacyConfig = new DatabaseConfig();
+	legacyConfig.setTransactional(true);
+	Database legacyDB = env.openDatabase(null, LEGACY_DATABASE_NAME, legacyConfig);
+	logger.info("Migrating " + legacyDB.count() + " docids of a previous crawl to fingerprint keys.");
+	int migrated = 0;
+	int lastMigratedDocID = 0;
+	try {
+	    // Key of the last migrated entry, the next batch starts after it
+	    byte[] lastKey = null;
+	    boolean done = false;
+	    while (!done) {
+		DatabaseEntry key = new DatabaseEntry();
+		DatabaseEntry value = new DatabaseEntry();
+		Transaction txn = env.beginTransaction(null, null);
+		Cursor cursor = null;
+		try {
+		    cursor = legacyDB.openCursor(txn, null);
+		    OperationStatus result;
+		    if (lastKey == null) {
+			result = cursor.getFirst(key, value, null);
+		    } else {
+			key.setData(lastKey);
+			result = cursor.getSearchKeyRange(key, value, null);
+			if (result == OperationStatus.SUCCESS && Arrays.equals(key.getData(), lastKey)) {
+			    result = cursor.getNext(key, value, null);
+			}
+		    }
+		    int count = 0;
+		    while (count < MIGRATION_BATCH_SIZE && result == OperationStatus.SUCCESS) {
+			if (value.getData().length > 0) {
+			    int docId = ByteArrayUtils.byteArray2Int(value.getData());
+			    long fingerprint = URLFingerprint.getFingerprint(new String(key.getData()));
+			    docIDsDB.putNoOverwrite(txn, new DatabaseEntry(ByteArrayUtils.long2ByteArray(fingerprint)),
+				    new DatabaseEntry(ByteArrayUtils.int2ByteArray(docId)));
+			    lastMigratedDocID = Math.max(lastMigratedDocID, docId);
+			}
+			lastKey = Arrays.copyOf(key.getData(), key.getSize());
+			count++;
+			migrated++;
+			if (count < MIGRATION_BATCH_SIZE) {
+			    result = cursor.getNext(key, value, null);
+			}
+		    }
+		    done = result != OperationStatus.SUCCESS;
+		    cursor.close();
+		    cursor = null;
+		    txn.commit();
+		    txn = null;
+		} finally {
+		    if (cursor != null) {
+			cursor.close();
+		    }
+		    if (txn != null) {
+			txn.abort();
+		    }
+		}
+	    }
+	} finally {
+	    legacyDB.close();
+	}
+	env.removeDatabase(null, LEGACY_DATABASE_NAME);
+	logger.info("Migrated " + migrated + " docids of a previous crawl.");
+	return lastMigratedDocID;
+    }
+
+    /**
+     * Scans the docids stored by a previous run of a resumable crawl, and adds
+     * their fingerprints to the Bloom filter if there is one.
+     * 
+     * @return the largest stored docid, 0 if there is none.
+     */
+    protected int loadStoredDocIDs() throws DatabaseException {
+	int count = 0;
+	int maxDocID = 0;
+	Cursor cursor = docIDsDB.openCursor(null, null);
+	try {
+	    DatabaseEntry key = new DatabaseEntry();
+	    DatabaseEntry value = new DatabaseEntry();
+	    while (cursor.getNext(key, value, null) == OperationStatus.SUCCESS) {
+		if (value.getData().length > 0) {
+		    maxDocID = Math.max(maxDocID, ByteArrayUtils.byteArray2Int(value.getData()));
+		}
+		if (bloomFilter != null) {
+		    bloomFilter.put(ByteArrayUtils.byteArray2Long(key.getData()));
+		}
+		count++;
+	    }
+	} finally {
+	    cursor.close();
+	}
+	if (count > 0) {
+	    logger.info("Loaded " + count + " URLs that had been detected in previous crawl, the last docid was "
+		    + maxDocID + ".");
+	}
+	if (bloomFilter != null) {
+	    logger.info("Rebuilt the Bloom filter from " + bloomFilter.getInsertions() + " previously seen URLs.");
+	}
+	return maxDocID;
+    }
+
+    protected static class BatchEntry
+    {
+	final int index;
+	final WebURL webURL;
+	final long fingerprint;
+	final int stripe;
+
+	BatchEntry(int index, WebURL webURL) {
+	    this.index = index;
+	    this.webURL = webURL;
+	    this.fingerprint = URLFingerprint.getFingerprint(webURL.getURL());
+	    this.stripe = getStripe(fingerprint);
+	}
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import java.util.List;
+
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * The queue of URLs that are scheduled but not yet handed out to crawlers.
+ * URLs that are taken from the queue are considered in process until
+ * {@link #setProcessed(WebURL)} is called for them. Resumable implementations
+ * keep track of these and reschedule them when the crawl is resumed.
+ */
+public interface URLQueue
+{
+
+    void put(WebURL url);
+
+    /**
+     * Adds all given URLs to the queue, in a single transaction if the queue
+     * is transactional.
+     */
+    void putAll(List<WebURL> urls);
+
+    /**
+     * Removes up to max URLs from the head of the queue and returns them.
+     */
+    List<WebURL> take(int max);
+
+    /**
+     * Marks a URL that was returned by {@link #take(int)} as processed.
+     * 
+     * @return false if the URL was not known to be in process.
+     */
+    boolean setProcessed(WebURL url);
+
+    /**
+     * Returns the number of URLs in the queue.
+     */
+    long getLength();
+
+    /**
+     * Returns the number of URLs that were taken but not yet processed, as far
+     * as this queue keeps track of them.
+     */
+    long getInProcessLength();
+
+    void sync();
+
+    void close();
+}
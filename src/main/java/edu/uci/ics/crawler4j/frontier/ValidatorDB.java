@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import java.io.File;
+
+import org.apache.log4j.Logger;
+
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseConfig;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import com.sleepycat.je.OperationStatus;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.url.URLFingerprint;
+import edu.uci.ics.crawler4j.util.ByteArrayUtils;
+
+/**
+ * Keeps the validators of fetched pages in a Berkeley DB database, keyed by
+ * the fingerprint of their URL. The database has an environment of its own in
+ * the 'validators' folder of the crawl storage folder, next to the frontier.
+ * Unlike the frontier it is not cleared when a crawl that is not resumable
+ * starts, since the next crawl is when the validators are needed.
+ */
+public class ValidatorDB
+    implements
+    ValidatorStore
+{
+
+    protected static final Logger logger = Logger.getLogger(ValidatorDB.class.getName());
+
+    protected final Environment env;
+
+    protected final Database validatorsDB;
+
+    public ValidatorDB(CrawlConfig config) throws Exception {
+	File envHome = new File(config.getCrawlStorageFolder() + "/validators");
+	if (!envHome.exists()) {
+	    if (!envHome.mkdir()) {
+		throw new Exception("Couldn't create this folder: " + envHome.getAbsolutePath());
+	    }
+	}
+	EnvironmentConfig envConfig = new EnvironmentConfig();
+	envConfig.setAllowCreate(true);
+	env = new Environment(envHome, envConfig);
+
+	DatabaseConfig dbConfig = new DatabaseConfig();
+	dbConfig.setAllowCreate(true);
+	dbConfig.setDeferredWrite(true);
+	validatorsDB = env.openDatabase(null, "ValidatorsDB", dbConfig);
+    }
+
+    protected static DatabaseEntry getKey(String url) {
+	return new DatabaseEntry(ByteArrayUtils.long2ByteArray(URLFingerprint.getFingerprint(url)));
+    }
+
+    @Override
+    public Validators get(String url) {
+	try {
+	    DatabaseEntry value = new DatabaseEntry();
+	    if (validatorsDB.get(null, getKey(url), value, null) != OperationStatus.SUCCESS) {
+		return null;
+	    }
+	    TupleInput input = new TupleInput(value.getData());
+	    return new Validators(input.readString(), input.readString());
+	} catch (DatabaseException e) {
+	    logger.error("Error while reading the validators of " + url + ": " + e.getMessage());
+	    return null;
+	}
+    }
+
+    @Override
+    public void put(String url, Validators validators) {
+	TupleOutput output = new TupleOutput();
+	output.writeString(validators.getETag());
+	output.writeString(validators.getLastModified());
+	try {
+	    validatorsDB.put(null, getKey(url), new DatabaseEntry(output.getBufferBytes(), 0, output.getBufferLength()));
+	} catch (DatabaseException e) {
+	    logger.error("Error while storing the validators of " + url + ": " + e.getMessage());
+	}
+    }
+
+    @Override
+    public void remove(String url) {
+	try {
+	    validatorsDB.delete(null, getKey(url));
+	} catch (DatabaseException e) {
+	    logger.error("Error while removing the validators of " + url + ": " + e.getMessage());
+	}
+    }
+
+    @Override
+    public void sync() {
+	try {
+	    validatorsDB.sync();
+	} catch (DatabaseException e) {
+	    logger.error("Error while syncing the validators: " + e.getMessage());
+	}
+    }
+
+    @Override
+    public void close() {
+	sync();
+	validatorsDB.close();
+	env.close();
+    }
+}
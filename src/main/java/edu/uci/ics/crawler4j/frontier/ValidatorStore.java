@@ -0,0 +1,42 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+/**
+ * Keeps the {@link Validators} of fetched pages from one crawl to the next,
+ * so pages that did not change are not downloaded again. Implementations
+ * must be thread-safe.
+ * 
+ * @see ValidatorDB
+ */
+public interface ValidatorStore
+{
+
+    /**
+     * Returns the validators recorded for the URL, or null if there are none.
+     */
+    Validators get(String url);
+
+    void put(String url, Validators validators);
+
+    void remove(String url);
+
+    void sync();
+
+    void close();
+}
@@ -0,0 +1,77 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.frontier;
+
+import org.apache.http.Header;
+
+/**
+ * The validators of a fetched page, that is its ETag and Last-Modified
+ * response headers. They are sent back with the next request for the page as
+ * If-None-Match and If-Modified-Since, so the server can answer with 304 Not
+ * Modified instead of the full content.
+ */
+public class Validators
+{
+
+    private final String etag;
+
+    private final String lastModified;
+
+    public Validators(String etag, String lastModified) {
+	this.etag = etag;
+	this.lastModified = lastModified;
+    }
+
+    /**
+     * Returns the validators found in the given response headers, or null if
+     * there are none.
+     */
+    public static Validators fromHeaders(Header[] headers) {
+	if (headers == null) {
+	    return null;
+	}
+	String etag = null;
+	String lastModified = null;
+	for (Header header : headers) {
+	    if ("ETag".equalsIgnoreCase(header.getName())) {
+		etag = header.getValue();
+	    } else if ("Last-Modified".equalsIgnoreCase(header.getName())) {
+		lastModified = header.getValue();
+	    }
+	}
+	if (etag == null && lastModified == null) {
+	    return null;
+	}
+	return new Validators(etag, lastModified);
+    }
+
+    /**
+     * Returns the ETag of the page, or null if the server did not send one.
+     */
+    public String getETag() {
+	return etag;
+    }
+
+    /**
+     * Returns the Last-Modified date of the page, or null if the server did
+     * not send one.
+     */
+    public String getLastModified() {
+	return lastModified;
+    }
+}
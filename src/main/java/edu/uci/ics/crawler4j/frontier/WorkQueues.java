@@ -36,6 +36,8 @@ import edu.uci.ics.crawler4j.util.ByteArrayUtils;
  * @author Yasser Ganjisaffar <lastname at gmail dot com>
  */
 public class WorkQueues
+    implements
+    URLQueue
 {
 
     protected Database urlsDB = null;
@@ -47,6 +49,8 @@ public class WorkQueues
 
     protected final Object mutex = new Object();
 
+    protected GroupCommitter groupCommitter = null;
+
     public WorkQueues(Environment env, String dbName, boolean resumable) throws DatabaseException {
 	this.env = env;
 	this.resumable = resumable;
@@ -58,6 +62,24 @@ public class WorkQueues
 	webURLBinding = new WebURLTupleBinding();
     }
 
+    /**
+     * Constructor for subclasses that keep the URLs somewhere else than in a
+     * Berkeley DB database of their own.
+     */
+    protected WorkQueues(Environment env, boolean resumable) {
+	this.env = env;
+	this.resumable = resumable;
+	webURLBinding = new WebURLTupleBinding();
+    }
+
+    /**
+     * If set, the commits of this queue are reported to the given committer,
+     * see {@link GroupCommitter}.
+     */
+    public void setGroupCommitter(GroupCommitter groupCommitter) {
+	this.groupCommitter = groupCommitter;
+    }
+
     public List<WebURL> get(int max) throws DatabaseException {
 	synchronized (mutex) {
 	    int matches = 0;
@@ -137,8 +159,71 @@ public class WorkQueues
 		}
 		if (txn != null) {
 		    txn.commit();
+		    onCommit();
+		}
+	    }
+	}
+    }
+
+    @Override
+    public List<WebURL> take(int max) throws DatabaseException {
+	return take(max, null);
+    }
+
+    /**
+     * Removes up to max URLs from the head of this queue and returns them,
+     * reading and deleting the entries in a single cursor pass. If
+     * inProcessPages is not null, the entries are also moved into it within
+     * the same transaction, so a crash can never lose or duplicate them.
+     */
+    public List<WebURL> take(int max, WorkQueues inProcessPages) throws DatabaseException {
+	synchronized (mutex) {
+	    List<WebURL> results = new ArrayList<>(max);
+
+	    Cursor cursor = null;
+	    OperationStatus result;
+	    DatabaseEntry key = new DatabaseEntry();
+	    DatabaseEntry value = new DatabaseEntry();
+	    Transaction txn;
+	    if (resumable) {
+		txn = env.beginTransaction(null, null);
+	    } else {
+		txn = null;
+	    }
+	    try {
+		cursor = urlsDB.openCursor(txn, null);
+		result = cursor.getFirst(key, value, null);
+
+		while (results.size() < max && result == OperationStatus.SUCCESS) {
+		    if (value.getData().length > 0) {
+			results.add(webURLBinding.entryToObject(value));
+			if (inProcessPages != null) {
+			    inProcessPages.urlsDB.put(txn, key, value);
+			}
+		    }
+		    cursor.delete();
+		    result = cursor.getNext(key, value, null);
+		}
+	    } catch (DatabaseException e) {
+		if (cursor != null) {
+		    cursor.close();
+		    cursor = null;
+		}
+		if (txn != null) {
+		    txn.abort();
+		    txn = null;
+		}
+		throw e;
+	    } finally {
+		if (cursor != null) {
+		    cursor.close();
+		}
+		if (txn != null) {
+		    txn.commit();
+		    onCommit();
 		}
 	    }
+	    return results;
 	}
     }
 
@@ -161,6 +246,7 @@ public class WorkQueues
 	return new DatabaseEntry(keyData);
     }
 
+    @Override
     public void put(WebURL url) throws DatabaseException {
 	DatabaseEntry value = new DatabaseEntry();
 	webURLBinding.objectToEntry(url, value);
@@ -174,10 +260,55 @@ public class WorkQueues
 	if (resumable) {
 	    if (txn != null) {
 		txn.commit();
+		onCommit();
 	    }
 	}
     }
 
+    @Override
+    public void putAll(List<WebURL> urls) throws DatabaseException {
+	if (urls.isEmpty()) {
+	    return;
+	}
+	Transaction txn;
+	if (resumable) {
+	    txn = env.beginTransaction(null, null);
+	} else {
+	    txn = null;
+	}
+	try {
+	    for (WebURL url : urls) {
+		DatabaseEntry value = new DatabaseEntry();
+		webURLBinding.objectToEntry(url, value);
+		urlsDB.put(txn, getDatabaseEntryKey(url), value);
+	    }
+	} catch (DatabaseException e) {
+	    if (txn != null) {
+		txn.abort();
+	    }
+	    throw e;
+	}
+	if (txn != null) {
+	    txn.commit();
+	    onCommit();
+	}
+    }
+
+    /**
+     * URLs taken from this queue are not tracked, see
+     * {@link ResumableWorkQueues} for a queue that does.
+     */
+    @Override
+    public boolean setProcessed(WebURL url) {
+	return true;
+    }
+
+    @Override
+    public long getInProcessLength() {
+	return 0;
+    }
+
+    @Override
     public long getLength() {
 	try {
 	    return urlsDB.count();
@@ -187,6 +318,7 @@ public class WorkQueues
 	return -1;
     }
 
+    @Override
     public void sync() {
 	if (resumable) {
 	    return;
@@ -201,6 +333,7 @@ public class WorkQueues
 	}
     }
 
+    @Override
     public void close() {
 	try {
 	    urlsDB.close();
@@ -208,4 +341,10 @@ public class WorkQueues
 	    e.printStackTrace();
 	}
     }
+
+    protected void onCommit() {
+	if (groupCommitter != null) {
+	    groupCommitter.onCommit();
+	}
+    }
 }
@@ -0,0 +1,37 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.url;
+
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Computes 64-bit fingerprints of (canonical) URLs. Fingerprints are used
+ * instead of the full URL bytes wherever URLs only need to be told apart, for
+ * example as the key of the URL-seen store.
+ */
+public class URLFingerprint {
+
+	private static final HashFunction hashFunction = Hashing.murmur3_128();
+
+	public static long getFingerprint(String url) {
+		return hashFunction.hashString(url, StandardCharsets.UTF_8).asLong();
+	}
+}
@@ -38,6 +38,7 @@ public class WebURL implements Serializable {
 	private int parentDocid;
 	private String parentUrl;
 	private short depth;
+	private String host;
 	private String domain;
 	private String subDomain;
 	private String path;
@@ -91,7 +92,8 @@ public class WebURL implements Serializable {
 
 		int domainStartIdx = url.indexOf("//") + 2;
 		int domainEndIdx = url.indexOf('/', domainStartIdx);
-		domain = url.substring(domainStartIdx, domainEndIdx);
+		host = url.substring(domainStartIdx, domainEndIdx);
+		domain = host;
 		subDomain = "";
 		String[] parts = domain.split("\\.");
 		if (parts.length > 2) {
@@ -152,6 +154,15 @@ public class WebURL implements Serializable {
 		this.depth = depth;
 	}
 
+	/**
+	 * Returns the host of this Url, including the port if one is given. For
+	 * 'http://www.example.com:8080/sample.htm', host will be
+	 * 'www.example.com:8080'
+	 */
+	public String getHost() {
+		return host;
+	}
+
 	/**
 	 * Returns the domain of this Url. For 'http://www.example.com/sample.htm',
 	 * domain will be 'example.com'
@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of fixed size byte buffers that can be shared by many threads.
+ * Streams are read into a list of buffers taken from the pool, so reading a
+ * page does not allocate and copy a growing array, and the buffers are used
+ * again for the next page. At most maxPooled buffers are kept, any others are
+ * left to the garbage collector.
+ */
+public class BufferPool
+{
+    private final int bufferSize;
+
+    private final int maxPooled;
+
+    private final Queue<byte[]> pool = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    private final AtomicLong allocated = new AtomicLong();
+
+    public BufferPool(int bufferSize, int maxPooled) {
+	if (bufferSize <= 0) {
+	    throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+	}
+	this.bufferSize = bufferSize;
+	this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Takes a buffer from the pool, or allocates one if the pool is empty.
+     */
+    public byte[] acquire() {
+	byte[] buffer = pool.poll();
+	if (buffer != null) {
+	    pooled.decrementAndGet();
+	    return buffer;
+	}
+	allocated.incrementAndGet();
+	return new byte[bufferSize];
+    }
+
+    /**
+     * Gives a buffer taken with {@link #acquire()} back to the pool.
+     */
+    public void release(byte[] buffer) {
+	if (buffer.length != bufferSize) {
+	    return;
+	}
+	if (pooled.incrementAndGet() <= maxPooled) {
+	    pool.offer(buffer);
+	} else {
+	    pooled.decrementAndGet();
+	}
+    }
+
+    /**
+     * Reads the stream to its end and returns its content, unless it is
+     * longer than maxBytes. In that case reading stops as soon as the limit
+     * is passed and null is returned. The stream is not closed.
+     */
+    public byte[] read(InputStream in, int maxBytes) throws IOException {
+	List<byte[]> buffers = new ArrayList<>();
+	try {
+	    byte[] buffer = acquire();
+	    buffers.add(buffer);
+	    int position = 0;
+	    long total = 0;
+	    while (true) {
+		if (position == buffer.length) {
+		    buffer = acquire();
+		    buffers.add(buffer);
+		    position = 0;
+		}
+		int read = in.read(buffer, position, buffer.length - position);
+		if (read < 0) {
+		    break;
+		}
+		position += read;
+		total += read;
+		if (total > maxBytes) {
+		    return null;
+		}
+	    }
+
+	    byte[] content = new byte[(int) total];
+	    int offset = 0;
+	    for (byte[] b : buffers) {
+		int length = (int) Math.min(b.length, total - offset);
+		System.arraycopy(b, 0, content, offset, length);
+		offset += length;
+	    }
+	    return content;
+	} finally {
+	    for (byte[] b : buffers) {
+		release(b);
+	    }
+	}
+    }
+
+    public int getBufferSize() {
+	return bufferSize;
+    }
+
+    /**
+     * Returns the number of buffers that are waiting in the pool.
+     */
+    public int getPooledCount() {
+	return Math.min(pooled.get(), maxPooled);
+    }
+
+    /**
+     * Returns the number of buffers that had to be allocated because the pool
+     * was empty.
+     */
+    public long getAllocatedCount() {
+	return allocated.get();
+    }
+}
@@ -56,10 +56,10 @@ public class ByteArrayUtils
     }
 
     public static long byteArray2Long(final byte[] b) {
-	int value = 0;
+	long value = 0;
 	for ( int i = 0; i < 8; i++ ) {
 	    final int shift = ( 8 - 1 - i ) * 8;
-	    value += ( b[i] & 0x000000FF ) << shift;
+	    value += (long) ( b[i] & 0x000000FF ) << shift;
 	}
 	return value;
     }
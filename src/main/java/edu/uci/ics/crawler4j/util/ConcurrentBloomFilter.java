@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter over 64-bit fingerprints that can be read and written by
+ * many threads without locking. The k bit positions of a fingerprint are
+ * derived from its two 32-bit halves (double hashing), so the fingerprint
+ * itself should already be a well distributed hash.
+ */
+public class ConcurrentBloomFilter
+{
+    private final AtomicLongArray bits;
+
+    private final long bitSize;
+
+    private final int numHashFunctions;
+
+    private final AtomicLong insertions = new AtomicLong();
+
+    /**
+     * Creates a filter with the optimal number of bits and hash functions for
+     * holding expectedInsertions fingerprints at the given false positive
+     * rate.
+     */
+    public ConcurrentBloomFilter(long expectedInsertions, double falsePositiveRate) {
+	long n = Math.max(1, expectedInsertions);
+	long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+	int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (m + 63) / 64));
+	bits = new AtomicLongArray(words);
+	bitSize = (long) words * 64;
+	numHashFunctions = Math.max(1, (int) Math.round((double) bitSize / n * Math.log(2)));
+    }
+
+    /**
+     * Adds the fingerprint to the filter.
+     */
+    public void put(long fingerprint) {
+	int hash1 = (int) fingerprint;
+	int hash2 = (int) (fingerprint >>> 32);
+	for (int i = 1; i <= numHashFunctions; i++) {
+	    long index = index(hash1, hash2, i);
+	    int word = (int) (index >>> 6);
+	    long mask = 1L << index;
+	    while (true) {
+		long current = bits.get(word);
+		if ((current & mask) != 0 || bits.compareAndSet(word, current, current | mask)) {
+		    break;
+		}
+	    }
+	}
+	insertions.incrementAndGet();
+    }
+
+    /**
+     * Returns false if the fingerprint has definitely not been added to the
+     * filter, and true if it might have been.
+     */
+    public boolean mightContain(long fingerprint) {
+	int hash1 = (int) fingerprint;
+	int hash2 = (int) (fingerprint >>> 32);
+	for (int i = 1; i <= numHashFunctions; i++) {
+	    long index = index(hash1, hash2, i);
+	    if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /**
+     * Returns the false positive rate expected from the number of
+     * fingerprints added so far.
+     */
+    public double getExpectedFalsePositiveRate() {
+	double fillRatio = 1 - Math.exp(-(double) numHashFunctions * insertions.get() / bitSize);
+	return Math.pow(fillRatio, numHashFunctions);
+    }
+
+    public long getInsertions() {
+	return insertions.get();
+    }
+
+    public long getBitSize() {
+	return bitSize;
+    }
+
+    public int getNumHashFunctions() {
+	return numHashFunctions;
+    }
+
+    /**
+     * Returns the number of bytes used by the bit array of this filter.
+     */
+    public long getMemoryBytes() {
+	return bitSize / 8;
+    }
+
+    private long index(int hash1, int hash2, int i) {
+	long combined = hash1 + (long) i * hash2;
+	return (combined & Long.MAX_VALUE) % bitSize;
+    }
+}
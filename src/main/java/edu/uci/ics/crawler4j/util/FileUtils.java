@@ -20,7 +20,6 @@ package edu.uci.ics.crawler4j.util;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
@@ -42,29 +41,30 @@ public class FileUtils
 
     private static final Logger logger = Logger.getLogger( FileUtils.class );
 
-    private static final FileVisitor<Path> deleteVisitor = new SimpleFileVisitor<Path>() {
-
-	@Override
-	public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
-	    Files.delete( file );
-	    return FileVisitResult.CONTINUE;
-	}
+    public static void deleteFolderContents(final File folder) throws IOException {
+	final String absolutePath = folder.getAbsolutePath();
+	logger.info( "Deleting content of: " + absolutePath );
+	final Path root = folder.toPath();
+	Files.walkFileTree( root, new SimpleFileVisitor<Path>() {
 
-	@Override
-	public FileVisitResult postVisitDirectory(final Path dir, final IOException e) throws IOException {
-	    if ( e == null ) {
-		Files.delete( dir );
+	    @Override
+	    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+		Files.delete( file );
 		return FileVisitResult.CONTINUE;
-	    } else {
-		throw e;
 	    }
-	}
-    };
 
-    public static void deleteFolderContents(final File folder) throws IOException {
-	final String absolutePath = folder.getAbsolutePath();
-	logger.info( "Deleting content of: " + absolutePath );
-	Files.walkFileTree( folder.toPath(), deleteVisitor );
+	    @Override
+	    public FileVisitResult postVisitDirectory(final Path dir, final IOException e) throws IOException {
+		if ( e != null ) {
+		    throw e;
+		}
+		// Keep the folder itself, only its content is deleted
+		if ( !dir.equals( root ) ) {
+		    Files.delete( dir );
+		}
+		return FileVisitResult.CONTINUE;
+	    }
+	} );
 	logger.info( "Deleted content of: " + absolutePath );
     }
 }
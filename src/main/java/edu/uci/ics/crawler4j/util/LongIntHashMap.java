@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to You under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package edu.uci.ics.crawler4j.util;
+
+/**
+ * An open addressing hash map from primitive longs to positive ints. It does
+ * not box keys or values, which makes it suitable for holding millions of
+ * URL fingerprints. Values have to be larger than zero.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class LongIntHashMap
+{
+    /**
+     * Approximate number of bytes used by each entry, including the free
+     * slots needed to keep the load factor.
+     */
+    public static final int BYTES_PER_ENTRY = 24;
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] keys;
+
+    private int[] values;
+
+    private int size;
+
+    private int resizeThreshold;
+
+    public LongIntHashMap() {
+	this( 1024 );
+    }
+
+    public LongIntHashMap(final int initialCapacity) {
+	int capacity = 16;
+	while ( capacity * LOAD_FACTOR < initialCapacity ) {
+	    capacity <<= 1;
+	}
+	allocate( capacity );
+    }
+
+    /**
+     * Returns the value mapped to the given key, or -1 if there is none.
+     */
+    public int get(final long key) {
+	final int mask = keys.length - 1;
+	int slot = hash( key ) & mask;
+	while ( values[slot] != 0 ) {
+	    if ( keys[slot] == key ) {
+		return values[slot];
+	    }
+	    slot = ( slot + 1 ) & mask;
+	}
+	return -1;
+    }
+
+    /**
+     * Maps the given key to the given value unless the key is already mapped.
+     * 
+     * @return the previous value of the key, or -1 if the value was stored.
+     */
+    public int putIfAbsent(final long key, final int value) {
+	if ( value <= 0 ) {
+	    throw new IllegalArgumentException( "Values have to be larger than zero: " + value );
+	}
+	final int mask = keys.length - 1;
+	int slot = hash( key ) & mask;
+	while ( values[slot] != 0 ) {
+	    if ( keys[slot] == key ) {
+		return values[slot];
+	    }
+	    slot = ( slot + 1 ) & mask;
+	}
+	keys[slot] = key;
+	values[slot] = value;
+	size++;
+	if ( size > resizeThreshold ) {
+	    resize();
+	}
+	return -1;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    private void resize() {
+	final long[] oldKeys = keys;
+	final int[] oldValues = values;
+	allocate( keys.length << 1 );
+	final int mask = keys.length - 1;
+	for ( int i = 0; i < oldKeys.length; i++ ) {
+	    if ( oldValues[i] != 0 ) {
+		int slot = hash( oldKeys[i] ) & mask;
+		while ( values[slot] != 0 ) {
+		    slot = ( slot + 1 ) & mask;
+		}
+		keys[slot] = oldKeys[i];
+		values[slot] = oldValues[i];
+	    }
+	}
+    }
+
+    private void allocate(final int capacity) {
+	keys = new long[capacity];
+	values = new int[capacity];
+	resizeThreshold = (int) ( capacity * LOAD_FACTOR );
+    }
+
+    private static int hash(final long key) {
+	final long h = key * 0x9E3779B97F4A7C15L;
+	return (int) ( h ^ ( h >>> 32 ) );
+    }
+}
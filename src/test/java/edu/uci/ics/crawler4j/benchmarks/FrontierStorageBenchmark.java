@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.crawler4j.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.frontier.BerkeleyDBFrontierStorage;
+import edu.uci.ics.crawler4j.frontier.DocIDStore;
+import edu.uci.ics.crawler4j.frontier.Frontier;
+import edu.uci.ics.crawler4j.frontier.FrontierStorage;
+import edu.uci.ics.crawler4j.frontier.InMemoryFrontierStorage;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.FileUtils;
+
+/**
+ * Runs the same simulated crawl workload against the available frontier
+ * storage engines. Each worker thread takes URLs from the frontier and, for
+ * every "fetched" page, admits a number of outgoing links the same way
+ * WebCrawler does: look up the docid, assign a new one if the link is unseen
+ * and schedule the new links. No network I/O is involved, so the numbers
+ * reflect the cost of the frontier alone.
+ */
+public class FrontierStorageBenchmark {
+
+	private static final int LINKS_PER_PAGE = 20;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length != 3) {
+			System.out.println("Needed parameters: ");
+			System.out.println("\t rootFolder (it will contain the benchmark databases)");
+			System.out.println("\t numberOfPages (number of pages to process per storage engine)");
+			System.out.println("\t numberOfThreads (number of concurrent worker threads)");
+			return;
+		}
+		String rootFolder = args[0];
+		int numberOfPages = Integer.parseInt(args[1]);
+		int numberOfThreads = Integer.parseInt(args[2]);
+
+		run("Berkeley DB (non-resumable)", rootFolder, false, 0, false, numberOfPages, numberOfThreads);
+		run("Berkeley DB (resumable)", rootFolder, true, 0, false, numberOfPages, numberOfThreads);
+		run("Berkeley DB (resumable, group commit)", rootFolder, true, 1000, false, numberOfPages, numberOfThreads);
+		run("In-memory", rootFolder, false, 0, true, numberOfPages, numberOfThreads);
+	}
+
+	private static void run(String name, String rootFolder, boolean resumable, int groupCommitInterval, boolean inMemory,
+			final int numberOfPages, int numberOfThreads) throws Exception {
+		File folder = new File(rootFolder);
+		if (folder.exists()) {
+			FileUtils.deleteFolderContents(folder);
+		} else {
+			folder.mkdirs();
+		}
+
+		CrawlConfig config = new CrawlConfig();
+		config.setCrawlStorageFolder(rootFolder);
+		config.setResumableCrawling(resumable);
+		config.setGroupCommitInterval(groupCommitInterval);
+		config.setInMemoryFrontier(inMemory);
+		config.validate();
+
+		FrontierStorage storage;
+		if (inMemory) {
+			storage = new InMemoryFrontierStorage(config);
+		} else {
+			storage = new BerkeleyDBFrontierStorage(config);
+		}
+		final Frontier frontier = new Frontier(config, storage);
+		final DocIDStore docIdStore = storage.getDocIDStore();
+
+		// Links point into a URL space a few times larger than the crawl, so
+		// that most of them have been seen already, like on real sites.
+		final int urlSpace = numberOfPages * 4;
+		List<WebURL> seeds = new ArrayList<>();
+		for (int i = 0; i < numberOfThreads; i++) {
+			String url = "http://host" + i + ".example.com/page" + i;
+			seeds.add(newURL(url, docIdStore.getNewDocID(url), (short) 0));
+		}
+		frontier.scheduleAll(seeds);
+
+		final AtomicLong processed = new AtomicLong();
+		List<Thread> threads = new ArrayList<>();
+		long start = System.nanoTime();
+		for (int t = 0; t < numberOfThreads; t++) {
+			final Random random = new Random(t);
+			Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					List<WebURL> assigned = new ArrayList<>();
+					while (processed.get() < numberOfPages) {
+						assigned.clear();
+						frontier.getNextURLs(50, assigned);
+						if (assigned.isEmpty()) {
+							return;
+						}
+						for (WebURL page : assigned) {
+							List<WebURL> links = new ArrayList<>();
+							for (int i = 0; i < LINKS_PER_PAGE; i++) {
+								int target = random.nextInt(urlSpace);
+								String url = "http://host" + (target % 1000) + ".example.com/page" + target;
+								links.add(newURL(url, -1, (short) (page.getDepth() + 1)));
+							}
+							docIdStore.lookupAll(links);
+							List<WebURL> candidates = new ArrayList<>();
+							for (WebURL link : links) {
+								if (link.getDocid() <= 0) {
+									candidates.add(link);
+								}
+							}
+							frontier.scheduleAll(docIdStore.getOrAssignAll(candidates));
+							frontier.setProcessed(page);
+							processed.incrementAndGet();
+						}
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long elapsed = System.nanoTime() - start;
+		frontier.finish();
+
+		System.out.println(name + ": " + processed.get() + " pages, " + docIdStore.getDocCount() + " docids in "
+				+ (elapsed / 1000000) + " ms (" + (processed.get() * 1000000000L / elapsed) + " pages/s)");
+		frontier.close();
+	}
+
+	private static WebURL newURL(String url, int docid, short depth) {
+		WebURL webURL = new WebURL();
+		webURL.setURL(url);
+		webURL.setDocid(docid);
+		webURL.setDepth(depth);
+		return webURL;
+	}
+}
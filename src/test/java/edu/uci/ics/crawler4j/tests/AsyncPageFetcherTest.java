@@ -0,0 +1,137 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.apache.http.HttpStatus;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.fetcher.AsyncPageFetcher;
+import edu.uci.ics.crawler4j.fetcher.CustomFetchStatus;
+import edu.uci.ics.crawler4j.fetcher.PageFetchResult;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+public class AsyncPageFetcherTest extends TestCase {
+
+	private static final long SLOW_RESPONSE = 300;
+
+	private HttpServer server;
+
+	private AsyncPageFetcher fetcher;
+
+	@Override
+	protected void setUp() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				String path = exchange.getRequestURI().getPath();
+				if (path.startsWith("/slow")) {
+					try {
+						Thread.sleep(SLOW_RESPONSE);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				if (path.equals("/moved")) {
+					exchange.getResponseHeaders().add("Location", "/page");
+					exchange.sendResponseHeaders(HttpStatus.SC_MOVED_TEMPORARILY, -1);
+					exchange.close();
+					return;
+				}
+				byte[] content = ("<html><body>" + path + "</body></html>").getBytes("UTF-8");
+				exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+				if (path.equals("/big")) {
+					// Chunked, so the size is not known in advance
+					exchange.sendResponseHeaders(HttpStatus.SC_OK, 0);
+					content = new byte[4096];
+				} else {
+					exchange.sendResponseHeaders(HttpStatus.SC_OK, content.length);
+				}
+				OutputStream out = exchange.getResponseBody();
+				out.write(content);
+				out.close();
+			}
+		});
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+
+		CrawlConfig config = new CrawlConfig();
+		config.setPolitenessDelay(0);
+		config.setFetcherThreads(1);
+		config.setMaxDownloadSize(1024);
+		fetcher = new AsyncPageFetcher(config);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		fetcher.shutDown();
+		server.stop(0);
+	}
+
+	private WebURL url(String path) {
+		WebURL webUrl = new WebURL();
+		webUrl.setURL("http://localhost:" + server.getAddress().getPort() + path);
+		return webUrl;
+	}
+
+	public void testFetchesThePageContent() throws Exception {
+		WebURL webUrl = url("/page");
+		PageFetchResult fetchResult = fetcher.fetchAsync(webUrl).get(5, TimeUnit.SECONDS);
+		assertEquals(HttpStatus.SC_OK, fetchResult.getStatusCode());
+		assertEquals(webUrl.getURL(), fetchResult.getFetchedUrl());
+
+		Page page = new Page(webUrl);
+		assertTrue(fetchResult.fetchContent(page));
+		assertEquals("<html><body>/page</body></html>", new String(page.getContentData(), "UTF-8"));
+		assertEquals("text/html", page.getContentType());
+		assertEquals("UTF-8", page.getContentCharset());
+	}
+
+	public void testSlowResponsesDoNotHoldUpTheIOThread() throws Exception {
+		List<ListenableFuture<PageFetchResult>> futures = new ArrayList<>();
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 20; i++) {
+			futures.add(fetcher.fetchAsync(url("/slow/" + i)));
+		}
+		for (ListenableFuture<PageFetchResult> future : futures) {
+			assertEquals(HttpStatus.SC_OK, future.get(10, TimeUnit.SECONDS).getStatusCode());
+		}
+		// A single I/O thread waited for all of them at once
+		assertTrue(System.currentTimeMillis() - start < 10 * SLOW_RESPONSE);
+		assertEquals(20, fetcher.getFetchCount());
+	}
+
+	public void testReportsRedirects() throws Exception {
+		PageFetchResult fetchResult = fetcher.fetchHeader(url("/moved"));
+		assertEquals(HttpStatus.SC_MOVED_TEMPORARILY, fetchResult.getStatusCode());
+		assertEquals(url("/page").getURL(), fetchResult.getMovedToUrl());
+	}
+
+	public void testCutsOffPagesLargerThanTheMaxDownloadSize() throws Exception {
+		assertEquals(CustomFetchStatus.PageTooBig, fetcher.fetchHeader(url("/big")).getStatusCode());
+		assertEquals(HttpStatus.SC_OK, fetcher.fetchHeader(url("/page")).getStatusCode());
+	}
+
+	public void testAbortedFetchesFailRightAway() throws Exception {
+		ListenableFuture<PageFetchResult> pending = fetcher.fetchAsync(url("/slow/pending"));
+		Thread.sleep(SLOW_RESPONSE / 3);
+		fetcher.abort();
+		assertEquals(CustomFetchStatus.Aborted, pending.get(5, TimeUnit.SECONDS).getStatusCode());
+		assertEquals(CustomFetchStatus.Aborted, fetcher.fetchHeader(url("/page")).getStatusCode());
+	}
+}
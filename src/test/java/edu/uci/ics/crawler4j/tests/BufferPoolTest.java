@@ -0,0 +1,29 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import edu.uci.ics.crawler4j.util.BufferPool;
+
+public class BufferPoolTest extends TestCase {
+
+	public void testReadsAcrossBuffersAndStopsAtTheLimit() throws Exception {
+		BufferPool pool = new BufferPool(16, 4);
+		byte[] data = new byte[100];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		assertTrue(Arrays.equals(data, pool.read(new ByteArrayInputStream(data), 100)));
+		assertEquals(4, pool.getPooledCount());
+		assertEquals(7, pool.getAllocatedCount());
+
+		assertTrue(Arrays.equals(data, pool.read(new ByteArrayInputStream(data), 100)));
+		assertEquals(10, pool.getAllocatedCount());
+
+		ByteArrayInputStream in = new ByteArrayInputStream(data);
+		assertNull(pool.read(in, 40));
+		assertEquals(52, in.available());
+		assertEquals(0, pool.read(new ByteArrayInputStream(new byte[0]), 0).length);
+	}
+}
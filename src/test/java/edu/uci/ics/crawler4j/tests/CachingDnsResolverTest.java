@@ -0,0 +1,48 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.net.InetAddress;
+
+import junit.framework.TestCase;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.fetcher.CachingDnsResolver;
+
+public class CachingDnsResolverTest extends TestCase {
+
+	public void testCacheAndPrefetch() throws Exception {
+		CrawlConfig config = new CrawlConfig();
+		config.setDnsCacheSize(10);
+		CachingDnsResolver resolver = new CachingDnsResolver(config);
+		try {
+			InetAddress[] addresses = resolver.resolve("127.0.0.1");
+			assertEquals("127.0.0.1", addresses[0].getHostAddress());
+			resolver.resolve("127.0.0.1");
+			assertEquals(1, resolver.getHitCount());
+			assertEquals(1, resolver.getMissCount());
+			assertEquals(1, resolver.getLookupCount());
+
+			resolver.prefetch("127.0.0.2");
+			for (int i = 0; i < 100 && resolver.getPrefetchCount() == 0; i++) {
+				Thread.sleep(10);
+			}
+			assertEquals(1, resolver.getPrefetchCount());
+			resolver.resolve("127.0.0.2");
+			assertEquals(2, resolver.getHitCount());
+			assertEquals(2, resolver.getLookupCount());
+			assertEquals(2.0 / 3, resolver.getHitRatio(), 1e-9);
+		} finally {
+			resolver.close();
+		}
+	}
+
+	public void testExpiredEntriesAreLookedUpAgain() throws Exception {
+		CrawlConfig config = new CrawlConfig();
+		config.setDnsCacheSize(10);
+		config.setDnsCacheTtl(0);
+		config.setDnsPrefetchThreads(0);
+		CachingDnsResolver resolver = new CachingDnsResolver(config);
+		resolver.resolve("127.0.0.1");
+		resolver.resolve("127.0.0.1");
+		assertEquals(0, resolver.getHitCount());
+		assertEquals(2, resolver.getLookupCount());
+	}
+}
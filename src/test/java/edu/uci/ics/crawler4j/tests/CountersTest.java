@@ -0,0 +1,71 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+
+import com.sleepycat.je.Environment;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.frontier.BerkeleyDBFrontierStorage;
+import edu.uci.ics.crawler4j.frontier.Counters;
+import edu.uci.ics.crawler4j.util.FileUtils;
+
+public class CountersTest extends TestCase {
+
+	private File folder;
+
+	private CrawlConfig config;
+
+	private Environment env;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = Files.createTempDirectory("crawler4j").toFile();
+		config = new CrawlConfig();
+		config.setCrawlStorageFolder(folder.getAbsolutePath());
+		config.setResumableCrawling(true);
+		env = BerkeleyDBFrontierStorage.openEnvironment(config, true);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		env.close();
+		FileUtils.deleteFolderContents(folder);
+		folder.delete();
+	}
+
+	private long readPersisted(String name) throws Exception {
+		Counters counters = new Counters(env, config);
+		try {
+			return counters.getValue(name);
+		} finally {
+			counters.close();
+		}
+	}
+
+	public void testCountersAreFlushedPeriodically() throws Exception {
+		config.setCountersFlushInterval(50);
+		Counters counters = new Counters(env, config);
+		counters.increment("pages", 5);
+		long deadline = System.currentTimeMillis() + 5000;
+		while (readPersisted("pages") != 5 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertEquals(5, readPersisted("pages"));
+		counters.close();
+	}
+
+	public void testCountersAreFlushedOnClose() throws Exception {
+		config.setCountersFlushInterval(60 * 60 * 1000);
+		Counters counters = new Counters(env, config);
+		counters.increment("pages", 3);
+		assertEquals(0, readPersisted("pages"));
+
+		long start = System.currentTimeMillis();
+		counters.close();
+		assertTrue(System.currentTimeMillis() - start < 1000);
+		assertEquals(3, readPersisted("pages"));
+	}
+}
@@ -0,0 +1,103 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.CrawlController;
+import edu.uci.ics.crawler4j.crawler.WebCrawler;
+import edu.uci.ics.crawler4j.fetcher.CustomFetchStatus;
+import edu.uci.ics.crawler4j.fetcher.PageFetchResult;
+import edu.uci.ics.crawler4j.frontier.Frontier;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtConfig;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.FileUtils;
+
+public class CrawlControllerTest extends TestCase {
+
+	/**
+	 * Fails the fetches like the real fetcher once the requests in progress
+	 * are aborted.
+	 */
+	private static class AbortingPageFetcher extends StubPageFetcher {
+
+		AbortingPageFetcher(CrawlConfig config) {
+			super(config, 10, 0);
+		}
+
+		@Override
+		public PageFetchResult fetchHeader(WebURL webUrl) {
+			if (isAborted()) {
+				PageFetchResult fetchResult = new PageFetchResult();
+				fetchResult.setStatusCode(CustomFetchStatus.Aborted);
+				return fetchResult;
+			}
+			return super.fetchHeader(webUrl);
+		}
+	}
+
+	private File folder;
+
+	private StubPageFetcher pageFetcher;
+
+	private CrawlController controller;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = Files.createTempDirectory("crawler4j").toFile();
+		CrawlConfig config = new CrawlConfig();
+		config.setCrawlStorageFolder(folder.getAbsolutePath());
+		config.setInMemoryFrontier(true);
+		pageFetcher = new AbortingPageFetcher(config);
+		RobotstxtConfig robotstxtConfig = new RobotstxtConfig();
+		robotstxtConfig.setEnabled(false);
+		controller = new CrawlController(config, pageFetcher, new RobotstxtServer(robotstxtConfig, pageFetcher));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		controller.getFrontier().close();
+		pageFetcher.shutDown();
+		FileUtils.deleteFolderContents(folder);
+		folder.delete();
+	}
+
+	private static WebURL url(int page) {
+		WebURL webUrl = new WebURL();
+		webUrl.setURL(StubPageFetcher.url(page));
+		webUrl.setDocid(page + 1);
+		return webUrl;
+	}
+
+	public void testOnlyAbortedFetchesAreReleased() throws Exception {
+		// Pages without links, so visiting them schedules nothing
+		Frontier frontier = controller.getFrontier();
+		frontier.schedule(url(5));
+		frontier.schedule(url(6));
+		List<WebURL> urls = new ArrayList<>();
+		frontier.getNextURLs(2, urls);
+		assertEquals(2, urls.size());
+
+		WebCrawler crawler = new WebCrawler();
+		crawler.init(1, controller);
+		crawler.process(urls.get(0));
+		// The shutdown aborts the requests in progress while the first page
+		// is done, but not marked as processed yet
+		pageFetcher.abort();
+		controller.setProcessed(urls.get(0));
+		crawler.process(urls.get(1));
+		controller.setProcessed(urls.get(1));
+
+		assertEquals(1, frontier.getNumberOfProcessedPages());
+		assertEquals(0, frontier.getNumberOfAssignedPages());
+		assertEquals(1, frontier.getQueueLength());
+		urls.clear();
+		frontier.getNextURLs(2, urls);
+		assertEquals(1, urls.size());
+		assertEquals(StubPageFetcher.url(6), urls.get(0).getURL());
+	}
+}
@@ -0,0 +1,261 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.apache.http.HttpStatus;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.CrawlController;
+import edu.uci.ics.crawler4j.crawler.CrawlPipeline;
+import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.crawler.WebCrawler;
+import edu.uci.ics.crawler4j.fetcher.AsyncPageFetcher;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtConfig;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.FileUtils;
+
+public class CrawlPipelineTest extends TestCase {
+
+	private static final int PAGES = 50;
+
+	private static final int QUEUE_CAPACITY = 3;
+
+	static final Set<String> fetchThreads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	static final Set<String> parseThreads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	static final Set<String> visitThreads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	static final Set<String> visited = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	static volatile CountDownLatch visitGate;
+
+	static volatile Thread visitThread;
+
+	static volatile boolean visitInterrupted;
+
+	/**
+	 * Records the threads of the stages, and lets the test hold up the visit
+	 * stage.
+	 */
+	public static class StageRecordingCrawler extends WebCrawler {
+
+		@Override
+		public Page fetch(WebURL url) {
+			fetchThreads.add(Thread.currentThread().getName());
+			return super.fetch(url);
+		}
+
+		@Override
+		public boolean parse(Page page) {
+			parseThreads.add(Thread.currentThread().getName());
+			return super.parse(page);
+		}
+
+		@Override
+		public void visit(Page page) {
+			visitThreads.add(Thread.currentThread().getName());
+			visitThread = Thread.currentThread();
+			try {
+				visitGate.await();
+			} catch (InterruptedException e) {
+				visitInterrupted = true;
+				Thread.currentThread().interrupt();
+			}
+			visited.add(page.getWebURL().getURL());
+		}
+	}
+
+	private File folder;
+
+	private CrawlConfig config;
+
+	private PageFetcher pageFetcher;
+
+	private CrawlController controller;
+
+	private HttpServer server;
+
+	@Override
+	protected void setUp() throws Exception {
+		fetchThreads.clear();
+		parseThreads.clear();
+		visitThreads.clear();
+		visited.clear();
+		visitGate = new CountDownLatch(0);
+		visitThread = null;
+		visitInterrupted = false;
+		folder = Files.createTempDirectory("crawler4j").toFile();
+		config = new CrawlConfig();
+		config.setCrawlStorageFolder(folder.getAbsolutePath());
+		config.setInMemoryFrontier(true);
+		config.setParseThreads(2);
+		config.setVisitThreads(1);
+		config.setPipelineQueueCapacity(QUEUE_CAPACITY);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		visitGate.countDown();
+		if (controller != null && !controller.isFinished()) {
+			controller.shutdown();
+			controller.waitUntilFinish(10000);
+		}
+		if (pageFetcher != null) {
+			pageFetcher.shutDown();
+		}
+		if (server != null) {
+			server.stop(0);
+		}
+		FileUtils.deleteFolderContents(folder);
+		folder.delete();
+	}
+
+	private CrawlController newController(PageFetcher pageFetcher) throws Exception {
+		this.pageFetcher = pageFetcher;
+		RobotstxtConfig robotstxtConfig = new RobotstxtConfig();
+		robotstxtConfig.setEnabled(false);
+		controller = new CrawlController(config, pageFetcher, new RobotstxtServer(robotstxtConfig, pageFetcher));
+		return controller;
+	}
+
+	public void testPagesAreHandedFromStageToStage() throws Exception {
+		CrawlController controller = newController(new StubPageFetcher(config, PAGES, 0));
+		controller.addSeed(StubPageFetcher.url(0));
+		controller.startPipeline(StageRecordingCrawler.class, 2);
+
+		assertEquals(PAGES, visited.size());
+		assertEquals(Collections.singleton("Visit 1"), visitThreads);
+		for (String thread : fetchThreads) {
+			assertTrue(thread, thread.startsWith("Fetch "));
+		}
+		for (String thread : parseThreads) {
+			assertTrue(thread, thread.startsWith("Parse "));
+		}
+
+		CrawlPipeline pipeline = controller.getPipeline();
+		assertEquals(2, pipeline.getFetchStage().getThreadCount());
+		assertEquals(2, pipeline.getParseStage().getThreadCount());
+		assertEquals(1, pipeline.getVisitStage().getThreadCount());
+		for (CrawlPipeline.Stage stage : pipeline.getStages()) {
+			assertEquals(stage.getName(), PAGES, stage.getProcessedCount());
+			assertEquals(stage.getName(), 0, stage.getQueueDepth());
+		}
+		assertEquals(QUEUE_CAPACITY, pipeline.getParseStage().getQueueCapacity());
+		assertEquals(5, pipeline.getCrawlers().size());
+	}
+
+	public void testFullQueuesHoldUpTheStagesBefore() throws Exception {
+		visitGate = new CountDownLatch(1);
+		CrawlController controller = newController(new StubPageFetcher(config, PAGES, 0));
+		// Links are scheduled by the visit stage, so seed all pages
+		for (int i = 0; i < PAGES; i++) {
+			controller.addSeed(StubPageFetcher.url(i));
+		}
+		controller.startPipelineNonBlocking(StageRecordingCrawler.class, 1);
+		CrawlPipeline pipeline = controller.getPipeline();
+
+		// The visit thread is stuck, so both queues fill up
+		long deadline = System.currentTimeMillis() + 20000;
+		while ((pipeline.getVisitStage().getQueueDepth() < QUEUE_CAPACITY || pipeline.getParseStage()
+				.getQueueDepth() < QUEUE_CAPACITY) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(100);
+		assertEquals(QUEUE_CAPACITY, pipeline.getVisitStage().getQueueDepth());
+		assertEquals(QUEUE_CAPACITY, pipeline.getParseStage().getQueueDepth());
+		// One page is being visited, two are waiting to be put into the full
+		// queues by the parse threads, and one by the fetch thread
+		long fetched = pipeline.getFetchStage().getProcessedCount();
+		assertTrue("fetched " + fetched, fetched <= 2 * QUEUE_CAPACITY + 4);
+		assertEquals(0, pipeline.getVisitStage().getProcessedCount());
+		assertTrue(controller.getFrontier().getQueueLength() > 0);
+
+		visitGate.countDown();
+		assertTrue(controller.waitUntilFinish(10000));
+		assertEquals(PAGES, visited.size());
+		assertEquals(PAGES, pipeline.getVisitStage().getProcessedCount());
+	}
+
+	public void testStopLetsTheStagesFinishTheirPages() throws Exception {
+		visitGate = new CountDownLatch(1);
+		CrawlController controller = newController(new StubPageFetcher(config, PAGES, 0));
+		for (int i = 0; i < PAGES; i++) {
+			controller.addSeed(StubPageFetcher.url(i));
+		}
+		controller.startPipelineNonBlocking(StageRecordingCrawler.class, 1);
+		long deadline = System.currentTimeMillis() + 20000;
+		while (visitThread == null && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertNotNull(visitThread);
+
+		// The visit thread is still stuck once the shutdown deadline has
+		// passed and the pipeline is stopped, but it is not interrupted
+		controller.shutdown(2000);
+		assertTrue(controller.waitUntilFinish(10000));
+		assertTrue(visitThread.isAlive());
+		assertFalse(visitInterrupted);
+
+		visitGate.countDown();
+		visitThread.join(5000);
+		assertFalse(visitThread.isAlive());
+		assertFalse(visitInterrupted);
+		assertEquals(1, visited.size());
+	}
+
+	public void testAsyncFetcherFeedsTheFetchStage() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		final String site = "http://localhost:" + server.getAddress().getPort() + "/";
+		server.createContext("/", new HttpHandler() {
+
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				String path = exchange.getRequestURI().getPath();
+				byte[] content = StubPageFetcher.html(site,
+						Integer.parseInt(path.substring(1, path.length() - 5)), PAGES).getBytes("UTF-8");
+				exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+				exchange.sendResponseHeaders(HttpStatus.SC_OK, content.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(content);
+				out.close();
+			}
+		});
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+
+		config.setPolitenessDelay(0);
+		config.setFetcherThreads(1);
+		config.setMaxTotalConnections(4);
+		CrawlController controller = newController(new AsyncPageFetcher(config));
+		controller.addSeed(site + "0.html");
+		controller.startPipelineNonBlocking(StageRecordingCrawler.class, 1);
+		assertTrue(controller.waitUntilFinish(TimeUnit.SECONDS.toMillis(20)));
+
+		assertEquals(PAGES, visited.size());
+		// The fetch stage got responses and did not fetch itself
+		assertTrue(fetchThreads.isEmpty());
+		CrawlPipeline pipeline = controller.getPipeline();
+		assertEquals(PAGES, pipeline.getFetchStage().getProcessedCount());
+		assertEquals(0, pipeline.getFetchesInFlight());
+		assertEquals(PAGES, pageFetcher.getFetchCount());
+	}
+}
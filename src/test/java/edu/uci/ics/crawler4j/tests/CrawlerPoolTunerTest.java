@@ -0,0 +1,120 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.CrawlController;
+import edu.uci.ics.crawler4j.crawler.CrawlerPoolTuner;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtConfig;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
+import edu.uci.ics.crawler4j.util.FileUtils;
+
+public class CrawlerPoolTunerTest extends TestCase {
+
+	private static final long INTERVAL = 1000;
+
+	private static final long QUEUED = 1000;
+
+	/**
+	 * Exposes the target computation, which is a pure function of the
+	 * measurements and the config.
+	 */
+	private static class Tuner extends CrawlerPoolTuner {
+
+		Tuner(CrawlController controller) {
+			super(controller);
+		}
+
+		int target(int current, long processed, long averageFetchTime, double cpuLoad) {
+			return target(current, processed, averageFetchTime, cpuLoad, QUEUED);
+		}
+
+		int target(int current, long processed, long averageFetchTime, double cpuLoad, long queueLength) {
+			return getTargetNumberOfCrawlers(current, INTERVAL, processed, processed, processed * averageFetchTime,
+					cpuLoad, queueLength);
+		}
+
+		int getCores() {
+			return cores;
+		}
+	}
+
+	private File folder;
+
+	private CrawlConfig config;
+
+	private PageFetcher pageFetcher;
+
+	private CrawlController controller;
+
+	private Tuner tuner;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = Files.createTempDirectory("crawler4j").toFile();
+		config = new CrawlConfig();
+		config.setCrawlStorageFolder(folder.getAbsolutePath());
+		config.setInMemoryFrontier(true);
+		config.setTargetCpuLoad(0.8);
+		pageFetcher = new StubPageFetcher(config, 1, 0);
+		RobotstxtConfig robotstxtConfig = new RobotstxtConfig();
+		robotstxtConfig.setEnabled(false);
+		controller = new CrawlController(config, pageFetcher, new RobotstxtServer(robotstxtConfig, pageFetcher));
+		tuner = new Tuner(controller);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		controller.getFrontier().close();
+		pageFetcher.shutDown();
+		FileUtils.deleteFolderContents(folder);
+		folder.delete();
+	}
+
+	public void testGrowsWhileThreadsMostlyWaitForResponses() {
+		// 8 threads done with 80 pages in a second spent 100ms on each, 90ms
+		// of it waiting for the response. The CPU is mostly idle.
+		assertEquals(10, tuner.target(8, 80, 90, 0.2));
+		// Growing further from there
+		assertEquals(12, tuner.target(10, 100, 90, 0.2));
+	}
+
+	public void testKeepsTheNumberWhileThreadsMostlyCompute() {
+		assertEquals(8, tuner.target(8, 80, 10, 0.2));
+	}
+
+	public void testKeepsTheNumberWithoutEnoughQueuedURLs() {
+		assertEquals(8, tuner.target(8, 80, 90, 0.2, 4));
+	}
+
+	public void testShrinksWhileTheCpuIsAboveTheTarget() {
+		assertEquals(6, tuner.target(8, 80, 90, 0.95));
+		assertEquals(6, tuner.target(8, 80, 10, 0.95));
+	}
+
+	public void testShrinksWhenThroughputDrops() {
+		// Without CPU measurements the number of threads is estimated from
+		// the time spent waiting and computing, starting from enough threads
+		// to keep all cores busy
+		config.setMaxCrawlers(1000);
+		int current = 8 * tuner.getCores();
+		int step = current / 4;
+		// Each page took 50ms, all of it waiting for the response
+		assertEquals(current + step, tuner.target(current, current * 20, 50, -1));
+		// The same latency, but far fewer pages get done
+		assertEquals(current - step, tuner.target(current, current / 2, 50, -1));
+	}
+
+	public void testClampsToMinAndMaxCrawlers() {
+		config.setMaxCrawlers(9);
+		assertEquals(9, tuner.target(8, 80, 90, 0.2));
+		config.setMinCrawlers(7);
+		assertEquals(7, tuner.target(8, 80, 90, 0.99));
+		// A pool outside of the bounds is brought back into them
+		assertEquals(9, tuner.target(20, 200, 10, 0.5));
+		assertEquals(7, tuner.target(2, 20, 10, 0.5));
+	}
+}
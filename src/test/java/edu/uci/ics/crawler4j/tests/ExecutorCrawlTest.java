@@ -0,0 +1,83 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.CrawlController;
+import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.crawler.WebCrawler;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtConfig;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
+import edu.uci.ics.crawler4j.util.FileUtils;
+
+public class ExecutorCrawlTest extends TestCase {
+
+	static final Set<String> visited = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	public static class VisitingCrawler extends WebCrawler {
+
+		@Override
+		public void visit(Page page) {
+			visited.add(page.getWebURL().getURL());
+		}
+	}
+
+	private File folder;
+
+	private StubPageFetcher pageFetcher;
+
+	private CrawlController controller;
+
+	private ExecutorService executor;
+
+	@Override
+	protected void setUp() throws Exception {
+		visited.clear();
+		folder = Files.createTempDirectory("crawler4j").toFile();
+		CrawlConfig config = new CrawlConfig();
+		config.setCrawlStorageFolder(folder.getAbsolutePath());
+		config.setInMemoryFrontier(true);
+		pageFetcher = new StubPageFetcher(config, 100, 5);
+		RobotstxtConfig robotstxtConfig = new RobotstxtConfig();
+		robotstxtConfig.setEnabled(false);
+		controller = new CrawlController(config, pageFetcher, new RobotstxtServer(robotstxtConfig, pageFetcher));
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		executor.shutdownNow();
+		pageFetcher.shutDown();
+		FileUtils.deleteFolderContents(folder);
+		folder.delete();
+	}
+
+	public void testCrawlsEveryPageOnTheExecutor() throws Exception {
+		controller.addSeed(StubPageFetcher.url(0));
+		long start = System.currentTimeMillis();
+		controller.start(VisitingCrawler.class, 4, executor);
+		assertTrue(controller.isFinished());
+		assertEquals(100, visited.size());
+		assertEquals(100, pageFetcher.getFetches());
+		assertTrue(System.currentTimeMillis() - start < 30000);
+	}
+
+	public void testShutdownStopsTheExecutorCrawl() throws Exception {
+		controller.addSeed(StubPageFetcher.url(0));
+		controller.startNonBlocking(VisitingCrawler.class, 2, executor);
+		Thread.sleep(50);
+		controller.shutdown();
+		assertTrue(controller.waitUntilFinish(10000));
+		assertTrue(visited.size() < 100);
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+	}
+}
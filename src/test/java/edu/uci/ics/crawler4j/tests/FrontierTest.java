@@ -0,0 +1,304 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.sleepycat.je.Environment;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.fetcher.CachingDnsResolver;
+import edu.uci.ics.crawler4j.frontier.BerkeleyDBFrontierStorage;
+import edu.uci.ics.crawler4j.frontier.DocIDServer;
+import edu.uci.ics.crawler4j.frontier.Frontier;
+import edu.uci.ics.crawler4j.frontier.InMemoryFrontierStorage;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.FileUtils;
+
+public class FrontierTest extends TestCase {
+
+	private File folder;
+
+	private Frontier frontier;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = Files.createTempDirectory("crawler4j").toFile();
+		CrawlConfig config = new CrawlConfig();
+		config.setCrawlStorageFolder(folder.getAbsolutePath());
+		config.setInMemoryFrontier(true);
+		frontier = new Frontier(config, new InMemoryFrontierStorage(config));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		frontier.close();
+		FileUtils.deleteFolderContents(folder);
+		folder.delete();
+	}
+
+	private static WebURL url(String url, int docid) {
+		WebURL webUrl = new WebURL();
+		webUrl.setURL(url);
+		webUrl.setDocid(docid);
+		return webUrl;
+	}
+
+	public void testIdleOnceAllPagesAreProcessed() throws Exception {
+		assertTrue(frontier.isIdle());
+		frontier.schedule(url("http://www.example.com/1", 1));
+		frontier.schedule(url("http://www.example.com/2", 2));
+		assertFalse(frontier.isIdle());
+
+		List<WebURL> urls = new ArrayList<>();
+		frontier.getNextURLs(10, urls);
+		assertEquals(2, urls.size());
+		assertEquals(2, frontier.getNumberOfAssignedPages());
+		assertFalse(frontier.awaitIdle(10));
+
+		frontier.setProcessed(urls.get(0));
+		assertFalse(frontier.isIdle());
+		frontier.setProcessed(urls.get(1));
+		assertTrue(frontier.awaitIdle(10));
+	}
+
+	public void testReleasedPagesAreQueuedAgain() throws Exception {
+		frontier.schedule(url("http://www.example.com/1", 1));
+		frontier.schedule(url("http://www.example.com/2", 2));
+		List<WebURL> urls = new ArrayList<>();
+		frontier.getNextURLs(10, urls);
+
+		frontier.setProcessed(urls.get(0));
+		frontier.release(urls.subList(1, 2));
+		assertEquals(0, frontier.getNumberOfAssignedPages());
+		assertEquals(1, frontier.getQueueLength());
+		assertFalse(frontier.isIdle());
+
+		urls.clear();
+		frontier.getNextURLs(10, urls);
+		assertEquals(1, urls.size());
+		assertEquals("http://www.example.com/2", urls.get(0).getURL());
+	}
+
+	public void testDeferredPagesAreParkedUntilDue() throws Exception {
+		frontier.schedule(url("http://www.example.com/1", 1));
+		List<WebURL> urls = new ArrayList<>();
+		frontier.getNextURLs(10, urls);
+
+		frontier.defer(urls.get(0), System.currentTimeMillis() + 200);
+		frontier.setProcessed(urls.get(0));
+		assertEquals(0, frontier.getNumberOfAssignedPages());
+		assertEquals(1, frontier.getNumberOfParkedPages());
+		assertEquals(0, frontier.getNumberOfProcessedPages());
+		assertFalse(frontier.isIdle());
+
+		urls.clear();
+		long start = System.currentTimeMillis();
+		frontier.getNextURLs(10, urls);
+		assertTrue(System.currentTimeMillis() - start >= 150);
+		assertEquals(1, urls.size());
+		assertEquals(0, frontier.getNumberOfParkedPages());
+	}
+
+	@SuppressWarnings("deprecation")
+	public void testDeprecatedEnvironmentConstructor() throws Exception {
+		CrawlConfig config = new CrawlConfig();
+		config.setCrawlStorageFolder(folder.getAbsolutePath());
+		Environment env = BerkeleyDBFrontierStorage.openEnvironment(config, false);
+		DocIDServer docIdServer = new DocIDServer(env, config);
+		Frontier legacy = new Frontier(env, config, docIdServer);
+		legacy.schedule(url("http://www.example.com/1", docIdServer.getNewDocID("http://www.example.com/1")));
+		List<WebURL> urls = new ArrayList<>();
+		legacy.getNextURLs(10, urls);
+		assertEquals(1, urls.size());
+		legacy.setProcessed(urls.get(0));
+		legacy.close();
+
+		// The environment and the docids belong to the caller
+		assertEquals(1, docIdServer.getDocId("http://www.example.com/1"));
+		docIdServer.close();
+		env.close();
+	}
+
+	public void testShutdownWaitsOnlyForAssignedPages() throws Exception {
+		frontier.schedule(url("http://www.example.com/1", 1));
+		frontier.schedule(url("http://www.example.com/2", 2));
+		List<WebURL> urls = new ArrayList<>();
+		frontier.getNextURLs(1, urls);
+		frontier.finish();
+		assertFalse(frontier.awaitNoAssignedPages(10));
+
+		frontier.release(urls);
+		assertTrue(frontier.awaitNoAssignedPages(10));
+		assertFalse(frontier.isIdle());
+		assertEquals(2, frontier.getQueueLength());
+	}
+
+	public void testWaitingCrawlerIsWokenUpBySchedule() throws Exception {
+		final List<WebURL> urls = new ArrayList<>();
+		Thread waiter = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				frontier.getNextURLs(10, urls);
+			}
+		});
+		waiter.start();
+		Thread.sleep(100);
+		assertTrue(waiter.isAlive());
+
+		long start = System.currentTimeMillis();
+		frontier.schedule(url("http://www.example.com/1", 1));
+		waiter.join(1000);
+		assertFalse(waiter.isAlive());
+		assertTrue(System.currentTimeMillis() - start < 1000);
+		assertEquals(1, urls.size());
+	}
+
+	public void testWaitingCrawlerReturnsEmptyOnFinish() throws Exception {
+		final List<WebURL> urls = new ArrayList<>();
+		Thread waiter = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				frontier.getNextURLs(10, urls);
+			}
+		});
+		waiter.start();
+		Thread.sleep(100);
+		frontier.finish();
+		waiter.join(1000);
+		assertFalse(waiter.isAlive());
+		assertTrue(urls.isEmpty());
+	}
+
+	public void testBatchSizeFollowsQueueLengthAndProcessingTime() throws Exception {
+		assertEquals(1, frontier.getBatchSize(4, 0));
+		for (int i = 1; i <= 40; i++) {
+			frontier.schedule(url("http://www.example.com/" + i, i));
+		}
+		assertEquals(10, frontier.getBatchSize(4, 0));
+		assertEquals(2, frontier.getBatchSize(4, 1000));
+		assertEquals(1, frontier.getBatchSize(100, 0));
+
+		List<WebURL> urls = new ArrayList<>();
+		frontier.getNextURLs(20, urls);
+		assertEquals(5, frontier.getBatchSize(4, 0));
+		frontier.release(urls);
+		assertEquals(10, frontier.getBatchSize(4, 0));
+	}
+
+	public void testIdleCrawlerStealsFromTheTailOfAnotherDeque() throws Exception {
+		for (int i = 1; i <= 4; i++) {
+			frontier.schedule(url("http://www.example.com/" + i, i));
+		}
+		Deque<WebURL> deque = frontier.newWorkDeque();
+		List<WebURL> batch = new ArrayList<>();
+		frontier.getNextURLs(10, batch, deque);
+		assertEquals("http://www.example.com/1", deque.pollFirst().getURL());
+
+		List<WebURL> stolen = new ArrayList<>();
+		frontier.getNextURLs(10, stolen);
+		assertEquals(2, stolen.size());
+		assertEquals("http://www.example.com/4", stolen.get(0).getURL());
+		assertEquals(1, deque.size());
+		assertEquals(2, frontier.getNumberOfStolenPages());
+		assertEquals(4, frontier.getNumberOfAssignedPages());
+		frontier.removeWorkDeque(deque);
+	}
+
+	public void testWaitingCrawlerStealsFromALargeBatch() throws Exception {
+		CrawlConfig config = new CrawlConfig();
+		config.setCrawlStorageFolder(folder.getAbsolutePath());
+		config.setInMemoryFrontier(true);
+		final LockableFrontier lockable = new LockableFrontier(config);
+		try {
+			final Deque<WebURL> waiterDeque = lockable.newWorkDeque();
+			final List<WebURL> stolen = new ArrayList<>();
+			Thread waiter = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					lockable.getNextURLs(10, stolen, waiterDeque);
+				}
+			});
+			waiter.start();
+			Thread.sleep(100);
+			assertTrue(waiter.isAlive());
+
+			// The waiter is woken up by schedule, but can only look for URLs
+			// once the whole batch has been handed to the other crawler
+			Deque<WebURL> deque = lockable.newWorkDeque();
+			List<WebURL> batch = new ArrayList<>();
+			synchronized (lockable.getMutex()) {
+				for (int i = 1; i <= 20; i++) {
+					lockable.schedule(url("http://www.example.com/" + i, i));
+				}
+				lockable.getNextURLs(20, batch, deque);
+			}
+			assertEquals(20, batch.size());
+
+			waiter.join(1000);
+			assertFalse(waiter.isAlive());
+			assertEquals(10, stolen.size());
+			assertEquals(10, waiterDeque.size());
+			assertEquals(10, deque.size());
+			Set<String> urls = new HashSet<>();
+			for (WebURL url : deque) {
+				urls.add(url.getURL());
+			}
+			for (WebURL url : waiterDeque) {
+				urls.add(url.getURL());
+			}
+			assertEquals(20, urls.size());
+			assertEquals(10, lockable.getNumberOfStolenPages());
+			lockable.removeWorkDeque(deque);
+			lockable.removeWorkDeque(waiterDeque);
+		} finally {
+			lockable.close();
+		}
+	}
+
+	public void testHostsArePrefetchedWithoutTheirPorts() throws Exception {
+		CrawlConfig config = new CrawlConfig();
+		config.setDnsCacheSize(10);
+		CachingDnsResolver resolver = new CachingDnsResolver(config);
+		try {
+			frontier.setDnsResolver(resolver);
+			frontier.schedule(url("http://127.0.0.1:8080/a", 1));
+			frontier.schedule(url("http://[::1]:8080/b", 2));
+			List<WebURL> urls = new ArrayList<>();
+			frontier.getNextURLs(10, urls);
+			assertEquals(2, urls.size());
+			for (int i = 0; i < 100 && resolver.getPrefetchCount() < 2; i++) {
+				Thread.sleep(10);
+			}
+			assertEquals(2, resolver.getPrefetchCount());
+
+			// The connection manager resolves the names without the ports
+			assertEquals("127.0.0.1", resolver.resolve("127.0.0.1")[0].getHostAddress());
+			assertEquals(1, resolver.resolve("::1").length);
+			assertEquals(2, resolver.getHitCount());
+			assertEquals(2, resolver.getLookupCount());
+		} finally {
+			resolver.close();
+		}
+	}
+
+	private static class LockableFrontier extends Frontier {
+
+		LockableFrontier(CrawlConfig config) throws Exception {
+			super(config, new InMemoryFrontierStorage(config));
+		}
+
+		Object getMutex() {
+			return mutex;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package edu.uci.ics.crawler4j.tests;
+
+import junit.framework.TestCase;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.fetcher.HostCircuitBreaker;
+
+public class HostCircuitBreakerTest extends TestCase {
+
+	public void testOpenProbeAndGiveUp() {
+		CrawlConfig config = new CrawlConfig();
+		config.setCircuitBreakerThreshold(3);
+		config.setCircuitBreakerOpenTime(1000);
+		config.setCircuitBreakerMaxProbes(2);
+		HostCircuitBreaker breaker = new HostCircuitBreaker(config);
+		String host = "www.example.com";
+
+		breaker.onFailure(host, 0);
+		breaker.onFailure(host, 0);
+		assertTrue(breaker.allowRequest(host, 0));
+		breaker.onFailure(host, 0);
+		assertFalse(breaker.allowRequest(host, 500));
+		assertEquals(1000, breaker.getRetryTime(host));
+
+		// Half-open: one probe only, a failed one doubles the open time
+		assertTrue(breaker.allowRequest(host, 1000));
+		assertFalse(breaker.allowRequest(host, 1001));
+		breaker.onFailure(host, 1100);
+		assertEquals(3100, breaker.getRetryTime(host));
+		assertFalse(breaker.isOpen("www.example.org", 1100));
+
+		// A response closes the circuit
+		assertTrue(breaker.allowRequest(host, 3100));
+		breaker.onSuccess(host);
+		assertFalse(breaker.isOpen(host, 3100));
+		assertEquals(0, breaker.getNumberOfOpenCircuits());
+
+		for (int i = 0; i < 3; i++) {
+			breaker.onFailure(host, 4000);
+		}
+		assertTrue(breaker.allowRequest(host, 5000));
+		breaker.onFailure(host, 5000);
+		assertTrue(breaker.allowRequest(host, 7000));
+		breaker.onFailure(host, 7000);
+		assertTrue(breaker.isOpen(host, Long.MAX_VALUE));
+		assertEquals(-1, breaker.getRetryTime(host));
+	}
+}
@@ -0,0 +1,42 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import edu.uci.ics.crawler4j.frontier.HostQueues;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+public class HostQueuesTest extends TestCase {
+
+	private static WebURL url(String url) {
+		WebURL webUrl = new WebURL();
+		webUrl.setURL(url);
+		return webUrl;
+	}
+
+	public void testOneUrlPerReadyHost() {
+		HostQueues queues = new HostQueues(200);
+		queues.add(url("http://a.example.com/1"));
+		queues.add(url("http://a.example.com/2"));
+		queues.add(url("http://b.example.com/1"));
+		assertEquals(3, queues.size());
+		assertEquals(2, queues.getNumberOfHosts());
+
+		List<WebURL> result = new ArrayList<>();
+		queues.poll(50, 1000, result);
+		assertEquals(2, result.size());
+		assertEquals(1, queues.size());
+		assertEquals(1200, queues.getNextReadyTime());
+
+		result.clear();
+		queues.poll(50, 1100, result);
+		assertEquals(0, result.size());
+
+		queues.poll(50, 1200, result);
+		assertEquals(1, result.size());
+		assertEquals("http://a.example.com/2", result.get(0).getURL());
+		assertEquals(0, queues.size());
+		assertEquals(Long.MAX_VALUE, queues.getNextReadyTime());
+	}
+}
@@ -0,0 +1,139 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import junit.framework.TestCase;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.frontier.DocIDStore;
+import edu.uci.ics.crawler4j.frontier.InMemoryFrontierStorage;
+import edu.uci.ics.crawler4j.frontier.InMemoryWorkQueues;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.FileUtils;
+
+public class InMemoryFrontierStorageTest extends TestCase {
+
+	private File folder;
+
+	private CrawlConfig config;
+
+	private InMemoryFrontierStorage storage;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = Files.createTempDirectory("crawler4j").toFile();
+		config = new CrawlConfig();
+		config.setCrawlStorageFolder(folder.getAbsolutePath());
+		config.setInMemoryFrontier(true);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (storage != null) {
+			storage.close();
+		}
+		FileUtils.deleteFolderContents(folder);
+		folder.delete();
+	}
+
+	private static WebURL url(int docid, int priority, int depth) {
+		WebURL webUrl = new WebURL();
+		webUrl.setURL("http://www.example.com/" + docid);
+		webUrl.setDocid(docid);
+		webUrl.setPriority((byte) priority);
+		webUrl.setDepth((short) depth);
+		return webUrl;
+	}
+
+	public void testQueueOrderAndDeletion() throws Exception {
+		storage = new InMemoryFrontierStorage(config);
+		InMemoryWorkQueues queue = (InMemoryWorkQueues) storage.getURLQueue();
+		queue.put(url(1, 1, 0));
+		queue.put(url(2, 0, 2));
+		queue.put(url(3, 0, 1));
+		queue.put(url(4, 0, 1));
+		assertEquals(4, queue.getLength());
+
+		List<WebURL> head = queue.get(2);
+		assertEquals(3, head.get(0).getDocid());
+		assertEquals(4, head.get(1).getDocid());
+		assertEquals(4, queue.getLength());
+
+		queue.delete(1);
+		List<WebURL> taken = queue.take(10);
+		assertEquals(3, taken.size());
+		assertEquals(4, taken.get(0).getDocid());
+		assertEquals(2, taken.get(1).getDocid());
+		assertEquals(1, taken.get(2).getDocid());
+		assertEquals(0, queue.getLength());
+		assertEquals(0, storage.getMemoryBudget().getUsedBytes());
+	}
+
+	public void testQueueSpillsOnceTheBudgetIsUsedUp() throws Exception {
+		config.setFrontierMemoryBudget(2000);
+		storage = new InMemoryFrontierStorage(config);
+		InMemoryWorkQueues queue = (InMemoryWorkQueues) storage.getURLQueue();
+		for (int i = 1; i <= 20; i++) {
+			queue.put(url(i, 0, 0));
+		}
+		assertTrue(storage.getMemoryBudget().getUsedBytes() <= 2000);
+		assertEquals(20, queue.getLength());
+
+		int count = 0;
+		for (List<WebURL> urls = queue.take(3); !urls.isEmpty(); urls = queue.take(3)) {
+			count += urls.size();
+		}
+		assertEquals(20, count);
+		assertEquals(0, storage.getMemoryBudget().getUsedBytes());
+	}
+
+	public void testSpilledURLsAreTakenInOrder() throws Exception {
+		config.setFrontierMemoryBudget(2000);
+		storage = new InMemoryFrontierStorage(config);
+		InMemoryWorkQueues queue = (InMemoryWorkQueues) storage.getURLQueue();
+		// Shallow pages fill the heap, the rest of them is spilled
+		for (int i = 1; i <= 20; i++) {
+			queue.put(url(i, 0, 1));
+		}
+		// Deeper links keep being discovered while the heap has room again
+		int docid = 100;
+		for (int round = 0; round < 5; round++) {
+			List<WebURL> taken = queue.take(2);
+			assertEquals(2, taken.size());
+			assertEquals(1, taken.get(0).getDepth());
+			assertEquals(1, taken.get(1).getDepth());
+			queue.put(url(docid++, 0, 2));
+			queue.put(url(docid++, 0, 2));
+		}
+
+		List<WebURL> rest = queue.take(100);
+		assertEquals(20, rest.size());
+		for (int i = 1; i < rest.size(); i++) {
+			WebURL previous = rest.get(i - 1);
+			WebURL current = rest.get(i);
+			assertTrue(previous.getDepth() < current.getDepth()
+					|| previous.getDepth() == current.getDepth() && previous.getDocid() < current.getDocid());
+		}
+		assertEquals(1, rest.get(9).getDepth());
+		assertEquals(2, rest.get(10).getDepth());
+		assertEquals(0, queue.getLength());
+		assertEquals(0, storage.getMemoryBudget().getUsedBytes());
+	}
+
+	public void testDocIdsWithAndWithoutSpilling() throws Exception {
+		config.setFrontierMemoryBudget(5 * 24);
+		storage = new InMemoryFrontierStorage(config);
+		DocIDStore docIds = storage.getDocIDStore();
+		for (int i = 1; i <= 10; i++) {
+			assertEquals(i, docIds.getNewDocID("http://www.example.com/" + i));
+		}
+		assertEquals(5 * 24, storage.getMemoryBudget().getUsedBytes());
+		for (int i = 1; i <= 10; i++) {
+			assertEquals(i, docIds.getDocId("http://www.example.com/" + i));
+			assertEquals(i, docIds.getNewDocID("http://www.example.com/" + i));
+		}
+		assertEquals(-1, docIds.getDocId("http://www.example.com/11"));
+		assertEquals(10, docIds.getDocCount());
+	}
+}
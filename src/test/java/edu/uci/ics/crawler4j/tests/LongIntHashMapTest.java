@@ -0,0 +1,39 @@
+package edu.uci.ics.crawler4j.tests;
+
+import junit.framework.TestCase;
+import edu.uci.ics.crawler4j.util.LongIntHashMap;
+
+public class LongIntHashMapTest extends TestCase {
+
+	public void testPutIfAbsentAndGet() {
+		LongIntHashMap map = new LongIntHashMap(16);
+		assertEquals(-1, map.get(42));
+		assertEquals(-1, map.putIfAbsent(42, 1));
+		assertEquals(1, map.putIfAbsent(42, 2));
+		assertEquals(1, map.get(42));
+		assertEquals(-1, map.putIfAbsent(0, 3));
+		assertEquals(-1, map.putIfAbsent(-1, 4));
+		assertEquals(3, map.get(0));
+		assertEquals(4, map.get(-1));
+		assertEquals(3, map.size());
+
+		try {
+			map.putIfAbsent(7, 0);
+			fail("Zero values are not allowed");
+		} catch (IllegalArgumentException expected) {
+			// Expected
+		}
+	}
+
+	public void testEntriesSurviveResize() {
+		LongIntHashMap map = new LongIntHashMap(16);
+		for (int i = 1; i <= 100000; i++) {
+			assertEquals(-1, map.putIfAbsent(i * 0x100000001L, i));
+		}
+		assertEquals(100000, map.size());
+		for (int i = 1; i <= 100000; i++) {
+			assertEquals(i, map.get(i * 0x100000001L));
+		}
+		assertEquals(-1, map.get(100001 * 0x100000001L));
+	}
+}
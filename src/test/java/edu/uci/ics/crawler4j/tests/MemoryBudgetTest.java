@@ -0,0 +1,23 @@
+package edu.uci.ics.crawler4j.tests;
+
+import junit.framework.TestCase;
+import edu.uci.ics.crawler4j.frontier.MemoryBudget;
+
+public class MemoryBudgetTest extends TestCase {
+
+	public void testReservationsStayWithinBudget() {
+		MemoryBudget budget = new MemoryBudget(100);
+		assertTrue(budget.tryReserve(60));
+		assertFalse(budget.tryReserve(50));
+		assertTrue(budget.tryReserve(40));
+		assertEquals(100, budget.getUsedBytes());
+
+		// Forced reservations may exceed the budget
+		budget.reserve(10);
+		assertFalse(budget.tryReserve(1));
+		budget.release(30);
+		assertEquals(80, budget.getUsedBytes());
+		assertTrue(budget.tryReserve(20));
+		assertFalse(budget.tryReserve(1));
+	}
+}
@@ -0,0 +1,52 @@
+package edu.uci.ics.crawler4j.tests;
+
+import junit.framework.TestCase;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.fetcher.PolitenessScheduler;
+
+public class PolitenessSchedulerTest extends TestCase {
+
+	public void testDelayIsPerHost() {
+		CrawlConfig config = new CrawlConfig();
+		config.setPolitenessDelay(200);
+		PolitenessScheduler scheduler = new PolitenessScheduler(config);
+
+		assertEquals(0, scheduler.reserve("www.example.com", 1000));
+		assertEquals(0, scheduler.reserve("www.example.org", 1000));
+		assertEquals(200, scheduler.reserve("www.example.com", 1000));
+		assertEquals(400, scheduler.reserve("www.example.com", 1000));
+		assertEquals(0, scheduler.reserve("www.example.org", 1300));
+
+		assertEquals(1600, scheduler.getNextFetchTime("www.example.com"));
+		assertEquals(0, scheduler.getNextFetchTime("www.example.net"));
+	}
+
+	public void testAdaptiveDelayAndRetryAfter() {
+		CrawlConfig config = new CrawlConfig();
+		config.setPolitenessDelay(1000);
+		config.setAdaptivePoliteness(true);
+		config.setMinPolitenessDelay(100);
+		config.setMaxPolitenessDelay(10000);
+		PolitenessScheduler scheduler = new PolitenessScheduler(config);
+		String host = "www.example.com";
+
+		// Fast and healthy: the rate grows by 0.5 requests per second
+		scheduler.onResponse(host, 200, 50, 0, 0);
+		assertEquals(666, scheduler.getDelay(host));
+		for (int i = 0; i < 100; i++) {
+			scheduler.onResponse(host, 200, 50, 0, 0);
+		}
+		assertEquals(100, scheduler.getDelay(host));
+
+		// Errors and slow responses double the delay
+		scheduler.onResponse(host, 503, 50, 0, 0);
+		assertEquals(200, scheduler.getDelay(host));
+		scheduler.onResponse(host, 200, 500, 0, 0);
+		assertEquals(400, scheduler.getDelay(host));
+
+		// Retry-After pushes the next fetch, capped by the max delay
+		scheduler.onResponse(host, 429, 50, 60000, 5000);
+		assertEquals(15000, scheduler.getNextFetchTime(host));
+		assertEquals(10000, scheduler.reserve(host, 5000));
+	}
+}
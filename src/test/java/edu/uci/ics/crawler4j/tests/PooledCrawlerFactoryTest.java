@@ -0,0 +1,28 @@
+package edu.uci.ics.crawler4j.tests;
+
+import junit.framework.TestCase;
+import edu.uci.ics.crawler4j.crawler.Crawler;
+import edu.uci.ics.crawler4j.crawler.PooledCrawlerFactory;
+import edu.uci.ics.crawler4j.crawler.WebCrawler;
+
+public class PooledCrawlerFactoryTest extends TestCase {
+
+	public void testReleasedCrawlersAreReused() throws Exception {
+		PooledCrawlerFactory factory = new PooledCrawlerFactory(WebCrawler.class);
+		factory.preallocate(2);
+		assertEquals(2, factory.getPoolSize());
+		assertEquals(2, factory.getCreatedCount());
+
+		Crawler first = factory.newCrawler();
+		Crawler second = factory.newCrawler();
+		Crawler third = factory.newCrawler();
+		assertNotSame(first, second);
+		assertEquals(0, factory.getPoolSize());
+		assertEquals(3, factory.getCreatedCount());
+		assertEquals(2, factory.getReusedCount());
+
+		factory.release(third);
+		assertSame(third, factory.newCrawler());
+		assertEquals(3, factory.getCreatedCount());
+	}
+}
@@ -0,0 +1,187 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.sleepycat.je.Environment;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.frontier.BerkeleyDBFrontierStorage;
+import edu.uci.ics.crawler4j.frontier.DocIDServer;
+import edu.uci.ics.crawler4j.frontier.StripedDocIDServer;
+import edu.uci.ics.crawler4j.url.WebURL;
+import edu.uci.ics.crawler4j.util.FileUtils;
+
+public class StripedDocIDServerTest extends TestCase {
+
+	private File folder;
+
+	private Environment env;
+
+	private StripedDocIDServer docIdServer;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = Files.createTempDirectory("crawler4j").toFile();
+		CrawlConfig config = new CrawlConfig();
+		config.setCrawlStorageFolder(folder.getAbsolutePath());
+		env = BerkeleyDBFrontierStorage.openEnvironment(config, false);
+		docIdServer = new StripedDocIDServer(env, config);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		docIdServer.close();
+		env.close();
+		FileUtils.deleteFolderContents(folder);
+		folder.delete();
+	}
+
+	public void testGetOrAssign() throws Exception {
+		WebURL first = new WebURL();
+		first.setURL("http://www.example.com/");
+		assertTrue(docIdServer.getOrAssign(first));
+		assertEquals(1, first.getDocid());
+
+		WebURL again = new WebURL();
+		again.setURL("http://www.example.com/");
+		assertFalse(docIdServer.getOrAssign(again));
+		assertEquals(1, again.getDocid());
+
+		assertEquals(2, docIdServer.getNewDocID("http://www.example.com/a"));
+		assertEquals(2, docIdServer.getDocId("http://www.example.com/a"));
+		assertEquals(-1, docIdServer.getDocId("http://www.example.com/b"));
+
+		docIdServer.addUrlAndDocId("http://www.example.com/c", 10);
+		assertEquals(11, docIdServer.getNewDocID("http://www.example.com/d"));
+		assertEquals(4, docIdServer.getDocCount());
+	}
+
+	public void testGetOrAssignAll() throws Exception {
+		assertEquals(1, docIdServer.getNewDocID("http://www.example.com/seen"));
+		List<WebURL> urls = new ArrayList<>();
+		for (String url : new String[] { "http://www.example.com/a", "http://www.example.com/seen",
+				"http://www.example.com/b", "http://www.example.com/a" }) {
+			WebURL webURL = new WebURL();
+			webURL.setURL(url);
+			urls.add(webURL);
+		}
+
+		docIdServer.lookupAll(urls);
+		assertEquals(-1, urls.get(0).getDocid());
+		assertEquals(1, urls.get(1).getDocid());
+
+		List<WebURL> assigned = docIdServer.getOrAssignAll(urls);
+		assertEquals(2, assigned.size());
+		assertSame(urls.get(0), assigned.get(0));
+		assertSame(urls.get(2), assigned.get(1));
+		assertEquals(urls.get(0).getDocid(), urls.get(3).getDocid());
+		assertEquals(1, urls.get(1).getDocid());
+		assertEquals(3, docIdServer.getDocCount());
+	}
+
+	public void testConcurrentAssignmentsAreUnique() throws Exception {
+		final int urls = 2000;
+		final AtomicInteger assigned = new AtomicInteger();
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < urls; j++) {
+						WebURL url = new WebURL();
+						url.setURL("http://www.example.com/" + j);
+						if (docIdServer.getOrAssign(url)) {
+							assigned.incrementAndGet();
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(urls, assigned.get());
+		assertEquals(urls, docIdServer.getDocCount());
+		assertEquals(urls + 1, docIdServer.getNewDocID("http://www.example.com/new"));
+	}
+
+	public void testBloomFilterIsRebuiltOnResume() throws Exception {
+		docIdServer.close();
+		env.close();
+		CrawlConfig config = new CrawlConfig();
+		config.setCrawlStorageFolder(folder.getAbsolutePath());
+		config.setResumableCrawling(true);
+		config.setExpectedUrlCount(1000);
+		env = BerkeleyDBFrontierStorage.openEnvironment(config, true);
+		docIdServer = new StripedDocIDServer(env, config);
+		for (int i = 0; i < 100; i++) {
+			docIdServer.getNewDocID("http://www.example.com/" + i);
+		}
+		docIdServer.close();
+
+		docIdServer = new StripedDocIDServer(env, config);
+		assertTrue(docIdServer.getBloomFilterMemoryBytes() > 0);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i + 1, docIdServer.getDocId("http://www.example.com/" + i));
+		}
+		for (int i = 100; i < 1100; i++) {
+			assertEquals(-1, docIdServer.getDocId("http://www.example.com/" + i));
+		}
+		assertEquals(1100, docIdServer.getBloomFilterLookups());
+		assertEquals(1000, docIdServer.getBloomFilterNegatives() + docIdServer.getBloomFilterFalsePositives());
+		assertTrue(docIdServer.getBloomFilterFalsePositiveRate() < 0.05);
+	}
+
+	public void testResumesAfterTheLargestStoredDocID() throws Exception {
+		docIdServer.close();
+		env.close();
+		CrawlConfig config = new CrawlConfig();
+		config.setCrawlStorageFolder(folder.getAbsolutePath());
+		config.setResumableCrawling(true);
+		env = BerkeleyDBFrontierStorage.openEnvironment(config, true);
+		docIdServer = new StripedDocIDServer(env, config);
+		assertEquals(1, docIdServer.getNewDocID("http://www.example.com/a"));
+		// Leaves a gap, like the ids used up by an aborted batch
+		docIdServer.addUrlAndDocId("http://www.example.com/b", 10);
+		docIdServer.close();
+
+		docIdServer = new StripedDocIDServer(env, config);
+		assertEquals(2, docIdServer.getDocCount());
+		assertEquals(11, docIdServer.getNewDocID("http://www.example.com/c"));
+		assertEquals(10, docIdServer.getDocId("http://www.example.com/b"));
+	}
+
+	public void testMigratesDocIDsOfALegacyResumableCrawl() throws Exception {
+		File resumableFolder = Files.createTempDirectory("crawler4j").toFile();
+		try {
+			CrawlConfig config = new CrawlConfig();
+			config.setCrawlStorageFolder(resumableFolder.getAbsolutePath());
+			config.setResumableCrawling(true);
+			Environment resumableEnv = BerkeleyDBFrontierStorage.openEnvironment(config, true);
+			DocIDServer legacy = new DocIDServer(resumableEnv, config);
+			for (int i = 1; i <= 3; i++) {
+				assertEquals(i, legacy.getNewDocID("http://www.example.com/" + i));
+			}
+			legacy.close();
+
+			StripedDocIDServer migrated = new StripedDocIDServer(resumableEnv, config);
+			for (int i = 1; i <= 3; i++) {
+				assertEquals(i, migrated.getDocId("http://www.example.com/" + i));
+			}
+			assertEquals(4, migrated.getNewDocID("http://www.example.com/4"));
+			assertFalse(resumableEnv.getDatabaseNames().contains("DocIDs"));
+			migrated.close();
+			resumableEnv.close();
+		} finally {
+			FileUtils.deleteFolderContents(resumableFolder);
+			resumableFolder.delete();
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.fetcher.PageFetchResult;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * Serves a site of numbered HTML pages without any network I/O. Page n links
+ * to pages 2n + 1 and 2n + 2, so every page is reachable from page 0.
+ */
+public class StubPageFetcher extends PageFetcher {
+
+	public static final String SITE = "http://stub.crawler4j.test/";
+
+	private final int pages;
+
+	private final long delay;
+
+	private final AtomicInteger fetches = new AtomicInteger();
+
+	public StubPageFetcher(CrawlConfig config, int pages, long delay) {
+		super(config);
+		this.pages = pages;
+		this.delay = delay;
+	}
+
+	public static String url(int page) {
+		return SITE + page + ".html";
+	}
+
+	@Override
+	public PageFetchResult fetchHeader(WebURL webUrl) {
+		fetches.incrementAndGet();
+		if (delay > 0) {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		PageFetchResult fetchResult = new PageFetchResult();
+		fetchResult.setFetchedUrl(webUrl.getURL());
+		String path = webUrl.getURL().substring(SITE.length());
+		int page = path.endsWith(".html") ? Integer.parseInt(path.substring(0, path.length() - 5)) : -1;
+		if (page < 0 || page >= pages) {
+			fetchResult.setStatusCode(HttpStatus.SC_NOT_FOUND);
+			return fetchResult;
+		}
+		fetchResult.setStatusCode(HttpStatus.SC_OK);
+		fetchResult.setEntity(new StringEntity(html(SITE, page, pages), ContentType.TEXT_HTML));
+		return fetchResult;
+	}
+
+	/**
+	 * Returns page n of a site of the given number of pages.
+	 */
+	public static String html(String site, int page, int pages) {
+		StringBuilder html = new StringBuilder("<html><head><title>Page " + page + "</title></head><body>");
+		for (int link = 2 * page + 1; link <= 2 * page + 2 && link < pages; link++) {
+			html.append("<a href=\"").append(site).append(link).append(".html\">").append(link).append("</a>");
+		}
+		html.append("</body></html>");
+		return html.toString();
+	}
+
+	public int getFetches() {
+		return fetches.get();
+	}
+}
@@ -0,0 +1,55 @@
+package edu.uci.ics.crawler4j.tests;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.frontier.ValidatorDB;
+import edu.uci.ics.crawler4j.frontier.Validators;
+import edu.uci.ics.crawler4j.util.FileUtils;
+
+public class ValidatorDBTest extends TestCase {
+
+	private File folder;
+
+	private CrawlConfig config;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = Files.createTempDirectory("crawler4j").toFile();
+		config = new CrawlConfig();
+		config.setCrawlStorageFolder(folder.getAbsolutePath());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		FileUtils.deleteFolderContents(folder);
+		folder.delete();
+	}
+
+	public void testValidatorsAreKeptForTheNextCrawl() throws Exception {
+		Validators validators = Validators.fromHeaders(new Header[] { new BasicHeader("Content-Type", "text/html"),
+				new BasicHeader("ETag", "\"v1\"") });
+		assertNull(validators.getLastModified());
+		assertNull(Validators.fromHeaders(new Header[] { new BasicHeader("Content-Type", "text/html") }));
+
+		ValidatorDB store = new ValidatorDB(config);
+		store.put("http://www.example.com/", validators);
+		store.put("http://www.example.com/2", new Validators(null, "Sat, 29 Oct 1994 19:43:31 GMT"));
+		store.put("http://www.example.com/3", validators);
+		store.remove("http://www.example.com/3");
+		store.close();
+
+		store = new ValidatorDB(config);
+		assertEquals("\"v1\"", store.get("http://www.example.com/").getETag());
+		assertNull(store.get("http://www.example.com/2").getETag());
+		assertEquals("Sat, 29 Oct 1994 19:43:31 GMT", store.get("http://www.example.com/2").getLastModified());
+		assertNull(store.get("http://www.example.com/3"));
+		store.close();
+	}
+}